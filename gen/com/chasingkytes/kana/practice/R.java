@@ -11,6 +11,7 @@ public final class R {
     public static final class array {
         public static final int columnArray=0x7f050001;
         public static final int columnArrayValues=0x7f050004;
+        public static final int kanaSetArray=0x7f050006;
         public static final int modeArray=0x7f050002;
         public static final int modeArrayValues=0x7f050005;
         public static final int rowArray=0x7f050000;
@@ -19,15 +20,14 @@ public final class R {
     public static final class attr {
     }
     public static final class drawable {
-        public static final int bubble_blue=0x7f020000;
-        public static final int bubble_green=0x7f020001;
-        public static final int bubble_red=0x7f020002;
-        public static final int ic_action_search=0x7f020003;
-        public static final int ic_launcher=0x7f020004;
+        public static final int bubble=0x7f020000;
+        public static final int ic_action_search=0x7f020001;
+        public static final int ic_launcher=0x7f020002;
     }
     public static final class id {
         public static final int aboutUs=0x7f09000d;
         public static final int bStart=0x7f09000b;
+        public static final int cbFloating=0x7f09000f;
         public static final int cbScore=0x7f09000a;
         public static final int cbSound=0x7f090008;
         public static final int cbTimer=0x7f090009;
@@ -35,6 +35,7 @@ public final class R {
         public static final int menu_settings=0x7f09000c;
         public static final int sAnswer=0x7f090003;
         public static final int sColumns=0x7f090006;
+        public static final int sKanaSet=0x7f090010;
         public static final int sQuestion=0x7f090002;
         public static final int sRows=0x7f090005;
         public static final int textView1=0x7f090000;
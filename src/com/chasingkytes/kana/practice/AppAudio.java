@@ -0,0 +1,55 @@
+package com.chasingkytes.kana.practice;
+
+import android.content.Context;
+
+/**
+ * Holds the one AudioEngine of the application, so the sounds are decoded once and not
+ * again for every game. Every activity that plays sounds acquires the engine when it is
+ * created and releases it when it is destroyed; the engine is freed when the last one does.
+ */
+public class AppAudio {
+
+	//pronunciation clips are optional raw resources named after the romaji, such as kana_ka
+	final static String PRONUNCIATION_PREFIX = "kana_";
+
+	private static AudioEngine engine = null;
+	private static int users = 0;
+
+	/**
+	 * Obtains the engine, creating it and starting to decode the sound effects if needed.
+	 * @param context - <i>context of the activity</i>
+	 * @return AudioEngine - <i>shared engine</i>
+	 */
+	public static synchronized AudioEngine acquire(Context context) {
+		if(engine == null)
+			engine = new AudioEngine(new SoundPoolSink(context), R.raw.water_droplet, R.raw.ice_block,
+					findPronunciations(context), AudioEngine.DEFAULT_CACHE_BYTES);
+		users++;
+		return engine;
+	}
+
+	/**
+	 * Gives up the engine obtained with acquire(). The engine is freed after the last release.
+	 */
+	public static synchronized void release() {
+		if(users == 0)
+			return;
+		users--;
+		if(users == 0) {
+			engine.release();
+			engine = null;
+		}
+	}
+
+	/**
+	 * Looks up the pronunciation clip of every Kana.
+	 * @param context - <i>context of the activity</i>
+	 * @return int[] - <i>raw resource of every Kana index, AudioEngine.NO_CLIP if it has none</i>
+	 */
+	private static int[] findPronunciations(Context context) {
+		int[] clips = new int[KanaBubble.KANA_COUNT];
+		for(int i = 0; i < clips.length; i++)
+			clips[i] = context.getResources().getIdentifier(PRONUNCIATION_PREFIX + KanaBubble.romajiList[i], "raw", context.getPackageName());
+		return clips;
+	}
+}
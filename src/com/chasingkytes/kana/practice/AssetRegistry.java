@@ -0,0 +1,133 @@
+package com.chasingkytes.kana.practice;
+
+import android.content.Context;
+
+/**
+ * The pictures every game draws with, kept for as long as the application runs: the glyph
+ * atlas of every Kana and the bubble sprite.
+ *
+ * warmUp() builds them on a background thread, so the menu can start the work while the user
+ * picks the options and the first frame of a game does not have to. The render thread calls
+ * awaitReady() before its first frame, which only waits if the warmup has not finished yet.
+ *
+ * Games acquire the registry while they are open. The pictures are only freed by trim(), when
+ * memory is low and no game is open, and are built again by the next warmup.
+ */
+public class AssetRegistry implements Runnable {
+
+	//sizes the assets are built at, the ones a grid that fits the screen is drawn with
+	final static float TEXT_SIZE = 70;
+	final static float GLYPH_WIDTH = 90;
+	final static int BUBBLE_SIZE = 100;
+
+	private final float density;
+	private final KanaGlyphAtlas glyphAtlas = new KanaGlyphAtlas();
+	private final BubbleSprite bubbleSprite;
+	private Thread loader = null;
+	private boolean ready = false;
+	private int users = 0;
+	private int warmups = 0;		//amount of times the assets were built
+
+	/**
+	 * Creates an AssetRegistry. Nothing is loaded until warmUp().
+	 * @param context - <i>context of the application</i>
+	 */
+	public AssetRegistry(Context context) {
+		density = context.getResources().getDisplayMetrics().density;
+		bubbleSprite = new BubbleSprite(context.getResources(), R.drawable.bubble);
+	}
+
+	/**
+	 * Starts building the assets in the background, unless they are built or being built.
+	 */
+	public synchronized void warmUp() {
+		if(ready || loader != null)
+			return;
+		loader = new Thread(this, "AssetRegistry");
+		loader.start();
+	}
+
+	public void run() {
+		//reads the Kana table, which every game needs before it can make a grid
+		if(KanaBubble.romajiList.length == 0)
+			throw new IllegalStateException("the Kana table is empty");
+		glyphAtlas.ensure(TEXT_SIZE, GLYPH_WIDTH, density);
+		bubbleSprite.ensure(BUBBLE_SIZE);
+		bubbleSprite.logMemory(density);
+		synchronized(this) {
+			ready = true;
+			loader = null;
+			warmups++;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Checks if the assets are built.
+	 * @return boolean - <i>true if awaitReady() returns at once</i>
+	 */
+	public synchronized boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * Obtains the amount of times the assets were built, more than 1 if trim() freed them.
+	 * @return int - <i>amount of warmups</i>
+	 */
+	public synchronized int getWarmups() {
+		return warmups;
+	}
+
+	/**
+	 * Waits until the assets are built, starting the warmup if nobody did.
+	 * Called by the render thread of a game before it draws.
+	 * @throws InterruptedException
+	 */
+	public synchronized void awaitReady() throws InterruptedException {
+		warmUp();
+		while(!ready)
+			wait();
+	}
+
+	/**
+	 * Obtains the glyph atlas. Only draw with it after awaitReady().
+	 * @return KanaGlyphAtlas - <i>shared atlas</i>
+	 */
+	public KanaGlyphAtlas getGlyphAtlas() {
+		return glyphAtlas;
+	}
+
+	/**
+	 * Obtains the bubble sprite. Only draw with it after awaitReady().
+	 * @return BubbleSprite - <i>shared sprite</i>
+	 */
+	public BubbleSprite getBubbleSprite() {
+		return bubbleSprite;
+	}
+
+	/**
+	 * Marks the assets as used by a game, so trim() does not free them.
+	 */
+	public synchronized void acquire() {
+		users++;
+	}
+
+	/**
+	 * Marks the assets as no longer used by a game.
+	 */
+	public synchronized void release() {
+		if(users > 0)
+			users--;
+	}
+
+	/**
+	 * Frees the assets if no game uses them and they are not being built.
+	 */
+	public synchronized void trim() {
+		if(users > 0 || !ready)
+			return;
+		glyphAtlas.release();
+		bubbleSprite.recycle();
+		ready = false;
+	}
+}
@@ -0,0 +1,298 @@
+package com.chasingkytes.kana.practice;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Plays the sounds of the game: the pop of a correct answer, the sound of a wrong one, and
+ * optional recordings of every Kana being pronounced.
+ *
+ * The two effects are decoded once when the engine is created and stay loaded for as long as
+ * the engine lives. Sounds that are requested while their clip is still being decoded are
+ * counted and played as soon as the clip is ready, except the ones requested more than
+ * MAX_LATE_NANOS earlier, which would no longer match their tap. At most MAX_LATE_PLAYS of them
+ * are played together, the rest would only make the same sound louder; getSkippedPlays() counts
+ * the requests that were not played.
+ *
+ * Pronunciation clips are loaded when they are first needed and kept in a cache that is
+ * bounded in bytes. When a clip does not fit, the clips that were played longest ago are
+ * unloaded first.
+ *
+ * The engine does not use any Android classes, the clips are decoded and played by an AudioSink.
+ * All methods are synchronized, since touches, the render thread and the sink call them.
+ */
+public class AudioEngine {
+
+	//sound effects
+	final static int HIT = 0;
+	final static int MISS = 1;
+	final static int EFFECTS = 2;
+
+	//resource id of a Kana without a pronunciation clip
+	final static int NO_CLIP = 0;
+	//largest amount of memory used by pronunciation clips, unless the engine is given another limit
+	final static int DEFAULT_CACHE_BYTES = 512 * 1024;
+	//a sound played later than this after it was requested is skipped
+	final static long MAX_LATE_NANOS = 250 * 1000000L;
+	//most sounds of one clip played at once when it is ready, fewer than the streams of the SoundPoolSink
+	final static int MAX_LATE_PLAYS = 3;
+
+	/**
+	 * The plays of a clip requested while it was loading. The last MAX_LATE_PLAYS requests
+	 * are kept, earlier ones are only counted.
+	 */
+	static class Pending {
+		final long[] requestNanos = new long[MAX_LATE_PLAYS];
+		final float[] volume = new float[MAX_LATE_PLAYS];
+		int count = 0;
+
+		void add(long now, float playVolume) {
+			int slot = count % MAX_LATE_PLAYS;
+			requestNanos[slot] = now;
+			volume[slot] = playVolume;
+			count++;
+		}
+	}
+
+	/**
+	 * A loaded pronunciation clip.
+	 */
+	static class Clip {
+		final int sampleId;
+		final int bytes;
+		boolean ready = false;
+		final Pending pending = new Pending();		//plays requested while loading
+
+		Clip(int sampleId, int bytes) {
+			this.sampleId = sampleId;
+			this.bytes = bytes;
+		}
+	}
+
+	private final AudioSink sink;
+	private final int[] effectSamples = new int[EFFECTS];
+	private final boolean[] effectReady = new boolean[EFFECTS];
+	private final Pending[] effectPending = new Pending[EFFECTS];
+	private final int[] pronunciations;
+	private final int cacheLimit;
+	//pronunciation clips by Kana index, the one played longest ago first
+	private final LinkedHashMap<Integer, Clip> cache = new LinkedHashMap<Integer, Clip>(16, 0.75f, true);
+	private int cacheBytes = 0;
+	private int latePlays = 0;
+	private int skippedPlays = 0;
+	private boolean released = false;
+
+	/**
+	 * Creates an AudioEngine and starts decoding the sound effects.
+	 * @param sink - <i>sink that decodes and plays the clips</i>
+	 * @param hitResource - <i>clip played when the target is found</i>
+	 * @param missResource - <i>clip played when a wrong bubble is touched</i>
+	 * @param pronunciationResources - <i>clip of every Kana index, NO_CLIP for Kana without one</i>
+	 * @param cacheLimit - <i>largest amount of bytes of pronunciation clips kept loaded</i>
+	 */
+	public AudioEngine(AudioSink sink, int hitResource, int missResource, int[] pronunciationResources, int cacheLimit) {
+		this.sink = sink;
+		pronunciations = pronunciationResources;
+		this.cacheLimit = cacheLimit;
+		for(int effect = 0; effect < EFFECTS; effect++)
+			effectPending[effect] = new Pending();
+		sink.attach(this);
+		synchronized(this) {
+			effectSamples[HIT] = sink.load(hitResource);
+			effectSamples[MISS] = sink.load(missResource);
+		}
+	}
+
+	/**
+	 * Checks if both sound effects are decoded.
+	 * @return boolean - <i>true if the effects play without waiting</i>
+	 */
+	public synchronized boolean isReady() {
+		return effectReady[HIT] && effectReady[MISS];
+	}
+
+	/**
+	 * Plays a sound effect, or plays it as soon as it is decoded.
+	 * @param effect - <i>HIT or MISS</i>
+	 * @param volume - <i>volume from 0 to 1</i>
+	 */
+	public synchronized void playEffect(int effect, float volume) {
+		if(released || effectSamples[effect] == 0)
+			return;
+		if(effectReady[effect]) {
+			sink.play(effectSamples[effect], volume);
+		} else {
+			effectPending[effect].add(System.nanoTime(), volume);
+		}
+	}
+
+	/**
+	 * Checks if a Kana has a pronunciation clip.
+	 * @param kanaIndex - <i>index of the Kana</i>
+	 * @return boolean - <i>true if playPronunciation() can play it</i>
+	 */
+	public boolean hasPronunciation(int kanaIndex) {
+		return pronunciations[kanaIndex] != NO_CLIP;
+	}
+
+	/**
+	 * Starts loading the pronunciation of a Kana, such as the target of the next question,
+	 * so it plays without waiting.
+	 * @param kanaIndex - <i>index of the Kana</i>
+	 */
+	public synchronized void preloadPronunciation(int kanaIndex) {
+		if(!released && hasPronunciation(kanaIndex))
+			loadPronunciation(kanaIndex);
+	}
+
+	/**
+	 * Plays the pronunciation of a Kana, loading it first if it is not in the cache.
+	 * @param kanaIndex - <i>index of the Kana</i>
+	 * @param volume - <i>volume from 0 to 1</i>
+	 * @return boolean - <i>false if the Kana has no pronunciation clip</i>
+	 */
+	public synchronized boolean playPronunciation(int kanaIndex, float volume) {
+		if(released || !hasPronunciation(kanaIndex))
+			return false;
+		Clip clip = loadPronunciation(kanaIndex);
+		if(clip == null)
+			return false;
+		if(clip.ready) {
+			sink.play(clip.sampleId, volume);
+		} else {
+			clip.pending.add(System.nanoTime(), volume);
+		}
+		return true;
+	}
+
+	/**
+	 * Called by the sink when a clip has been decoded. Plays the clip for the requests made
+	 * while it was loading.
+	 * @param sampleId - <i>id returned by AudioSink.load()</i>
+	 * @param success - <i>false if the clip could not be decoded</i>
+	 */
+	public synchronized void loadComplete(int sampleId, boolean success) {
+		if(released)
+			return;
+		for(int effect = 0; effect < EFFECTS; effect++) {
+			if(effectSamples[effect] != sampleId)
+				continue;
+			if(!success) {
+				effectSamples[effect] = 0;
+				skippedPlays += effectPending[effect].count;
+				effectPending[effect].count = 0;
+				return;
+			}
+			effectReady[effect] = true;
+			playLate(sampleId, effectPending[effect]);
+			return;
+		}
+
+		Iterator<Clip> clips = cache.values().iterator();
+		while(clips.hasNext()) {
+			Clip clip = clips.next();
+			if(clip.sampleId != sampleId)
+				continue;
+			if(!success) {
+				cacheBytes -= clip.bytes;
+				skippedPlays += clip.pending.count;
+				clips.remove();
+				return;
+			}
+			clip.ready = true;
+			playLate(sampleId, clip.pending);
+			return;
+		}
+	}
+
+	/**
+	 * Obtains the amount of sounds that were played after their clip finished decoding.
+	 * @return int - <i>sounds played late</i>
+	 */
+	public synchronized int getLatePlays() {
+		return latePlays;
+	}
+
+	/**
+	 * Obtains the amount of sounds requested while their clip was loading that were not played:
+	 * the ones more than MAX_LATE_NANOS old once it was ready, the ones over MAX_LATE_PLAYS,
+	 * and the ones of clips that could not be decoded.
+	 * @return int - <i>sounds skipped</i>
+	 */
+	public synchronized int getSkippedPlays() {
+		return skippedPlays;
+	}
+
+	/**
+	 * Obtains the memory used by the pronunciation cache.
+	 * @return int - <i>bytes of the loaded pronunciation clips</i>
+	 */
+	public synchronized int getCachedBytes() {
+		return cacheBytes;
+	}
+
+	/**
+	 * Frees every clip and the sink. Nothing is played afterwards.
+	 */
+	public synchronized void release() {
+		if(released)
+			return;
+		released = true;
+		cache.clear();
+		cacheBytes = 0;
+		sink.release();
+	}
+
+	/**
+	 * Obtains the cached clip of a Kana, loading it and making room for it if needed.
+	 * @param kanaIndex - <i>index of a Kana with a pronunciation clip</i>
+	 * @return Clip - <i>clip, null if it is larger than the cache or could not be opened</i>
+	 */
+	private Clip loadPronunciation(int kanaIndex) {
+		Clip clip = cache.get(kanaIndex);
+		if(clip != null)
+			return clip;
+		int resource = pronunciations[kanaIndex];
+		int bytes = sink.getSize(resource);
+		if(bytes > cacheLimit)
+			return null;
+
+		//unload the clips played longest ago until the new one fits
+		Iterator<Clip> oldest = cache.values().iterator();
+		while(cacheBytes + bytes > cacheLimit && oldest.hasNext()) {
+			Clip old = oldest.next();
+			sink.unload(old.sampleId);
+			cacheBytes -= old.bytes;
+			oldest.remove();
+		}
+
+		int sampleId = sink.load(resource);
+		if(sampleId == 0)
+			return null;
+		clip = new Clip(sampleId, bytes);
+		cache.put(kanaIndex, clip);
+		cacheBytes += bytes;
+		return clip;
+	}
+
+	/**
+	 * Plays a clip for the requests made while it was loading that are recent enough, at most
+	 * MAX_LATE_PLAYS of them, and clears the requests.
+	 * @param sampleId - <i>id of the clip</i>
+	 * @param pending - <i>requests made while loading</i>
+	 */
+	private void playLate(int sampleId, Pending pending) {
+		long now = System.nanoTime();
+		int kept = Math.min(pending.count, MAX_LATE_PLAYS);
+		int played = 0;
+		for(int i = 0; i < kept; i++) {
+			if(now - pending.requestNanos[i] > MAX_LATE_NANOS)
+				continue;
+			sink.play(sampleId, pending.volume[i]);
+			played++;
+		}
+		latePlays += played;
+		skippedPlays += pending.count - played;
+		pending.count = 0;
+	}
+}
@@ -0,0 +1,50 @@
+package com.chasingkytes.kana.practice;
+
+/**
+ * Where the AudioEngine sends its sounds. On a device this is a SoundPoolSink; a fake sink
+ * lets the engine be timed on a desktop JVM without any Android classes.
+ *
+ * Loading is asynchronous: load() returns at once and the sink calls
+ * AudioEngine.loadComplete() when the clip has been decoded and can be played.
+ */
+public interface AudioSink {
+
+	/**
+	 * Sets the engine that is told when clips finish loading. Called by the AudioEngine constructor.
+	 * @param engine - <i>engine that owns the sink</i>
+	 */
+	void attach(AudioEngine engine);
+
+	/**
+	 * Starts decoding a clip.
+	 * @param resourceId - <i>raw resource of the clip</i>
+	 * @return int - <i>id of the sample, 0 if the clip could not be opened</i>
+	 */
+	int load(int resourceId);
+
+	/**
+	 * Estimates the memory a clip takes once it is decoded, before it is loaded, used to bound
+	 * the pronunciation cache.
+	 * @param resourceId - <i>raw resource of the clip</i>
+	 * @return int - <i>size of the decoded clip in bytes, never 0</i>
+	 */
+	int getSize(int resourceId);
+
+	/**
+	 * Plays a loaded sample once.
+	 * @param sampleId - <i>id returned by load()</i>
+	 * @param volume - <i>volume from 0 to 1</i>
+	 */
+	void play(int sampleId, float volume);
+
+	/**
+	 * Frees a sample. It can no longer be played.
+	 * @param sampleId - <i>id returned by load()</i>
+	 */
+	void unload(int sampleId);
+
+	/**
+	 * Frees every sample and the sink itself.
+	 */
+	void release();
+}
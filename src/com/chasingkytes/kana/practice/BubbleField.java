@@ -0,0 +1,396 @@
+package com.chasingkytes.kana.practice;
+
+import java.util.Random;
+
+/**
+ * The floating bubbles mode: KanaBubbles that drift around a rectangle, bounce off its
+ * walls and off each other. Like a KanaBubbleGrid, exactly one bubble holds the target.
+ *
+ * The simulation advances in fixed steps of STEP_NANOS no matter how often frames are
+ * drawn, so the bubbles move the same way on a fast and a slow device. advance() runs as
+ * many steps as the elapsed time needs and keeps the remainder, and drawing blends the
+ * position before and after the last step with getAlpha() so the motion stays smooth
+ * when frames and steps do not line up. Collisions are found with a BubbleIndex that is
+ * rebuilt every step, so a step is O(bubbles) instead of testing every pair.
+ *
+ * Positions are the centers of the bubbles, relative to the top left corner of the field.
+ * The arrays are created in the constructor and the BubbleIndex by the first setBounds(),
+ * once the radius is known. Stepping, touching and regenerating do not create any objects.
+ * advance() and processTouch() are synchronized, so touches can come from the UI thread
+ * while the render thread steps the simulation. The colors are published like the colors
+ * of KanaBubbleGrid, through a volatile counter.
+ */
+public class BubbleField {
+
+	//length of one simulation step, 60 steps per second
+	final static long STEP_NANOS = 1000000000L / 60;
+	final static float STEP_SECONDS = STEP_NANOS / 1e9f;
+	//most steps run by one advance(), the rest of the time is dropped so a slow frame does not make the next one slower
+	final static int MAX_STEPS = 5;
+
+	//speed range of new bubbles in pixels per second
+	final static float MIN_SPEED = 30;
+	final static float MAX_SPEED = 90;
+	//part of the field covered by bubbles when there are too many for the largest radius
+	final static float FILL = 0.4f;
+	//random positions tried for each new bubble before it is placed over another one
+	final static int PLACE_TRIES = 50;
+
+	private final float maxRadius;
+	private float radius = 0;
+	private final int count;
+	private float width = 0;
+	private float height = 0;
+
+	//state of every bubble
+	private final float[] x, y;
+	private final float[] previousX, previousY;	//position before the last step, used for drawing
+	private final float[] velocityX, velocityY;
+	private final byte[] kana;		//kana index, read with & 0xff
+	private final byte[] colors;
+	private volatile int colorVersion;
+
+	private BubbleIndex index = null;		//created once the radius is known
+	private final int[] overlaps;
+	private final int[] generated;
+	private final TargetScheduler scheduler;
+	private final Random rand;
+	private int targetIndex;
+	private long pendingNanos = 0;
+	private long steps = 0;
+
+	/**
+	 * Creates a BubbleField. The bubbles are placed once setBounds() is called.
+	 * @param bubbles - <i>amount of bubbles</i>
+	 * @param bubbleRadius - <i>largest radius of the bubbles, smaller if the bubbles would not fit in the field</i>
+	 * @param generator - <i>chooses the Kana around the target</i>
+	 * @param targetScheduler - <i>chooses the target every time the field is filled, null for a uniformly random target</i>
+	 * @param random - <i>chooses the starting positions and speeds, use a seeded Random to reproduce a simulation</i>
+	 */
+	public BubbleField(int bubbles, float bubbleRadius, KanaGridGenerator generator, TargetScheduler targetScheduler, Random random) {
+		count = bubbles;
+		maxRadius = bubbleRadius;
+		scheduler = targetScheduler;
+		rand = random;
+		x = new float[bubbles];
+		y = new float[bubbles];
+		previousX = new float[bubbles];
+		previousY = new float[bubbles];
+		velocityX = new float[bubbles];
+		velocityY = new float[bubbles];
+		kana = new byte[bubbles];
+		colors = new byte[bubbles];
+		overlaps = new int[bubbles];
+		generated = new int[bubbles];
+		regenerate(generator);
+	}
+
+	/**
+	 * Sets the size of the rectangle the bubbles move in. The first call chooses the radius
+	 * so the bubbles cover at most FILL of the field, and scatters the bubbles without overlaps
+	 * and with random directions. Later calls, for example after a rotation, keep the radius and move the
+	 * bubbles that are now outside back in.
+	 * @param fieldWidth - <i>width of the field</i>
+	 * @param fieldHeight - <i>height of the field</i>
+	 */
+	public synchronized void setBounds(float fieldWidth, float fieldHeight) {
+		boolean placed = width > 0;
+		if(!placed) {
+			radius = Math.min(maxRadius, (float) Math.sqrt(FILL * fieldWidth * fieldHeight / (count * Math.PI)));
+			radius = Math.max(radius, 1);
+			index = new BubbleIndex(count, radius);
+		}
+		width = Math.max(fieldWidth, radius * 2);
+		height = Math.max(fieldHeight, radius * 2);
+		for(int i = 0; i < count; i++) {
+			if(!placed) {
+				place(i);
+				double angle = rand.nextDouble() * Math.PI * 2;
+				float speed = MIN_SPEED + rand.nextFloat() * (MAX_SPEED - MIN_SPEED);
+				velocityX[i] = (float) Math.cos(angle) * speed;
+				velocityY[i] = (float) Math.sin(angle) * speed;
+			}
+			x[i] = clamp(x[i], radius, width - radius);
+			y[i] = clamp(y[i], radius, height - radius);
+			previousX[i] = x[i];
+			previousY[i] = y[i];
+		}
+		index.build(x, y, count);
+	}
+
+	/**
+	 * Chooses a random position for a new bubble that does not overlap the bubbles placed before
+	 * it. A field too full to find one after PLACE_TRIES tries keeps the last try, and the
+	 * collisions push the bubbles apart. Only called by the first setBounds(), before the index is built.
+	 * @param bubble - <i>number of the bubble, the bubbles before it are placed</i>
+	 */
+	private void place(int bubble) {
+		float diameter = radius * 2;
+		for(int tries = 0; tries < PLACE_TRIES; tries++) {
+			x[bubble] = radius + rand.nextFloat() * (width - diameter);
+			y[bubble] = radius + rand.nextFloat() * (height - diameter);
+			boolean free = true;
+			for(int j = 0; j < bubble && free; j++) {
+				float dx = x[bubble] - x[j];
+				float dy = y[bubble] - y[j];
+				free = dx * dx + dy * dy >= diameter * diameter;
+			}
+			if(free)
+				return;
+		}
+	}
+
+	/**
+	 * Fills the bubbles with new Kana and a new target and turns them green.
+	 * The bubbles keep moving where they are.
+	 * @param generator - <i>chooses the Kana of every bubble, and the target if the field has no TargetScheduler</i>
+	 */
+	public void regenerate(KanaGridGenerator generator) {
+		int targetBubble;
+		if(scheduler == null)
+			targetBubble = generator.generate(generated);
+		else
+			targetBubble = generator.generate(generated, scheduler.nextTarget());
+		synchronized(this) {
+			for(int i = 0; i < count; i++) {
+				kana[i] = (byte) generated[i];
+				colors[i] = KanaBubble.GREEN;
+			}
+			targetIndex = generated[targetBubble];
+			colorVersion++;
+		}
+	}
+
+	/**
+	 * Moves the simulation forward by the time since the last call, in fixed steps.
+	 * @param elapsedNanos - <i>time since the last call in nanoseconds</i>
+	 * @return int - <i>amount of steps that were run</i>
+	 */
+	public synchronized int advance(long elapsedNanos) {
+		if(width == 0)
+			return 0;
+		pendingNanos += Math.max(0, elapsedNanos);
+		int ran = 0;
+		while(pendingNanos >= STEP_NANOS && ran < MAX_STEPS) {
+			step();
+			pendingNanos -= STEP_NANOS;
+			ran++;
+		}
+		if(ran == MAX_STEPS)
+			pendingNanos = Math.min(pendingNanos, STEP_NANOS - 1);
+		return ran;
+	}
+
+	/**
+	 * Obtains how far the time is between the last step and the next one, used to blend
+	 * the positions when drawing.
+	 * @return float - <i>0 right after a step, close to 1 just before the next</i>
+	 */
+	public synchronized float getAlpha() {
+		return (float) pendingNanos / STEP_NANOS;
+	}
+
+	/**
+	 * Runs one step: moves every bubble, bounces it off the walls, then pushes apart and
+	 * bounces the bubbles that overlap. Must be called while holding the lock.
+	 */
+	private void step() {
+		float left = radius;
+		float top = radius;
+		float right = width - radius;
+		float bottom = height - radius;
+		for(int i = 0; i < count; i++) {
+			previousX[i] = x[i];
+			previousY[i] = y[i];
+			x[i] += velocityX[i] * STEP_SECONDS;
+			y[i] += velocityY[i] * STEP_SECONDS;
+			if(x[i] < left) {
+				x[i] = left + (left - x[i]);
+				velocityX[i] = Math.abs(velocityX[i]);
+			} else if(x[i] > right) {
+				x[i] = right - (x[i] - right);
+				velocityX[i] = -Math.abs(velocityX[i]);
+			}
+			if(y[i] < top) {
+				y[i] = top + (top - y[i]);
+				velocityY[i] = Math.abs(velocityY[i]);
+			} else if(y[i] > bottom) {
+				y[i] = bottom - (y[i] - bottom);
+				velocityY[i] = -Math.abs(velocityY[i]);
+			}
+			x[i] = clamp(x[i], left, right);
+			y[i] = clamp(y[i], top, bottom);
+		}
+
+		//broad phase with the index, then an exact test and an elastic bounce of equal masses
+		index.build(x, y, count);
+		float diameter = radius * 2;
+		for(int i = 0; i < count; i++) {
+			int found = index.findOverlaps(i, overlaps);
+			for(int k = 0; k < found; k++) {
+				int j = overlaps[k];
+				float dx = x[j] - x[i];
+				float dy = y[j] - y[i];
+				float distance = (float) Math.sqrt(dx * dx + dy * dy);
+				if(distance >= diameter)
+					continue;
+				float nx, ny;
+				if(distance > 0) {
+					nx = dx / distance;
+					ny = dy / distance;
+				} else {
+					nx = 1;
+					ny = 0;
+				}
+
+				//push both bubbles half of the overlap apart
+				float push = (diameter - distance) / 2;
+				x[i] = clamp(x[i] - nx * push, left, right);
+				y[i] = clamp(y[i] - ny * push, top, bottom);
+				x[j] = clamp(x[j] + nx * push, left, right);
+				y[j] = clamp(y[j] + ny * push, top, bottom);
+
+				//swap the speeds along the line between the centers if they are moving closer
+				float closing = (velocityX[i] - velocityX[j]) * nx + (velocityY[i] - velocityY[j]) * ny;
+				if(closing > 0) {
+					velocityX[i] -= closing * nx;
+					velocityY[i] -= closing * ny;
+					velocityX[j] += closing * nx;
+					velocityY[j] += closing * ny;
+				}
+			}
+		}
+		//touches are tested against the positions after the collisions
+		index.build(x, y, count);
+		steps++;
+	}
+
+	/**
+	 * Checks a touch against the bubbles and colors the touched bubble.
+	 * @param touchX - <i>x position of the user's touch</i>
+	 * @param touchY - <i>y position of the user's touch</i>
+	 * @param sideMargin - <i>x offset of the field</i>
+	 * @param topMargin - <i>y offset of the field</i>
+	 * @return <b>TARGET_NONE</b> - user did not touch a bubble,
+	 * <b>TARGET_HIT</b> - user hit the correct Kana,
+	 * <b>TARGET_MISS</b> - user hit the wrong Kana
+	 */
+	public synchronized int processTouch(float touchX, float touchY, float sideMargin, float topMargin) {
+		if(width == 0)
+			return KanaBubbleGrid.TARGET_NONE;
+		int bubble = index.hitTest(touchX - sideMargin, touchY - topMargin);
+		if(bubble == BubbleIndex.NO_HIT)
+			return KanaBubbleGrid.TARGET_NONE;
+		if((kana[bubble] & 0xff) == targetIndex) {
+			colors[bubble] = KanaBubble.BLUE;
+			colorVersion++;
+			return KanaBubbleGrid.TARGET_HIT;
+		}
+		colors[bubble] = KanaBubble.RED;
+		colorVersion++;
+		return KanaBubbleGrid.TARGET_MISS;
+	}
+
+	/**
+	 * Obtains the radius of the bubbles.
+	 * @return float - <i>radius, 0 until setBounds() is called</i>
+	 */
+	public synchronized float getRadius() {
+		return radius;
+	}
+
+	/**
+	 * Obtains the amount of bubbles.
+	 * @return int - <i>amount of bubbles</i>
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Obtains the amount of steps run since the field was created.
+	 * @return long - <i>steps</i>
+	 */
+	public synchronized long getSteps() {
+		return steps;
+	}
+
+	/**
+	 * Obtains the x position of a bubble to draw, between its position before and after the last step.
+	 * Only the thread that calls advance() may call this.
+	 * @param bubble - <i>number of the bubble</i>
+	 * @param alpha - <i>value from getAlpha()</i>
+	 * @return float - <i>x position of the center</i>
+	 */
+	public float getDrawX(int bubble, float alpha) {
+		return previousX[bubble] + (x[bubble] - previousX[bubble]) * alpha;
+	}
+
+	/**
+	 * Obtains the y position of a bubble to draw, between its position before and after the last step.
+	 * Only the thread that calls advance() may call this.
+	 * @param bubble - <i>number of the bubble</i>
+	 * @param alpha - <i>value from getAlpha()</i>
+	 * @return float - <i>y position of the center</i>
+	 */
+	public float getDrawY(int bubble, float alpha) {
+		return previousY[bubble] + (y[bubble] - previousY[bubble]) * alpha;
+	}
+
+	/**
+	 * Replaces the Kana, colors and target with the ones of a saved field with as many bubbles.
+	 * The bubbles keep moving where they are.
+	 * @param savedKana - <i>kana index of every bubble</i>
+	 * @param savedColors - <i>color of every bubble</i>
+	 * @param savedTarget - <i>kana index of the target</i>
+	 */
+	public synchronized void restore(byte[] savedKana, byte[] savedColors, int savedTarget) {
+		System.arraycopy(savedKana, 0, kana, 0, count);
+		System.arraycopy(savedColors, 0, colors, 0, count);
+		targetIndex = savedTarget;
+		colorVersion++;
+	}
+
+	/**
+	 * Obtains the kana index of a bubble.
+	 * @param bubble - <i>number of the bubble</i>
+	 * @return int - <i>kana index</i>
+	 */
+	public int getKanaIndex(int bubble) {
+		readColorVersion();
+		return kana[bubble] & 0xff;
+	}
+
+	/**
+	 * Obtains the color of a bubble.
+	 * @param bubble - <i>number of the bubble</i>
+	 * @return int - <i>BLUE, GREEN, or RED</i>
+	 */
+	public int getColor(int bubble) {
+		readColorVersion();
+		return colors[bubble];
+	}
+
+	/**
+	 * Obtains the kana index of the target.
+	 * @return int - <i>kana index</i>
+	 */
+	public int getTargetIndex() {
+		readColorVersion();
+		return targetIndex;
+	}
+
+	/**
+	 * Reads the volatile color version. The Kana, colors and target are plain fields, so they
+	 * must be read after this: a thread that reads the version sees every change written before
+	 * its last increment. Do not remove the call because its result is not used.
+	 * @return int - <i>number of changes so far</i>
+	 */
+	int readColorVersion() {
+		return colorVersion;
+	}
+
+	private static float clamp(float value, float min, float max) {
+		return value < min ? min : (value > max ? max : value);
+	}
+}
@@ -0,0 +1,191 @@
+package com.chasingkytes.kana.practice;
+
+import java.util.Arrays;
+
+/**
+ * Finds the bubble under a touch when the bubbles are placed freely instead of on a grid.
+ *
+ * The plane is divided into square cells as wide as a bubble, and every bubble is stored
+ * in the cell that holds its center. A touch can only be inside a bubble whose center is at
+ * most one radius away, so at most four cells have to be checked. Cells are not stored in a
+ * 2D array but hashed into a table with about two slots per bubble, which keeps the memory
+ * fixed however far apart the bubbles are. A touch checks only a few bubbles no matter how
+ * many there are.
+ *
+ * The same table finds the pairs of bubbles that overlap, which is the broad phase of the
+ * collisions of BubbleField: a bubble can only touch bubbles whose centers are in the nine
+ * cells around its own.
+ *
+ * The table is stored as one array of bubbles sorted by slot and the start of every slot,
+ * so build() only fills arrays that are created in the constructor, and hitTest() and
+ * findOverlaps() do not create any objects. Every bubble has the same radius.
+ */
+public class BubbleIndex {
+
+	//returned by hitTest() when the touch is not inside any bubble
+	final static int NO_HIT = -1;
+
+	private final float radius;
+	private final float cellSize;
+	private final int mask;
+	private final int[] slotStart;		//first entry of every slot in items, followed by the end of the last slot
+	private final int[] slotFill;		//used by build() to place the bubbles into their slots
+	private final int[] items;			//bubbles sorted by slot
+	private final int[] itemSlot;		//slot of every bubble
+	private final float[] centerX;
+	private final float[] centerY;
+	private final int[] visitedSlots = new int[9];	//slots already searched by findOverlaps()
+	private int count = 0;
+
+	/**
+	 * Creates an empty BubbleIndex.
+	 * @param capacity - <i>largest amount of bubbles</i>
+	 * @param radius - <i>radius of every bubble</i>
+	 */
+	public BubbleIndex(int capacity, float radius) {
+		this.radius = radius;
+		cellSize = radius * 2;
+		int slots = Integer.highestOneBit(Math.max(1, capacity * 2 - 1)) << 1;
+		mask = slots - 1;
+		slotStart = new int[slots + 1];
+		slotFill = new int[slots];
+		items = new int[capacity];
+		itemSlot = new int[capacity];
+		centerX = new float[capacity];
+		centerY = new float[capacity];
+	}
+
+	/**
+	 * Replaces the bubbles in the index. Takes O(bubbles + slots) and does not create any objects,
+	 * so it can be called every time the bubbles move.
+	 * @param x - <i>x position of the center of every bubble</i>
+	 * @param y - <i>y position of the center of every bubble</i>
+	 * @param bubbles - <i>amount of bubbles, at most the capacity</i>
+	 */
+	public void build(float[] x, float[] y, int bubbles) {
+		if(bubbles > items.length)
+			throw new IllegalArgumentException(bubbles + " bubbles do not fit in an index of " + items.length);
+		count = bubbles;
+		System.arraycopy(x, 0, centerX, 0, bubbles);
+		System.arraycopy(y, 0, centerY, 0, bubbles);
+
+		//count the bubbles in every slot, then turn the counts into slot starts
+		Arrays.fill(slotStart, 0);
+		for(int i = 0; i < bubbles; i++) {
+			itemSlot[i] = slotOf(cellOf(centerX[i]), cellOf(centerY[i]));
+			slotStart[itemSlot[i] + 1]++;
+		}
+		for(int s = 0; s < mask + 1; s++) {
+			slotStart[s + 1] += slotStart[s];
+			slotFill[s] = slotStart[s];
+		}
+		for(int i = 0; i < bubbles; i++)
+			items[slotFill[itemSlot[i]]++] = i;
+	}
+
+	/**
+	 * Obtains the amount of bubbles in the index.
+	 * @return int - <i>amount of bubbles</i>
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Finds the bubble that contains a point. A point on the edge of a bubble is inside it.
+	 * If bubbles overlap, the one whose center is closest wins.
+	 * @param x - <i>x position of the touch</i>
+	 * @param y - <i>y position of the touch</i>
+	 * @return int - <i>number of the bubble, in the order given to build(), or NO_HIT</i>
+	 */
+	public int hitTest(float x, float y) {
+		int best = NO_HIT;
+		float bestDistance = radius * radius;
+		int firstColumn = cellOf(x - radius);
+		int lastColumn = cellOf(x + radius);
+		int firstRow = cellOf(y - radius);
+		int lastRow = cellOf(y + radius);
+		for(int row = firstRow; row <= lastRow; row++) {
+			for(int column = firstColumn; column <= lastColumn; column++) {
+				int slot = slotOf(column, row);
+				//other cells can share the slot, their bubbles are simply too far away
+				for(int i = slotStart[slot]; i < slotStart[slot + 1]; i++) {
+					int bubble = items[i];
+					float dx = x - centerX[bubble];
+					float dy = y - centerY[bubble];
+					float distance = dx * dx + dy * dy;
+					if(distance < bestDistance || (distance == bestDistance && (best == NO_HIT || bubble < best))) {
+						best = bubble;
+						bestDistance = distance;
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Finds the bubbles that overlap a bubble. Only bubbles with a higher number are returned,
+	 * so calling this for every bubble finds every overlapping pair once.
+	 * @param bubble - <i>number of the bubble, in the order given to build()</i>
+	 * @param out - <i>receives the numbers of the overlapping bubbles</i>
+	 * @return int - <i>amount of bubbles written to <b>out</b>, at most its length</i>
+	 */
+	public int findOverlaps(int bubble, int[] out) {
+		float x = centerX[bubble];
+		float y = centerY[bubble];
+		float reach = cellSize;		//two bubbles touch when their centers are one diameter apart
+		//a cell is one diameter wide, so every bubble that can touch is in the cells next to this one
+		int column0 = cellOf(x);
+		int row0 = cellOf(y);
+		int firstColumn = column0 - 1;
+		int lastColumn = column0 + 1;
+		int firstRow = row0 - 1;
+		int lastRow = row0 + 1;
+		int visited = 0;
+		int found = 0;
+		for(int row = firstRow; row <= lastRow; row++) {
+			for(int column = firstColumn; column <= lastColumn; column++) {
+				//two of the cells can share a slot, its bubbles must only be returned once
+				int slot = slotOf(column, row);
+				boolean seen = false;
+				for(int v = 0; v < visited; v++)
+					seen |= visitedSlots[v] == slot;
+				if(seen)
+					continue;
+				visitedSlots[visited++] = slot;
+
+				for(int i = slotStart[slot]; i < slotStart[slot + 1]; i++) {
+					int other = items[i];
+					if(other <= bubble)
+						continue;
+					float dx = x - centerX[other];
+					float dy = y - centerY[other];
+					if(dx * dx + dy * dy < reach * reach && found < out.length)
+						out[found++] = other;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Obtains the cell column or row that holds a position.
+	 * @param position - <i>x or y position</i>
+	 * @return int - <i>column or row</i>
+	 */
+	private int cellOf(float position) {
+		return (int) Math.floor(position / cellSize);
+	}
+
+	/**
+	 * Hashes a cell into a slot of the table.
+	 * @param column - <i>cell column</i>
+	 * @param row - <i>cell row</i>
+	 * @return int - <i>slot</i>
+	 */
+	private int slotOf(int column, int row) {
+		int hash = column * 0x8da6b343 ^ row * 0xd8163841;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+}
@@ -0,0 +1,194 @@
+package com.chasingkytes.kana.practice;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.graphics.RectF;
+import android.util.Log;
+
+/**
+ * The picture of a bubble, shared by every KanaBubble on the screen.
+ *
+ * Only one grey bubble is kept in memory. It is decoded straight to the size a bubble is
+ * drawn at, so drawing never scales it, and it is colored green, red or blue while it is
+ * drawn by a paint that multiplies it with the color. The sprite of the AssetRegistry is shared
+ * by every game and only decoded at AssetRegistry.BUBBLE_SIZE; the registry frees it with
+ * recycle() when memory is low and no game is open. A game that draws bubbles at another size
+ * decodes its own BubbleSprite.
+ */
+public class BubbleSprite {
+
+	final static String TAG = "BubbleSprite";
+
+	//colors that turn the grey bubble into the original green, red and blue bubbles
+	final static int GREEN_TINT = 0xFFA3EE4C;
+	final static int RED_TINT = 0xFFEB5E4F;
+	final static int BLUE_TINT = 0xFF2BAAFF;
+
+	//the bubbles before the sprite: three 100x100 ARGB pictures in drawable-hdpi, measured from the removed files
+	final static int OLD_BITMAPS = 3;
+	final static int OLD_BITMAP_SIZE = 100;
+	final static float OLD_BITMAP_DENSITY = 1.5f;
+
+	private final Resources resources;
+	private final int resourceId;
+	private Bitmap sprite = null;
+	private int size = 0;
+	private final Paint greenPaint = tintPaint(GREEN_TINT);
+	private final Paint redPaint = tintPaint(RED_TINT);
+	private final Paint bluePaint = tintPaint(BLUE_TINT);
+	private final RectF dst = new RectF();
+	private boolean memoryLogged = false;
+
+	/**
+	 * Creates a BubbleSprite. The bitmap is decoded by the first ensure().
+	 * @param res - <i>resources of the application</i>
+	 * @param id - <i>drawable of the grey bubble, kept in drawable-nodpi so it is not scaled when decoded</i>
+	 */
+	public BubbleSprite(Resources res, int id) {
+		resources = res;
+		resourceId = id;
+	}
+
+	/**
+	 * Makes sure the bitmap is decoded at the given size. Only decodes when the size changes.
+	 * @param bubbleSize - <i>width and height a bubble is drawn at in pixels</i>
+	 * @return boolean - <i>true if the bitmap was decoded by this call</i>
+	 */
+	public boolean ensure(int bubbleSize) {
+		if(sprite != null && bubbleSize == size)
+			return false;
+		recycle();
+		size = Math.max(1, bubbleSize);
+
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeResource(resources, resourceId, options);
+		int sourceSize = Math.max(1, options.outWidth);
+
+		//skip rows and columns while decoding large pictures, then let the decoder scale to the exact size
+		int sample = 1;
+		while(sourceSize / (sample * 2) >= size)
+			sample *= 2;
+		options = new BitmapFactory.Options();
+		options.inSampleSize = sample;
+		options.inScaled = true;
+		options.inDensity = sourceSize / sample;
+		options.inTargetDensity = size;
+		sprite = BitmapFactory.decodeResource(resources, resourceId, options);
+		return true;
+	}
+
+	/**
+	 * Draws a bubble with its top left corner at a position. Must be preceded by ensure().
+	 * @param canvas - <i>canvas to draw on</i>
+	 * @param color - <i>GREEN, BLUE, or RED</i>
+	 * @param left - <i>x position</i>
+	 * @param top - <i>y position</i>
+	 */
+	public void draw(Canvas canvas, int color, float left, float top) {
+		canvas.drawBitmap(sprite, left, top, paintFor(color));
+	}
+
+	/**
+	 * Draws a bubble scaled to a size other than the one it was decoded at, such as while the
+	 * grid is being zoomed. Slower than draw() without a size. Must be preceded by ensure().
+	 * @param canvas - <i>canvas to draw on</i>
+	 * @param color - <i>GREEN, BLUE, or RED</i>
+	 * @param left - <i>x position</i>
+	 * @param top - <i>y position</i>
+	 * @param bubbleSize - <i>width and height to draw the bubble at in pixels</i>
+	 */
+	public void draw(Canvas canvas, int color, float left, float top, float bubbleSize) {
+		dst.set(left, top, left + bubbleSize, top + bubbleSize);
+		canvas.drawBitmap(sprite, null, dst, paintFor(color));
+	}
+
+	/**
+	 * Obtains the size the bitmap was decoded at.
+	 * @return int - <i>width and height in pixels, 0 before the first ensure()</i>
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Obtains the memory used by the bitmap.
+	 * @return int - <i>bytes, 0 if nothing is decoded</i>
+	 */
+	public int getByteCount() {
+		if(sprite == null)
+			return 0;
+		return sprite.getRowBytes() * sprite.getHeight();
+	}
+
+	/**
+	 * Writes the memory used by the bubble to the log the first time it is called, next to an
+	 * estimate of the memory used before the bubbles were shared. The old bitmaps are no longer
+	 * in the application, so their size is worked out from their measured size and density:
+	 * the system scaled them from hdpi to the density of the screen when they were decoded.
+	 * @param density - <i>density of the screen, 1.5 for hdpi</i>
+	 */
+	public void logMemory(float density) {
+		if(memoryLogged)
+			return;
+		memoryLogged = true;
+		int oldSize = Math.round(OLD_BITMAP_SIZE * density / OLD_BITMAP_DENSITY);
+		Log.i(TAG, "bubble bitmaps: " + getByteCount() + " bytes for one " + size + "x" + size
+				+ " sprite, estimated " + (OLD_BITMAPS * oldSize * oldSize * 4) + " bytes before for "
+				+ OLD_BITMAPS + " " + oldSize + "x" + oldSize + " bitmaps");
+	}
+
+	/**
+	 * Frees the bitmap. The next ensure() decodes it again.
+	 */
+	public void recycle() {
+		if(sprite != null) {
+			sprite.recycle();
+			sprite = null;
+		}
+	}
+
+	/**
+	 * Obtains the color a bubble is tinted with.
+	 * @param color - <i>GREEN, BLUE, or RED</i>
+	 * @return int - <i>ARGB color</i>
+	 */
+	public static int tintOf(int color) {
+		switch(color) {
+		case KanaBubble.RED:
+			return RED_TINT;
+		case KanaBubble.BLUE:
+			return BLUE_TINT;
+		default:
+			return GREEN_TINT;
+		}
+	}
+
+	private Paint paintFor(int color) {
+		switch(color) {
+		case KanaBubble.RED:
+			return redPaint;
+		case KanaBubble.BLUE:
+			return bluePaint;
+		default:
+			return greenPaint;
+		}
+	}
+
+	/**
+	 * Creates a paint that multiplies the grey bubble with a color.
+	 * @param tint - <i>color</i>
+	 * @return Paint
+	 */
+	private static Paint tintPaint(int tint) {
+		Paint paint = new Paint();
+		paint.setFilterBitmap(true);
+		paint.setColorFilter(new PorterDuffColorFilter(tint, PorterDuff.Mode.MULTIPLY));
+		return paint;
+	}
+}
@@ -0,0 +1,36 @@
+package com.chasingkytes.kana.practice;
+
+/**
+ * Packs two floats into one long, so a pair of values such as an x and y position
+ * can be stored and read in a single step by different threads.
+ */
+public class FloatPair {
+
+	/**
+	 * Packs two floats into a long.
+	 * @param first - <i>value stored in the high 32 bits</i>
+	 * @param second - <i>value stored in the low 32 bits</i>
+	 * @return long - <i>packed pair</i>
+	 */
+	public static long pack(float first, float second) {
+		return ((long) Float.floatToIntBits(first) << 32) | (Float.floatToIntBits(second) & 0xffffffffL);
+	}
+
+	/**
+	 * Obtains the first float of a packed pair.
+	 * @param pair - <i>pair packed with pack()</i>
+	 * @return float - <i>first value</i>
+	 */
+	public static float first(long pair) {
+		return Float.intBitsToFloat((int) (pair >>> 32));
+	}
+
+	/**
+	 * Obtains the second float of a packed pair.
+	 * @param pair - <i>pair packed with pack()</i>
+	 * @return float - <i>second value</i>
+	 */
+	public static float second(long pair) {
+		return Float.intBitsToFloat((int) pair);
+	}
+}
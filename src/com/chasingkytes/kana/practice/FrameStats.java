@@ -0,0 +1,200 @@
+package com.chasingkytes.kana.practice;
+
+import java.io.IOException;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Paint.Align;
+
+/**
+ * Measures how long each part of a frame takes on the render thread: waiting for lockCanvas(),
+ * drawing, and unlockCanvasAndPost().
+ *
+ * The render thread calls beginFrame(), canvasLocked(), drawFinished() and framePosted() in
+ * that order. The times of the last FRAME_HISTORY frames are kept in ring buffers of
+ * microseconds, so measuring a frame costs four clock reads and does not create any objects.
+ * The overlay is only built and drawn when it is turned on.
+ */
+public class FrameStats {
+
+	//amount of frames kept in the ring buffers
+	final static int FRAME_HISTORY = 128;
+	//frames that take longer than one display refresh at 60Hz are counted as janky
+	final static long JANK_MICROS = 16000;
+
+	final static int LOCK = 0;
+	final static int DRAW = 1;
+	final static int POST = 2;
+	final static int TOTAL = 3;
+	final static int PARTS = 4;
+
+	private final int[][] micros = new int[PARTS][FRAME_HISTORY];
+	private final long[] frameEnds = new long[FRAME_HISTORY];	//System.nanoTime() when each frame was posted
+	private long frameCount = 0;
+	private long jankCount = 0;
+
+	//only used by the render thread while a frame is in progress
+	private long frameStart, lockEnd, drawEnd;
+
+	private final Paint overlayPaint = new Paint();
+	private final char[] overlayText = new char[96];
+
+	/**
+	 * Creates the FrameStats.
+	 */
+	public FrameStats() {
+		overlayPaint.setColor(Color.YELLOW);
+		overlayPaint.setTextAlign(Align.LEFT);
+		overlayPaint.setTextSize(14);
+	}
+
+	/**
+	 * Marks the start of a frame, just before lockCanvas() is called.
+	 */
+	public void beginFrame() {
+		frameStart = System.nanoTime();
+	}
+
+	/**
+	 * Marks the moment lockCanvas() returned.
+	 */
+	public void canvasLocked() {
+		lockEnd = System.nanoTime();
+	}
+
+	/**
+	 * Marks the end of drawing, just before unlockCanvasAndPost() is called.
+	 */
+	public void drawFinished() {
+		drawEnd = System.nanoTime();
+	}
+
+	/**
+	 * Marks the moment unlockCanvasAndPost() returned and stores the times of the frame.
+	 */
+	public void framePosted() {
+		long end = System.nanoTime();
+		synchronized(this) {
+			int slot = (int) (frameCount % FRAME_HISTORY);
+			micros[LOCK][slot] = (int) ((lockEnd - frameStart) / 1000);
+			micros[DRAW][slot] = (int) ((drawEnd - lockEnd) / 1000);
+			micros[POST][slot] = (int) ((end - drawEnd) / 1000);
+			micros[TOTAL][slot] = (int) ((end - frameStart) / 1000);
+			frameEnds[slot] = end;
+			if(micros[TOTAL][slot] > JANK_MICROS)
+				jankCount++;
+			frameCount++;
+		}
+	}
+
+	/**
+	 * Obtains the total amount of frames measured.
+	 * @return long - <i>frame count</i>
+	 */
+	public synchronized long getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * Obtains the total amount of frames that took longer than JANK_MICROS.
+	 * @return long - <i>janky frame count</i>
+	 */
+	public synchronized long getJankCount() {
+		return jankCount;
+	}
+
+	/**
+	 * Obtains the amount of frames posted during the last second.
+	 * @return int - <i>frames in the last second</i>
+	 */
+	public synchronized int getFramesPerSecond() {
+		long since = System.nanoTime() - 1000000000L;
+		int count = (int) Math.min(frameCount, FRAME_HISTORY);
+		int fps = 0;
+		for(int i = 0; i < count; i++)
+			if(frameEnds[i] - since > 0)
+				fps++;
+		return fps;
+	}
+
+	/**
+	 * Obtains the average time of a part of the frame over the kept frames.
+	 * @param part - <i>LOCK, DRAW, POST, or TOTAL</i>
+	 * @return int - <i>time in microseconds, 0 if no frame was measured</i>
+	 */
+	public synchronized int getAverageMicros(int part) {
+		int count = (int) Math.min(frameCount, FRAME_HISTORY);
+		if(count == 0)
+			return 0;
+		long sum = 0;
+		for(int i = 0; i < count; i++)
+			sum += micros[part][i];
+		return (int) (sum / count);
+	}
+
+	/**
+	 * Obtains the longest time of a part of the frame over the kept frames.
+	 * @param part - <i>LOCK, DRAW, POST, or TOTAL</i>
+	 * @return int - <i>time in microseconds, 0 if no frame was measured</i>
+	 */
+	public synchronized int getMaxMicros(int part) {
+		int count = (int) Math.min(frameCount, FRAME_HISTORY);
+		int max = 0;
+		for(int i = 0; i < count; i++)
+			max = Math.max(max, micros[part][i]);
+		return max;
+	}
+
+	/**
+	 * Writes a summary followed by the times of every kept frame, oldest first,
+	 * as comma separated lines with the times in microseconds.
+	 * @param out - <i>where the lines are written</i>
+	 * @throws IOException if <b>out</b> can not be written to
+	 */
+	public synchronized void dump(Appendable out) throws IOException {
+		out.append("frames=").append(String.valueOf(frameCount));
+		out.append(" janky=").append(String.valueOf(jankCount));
+		out.append(" fps=").append(String.valueOf(getFramesPerSecond())).append('\n');
+		out.append("frame,lock_us,draw_us,post_us,total_us\n");
+		int count = (int) Math.min(frameCount, FRAME_HISTORY);
+		for(long frame = frameCount - count; frame < frameCount; frame++) {
+			int slot = (int) (frame % FRAME_HISTORY);
+			out.append(String.valueOf(frame));
+			for(int part = 0; part < PARTS; part++)
+				out.append(',').append(String.valueOf(micros[part][slot]));
+			out.append('\n');
+		}
+	}
+
+	/**
+	 * Draws the frames per second, average lock, draw and post times, and the janky frame count
+	 * at the left edge. Called by the render thread before the frame is posted.
+	 * @param canvas - <i>canvas to draw on</i>
+	 * @param baselineY - <i>baseline of the text, below the HUD</i>
+	 */
+	public void drawOverlay(Canvas canvas, float baselineY) {
+		int pos = GameHud.appendString(overlayText, 0, "fps ");
+		pos = GameHud.appendInt(overlayText, pos, getFramesPerSecond());
+		pos = appendMillis(overlayText, GameHud.appendString(overlayText, pos, " lock "), getAverageMicros(LOCK));
+		pos = appendMillis(overlayText, GameHud.appendString(overlayText, pos, " draw "), getAverageMicros(DRAW));
+		pos = appendMillis(overlayText, GameHud.appendString(overlayText, pos, " post "), getAverageMicros(POST));
+		pos = GameHud.appendString(overlayText, pos, " ms jank ");
+		pos = GameHud.appendInt(overlayText, pos, (int) getJankCount());
+		canvas.drawText(overlayText, 0, pos, 3, baselineY, overlayPaint);
+	}
+
+	/**
+	 * Writes a time in milliseconds with one decimal place into a char array.
+	 * @param buffer - <i>array to write into</i>
+	 * @param pos - <i>index to start writing at</i>
+	 * @param micros - <i>time in microseconds</i>
+	 * @return int - <i>index after the last written character</i>
+	 */
+	private static int appendMillis(char[] buffer, int pos, int micros) {
+		pos = GameHud.appendInt(buffer, pos, micros / 1000);
+		buffer[pos++] = '.';
+		buffer[pos++] = (char) ('0' + micros / 100 % 10);
+		return pos;
+	}
+}
@@ -3,22 +3,24 @@ package com.chasingkytes.kana.practice;
 import android.app.Activity;
 import android.content.Context;
 import android.content.pm.ActivityInfo;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Paint.Align;
-import android.media.AudioManager;
-import android.media.SoundPool;
 import android.os.Bundle;
 import android.os.SystemClock;
+import android.util.Log;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.ScaleGestureDetector.OnScaleGestureListener;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.View;
 import android.view.View.OnTouchListener;
 
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * Handles the interaction between the user and the game. 
  * 
@@ -28,261 +30,725 @@ import android.view.View.OnTouchListener;
  * @author Amy Lim
  *
  */
-public class GFXSurface extends Activity implements OnTouchListener {
+public class GFXSurface extends Activity implements OnTouchListener, OnScaleGestureListener {
+
+	final static String TAG = "GFXSurface";
+
+	//key of the saved game in the instance state
+	final static String SNAPSHOT_KEY = "snapshot";
+
+	//distance in dp a finger has to move before a touch pans the grid instead of choosing a bubble
+	final static float TOUCH_SLOP = 8;
 
 	GFXSurfaceView ourSurfaceView;
-	Bitmap green_bubble_bitmap;
-	Bitmap red_bubble_bitmap;
-	Bitmap blue_bubble_bitmap;
-	KanaBubbleGrid myBubbleGrid;
+	//the atlas and the bubble are built once for the application, usually while the menu is open
+	AssetRegistry assets;
+	StartupTrace startupTrace;
+	//one grey bubble, colored while it is drawn: the shared one at AssetRegistry.BUBBLE_SIZE, never decoded again,
+	//and a copy of this game for any other size, decoded by the render thread
+	BubbleSprite bubbleSprite;
+	BubbleSprite scaledSprite;
+	//the grid is replaced with a single reference swap, so the render thread never sees half of a new grid
+	final AtomicReference<KanaBubbleGrid> myBubbleGrid = new AtomicReference<KanaBubbleGrid>();
+	GridPrefetcher gridPrefetcher;		//null in the floating bubbles mode
+	BubbleField bubbleField;			//null unless the floating bubbles mode is played
+	KanaGridGenerator generator;
+	TargetScheduler targetScheduler;
+	MasteryStore masteryStore;
+	volatile long questionStartTime;
+	final ReactionStats reactionStats = new ReactionStats();
+	//System.nanoTime() when the current grid was first posted to the screen
+	volatile long gridShownNanos;
+	//System.nanoTime() when the reveal before the current grid ended, 0 once its first frame was posted
+	//only used by the render thread
+	long switchStartNanos = 0;
 	
-	SoundPool sp;
-	int pop = 0;
-	int pop_fail = 0;
+	//sounds are shared by every game and decoded once
+	AudioEngine audio;
 	
-	long sleepEnd = 0;
-	float sideMargin;
-	float topMargin;
+	final GameStateMachine gameState = new GameStateMachine(GameStateMachine.TOUCH_DROP);
+	//receives the touch kept during the reveal, only used by the render thread
+	final float[] pendingTouch = new float[2];
+	//side and top margin of the floating bubbles packed with FloatPair, written by the render thread and read by touch processing
+	volatile long margins;
+	//position and zoom of the grid, changed by gestures and read by the render thread and touch processing
+	final GridViewport viewport = new GridViewport();
+	ScaleGestureDetector scaleDetector;		//null in the floating bubbles mode
+	//the grids and touches of the game, written to a file when the game is paused
+	InputRecorder recorder;					//null in the floating bubbles mode
+	final float[] touchTransform = new float[3];	//only used by processTouch()
+	volatile boolean zooming = false;
+	//only used by the UI thread while a finger is down
+	float touchDownX, touchDownY, lastTouchX, lastTouchY;
+	boolean touchAnswered;		//the touch already chose a bubble when the finger went down
+	boolean touchMoved;			//the touch panned or zoomed, so it does not choose a bubble
 
-	int correct = 0;
-	int wrong = 0;
-	int questionNum = 1;
+	volatile int correct = 0;
+	volatile int wrong = 0;
+	volatile int questionNum = 1;
 
 	int questionMode = 0;
 	int answerMode = 2;
+	int kanaSet = KanaTable.BASIC_SET;
 	int rows = 1;
 	int columns = 4;
 	boolean soundOn = true;
 	boolean showTimer = true;
 	boolean showScore = true;
-	long startTime;
+	boolean showFrameStats = false;
+	boolean floating = false;
+	int bubbleCount = 0;
+	//uptime the timer counts from, moved forward by the time the game is paused
+	volatile long startTime;
+	long pausedAt = 0;		//uptime of the last onPause(), 0 while the game is running
 
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
+		assets = KanaPracticeApplication.getAssetRegistry(this);
+		startupTrace = new StartupTrace(!assets.isReady());
+		assets.acquire();
+		assets.warmUp();
+		bubbleSprite = assets.getBubbleSprite();
+		scaledSprite = new BubbleSprite(getResources(), R.drawable.bubble);
 		ourSurfaceView = new GFXSurfaceView(this);
 		ourSurfaceView.setOnTouchListener(this);
 		setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_PORTRAIT);
 		setContentView(ourSurfaceView);
 
-		//set up the bubble bitmaps
-		green_bubble_bitmap = BitmapFactory.decodeResource(getResources(), R.drawable.bubble_green);
-		red_bubble_bitmap = BitmapFactory.decodeResource(getResources(), R.drawable.bubble_red);
-		blue_bubble_bitmap = BitmapFactory.decodeResource(getResources(), R.drawable.bubble_blue);
-
 		//obtain values from bundle (user preferences from the menu (MainActivity.class))
 		Bundle basket = getIntent().getExtras();
 		questionMode = basket.getInt("question");
 		answerMode = basket.getInt("answer");
+		kanaSet = basket.getInt("kanaSet", KanaTable.BASIC_SET);
 		rows = basket.getInt("rows");
 		columns = basket.getInt("columns");
 		soundOn = basket.getBoolean("sound");
 		showTimer = basket.getBoolean("timer");
 		showScore = basket.getBoolean("score");
+		showFrameStats = basket.getBoolean("frameStats", false);
+		floating = basket.getBoolean("floating", false);
+		bubbleCount = Math.min(basket.getInt("bubbles", rows * columns), MainActivity.MAX_FLOATING_BUBBLES);
 		
-		//initialize the bubble grid
-		myBubbleGrid = new KanaBubbleGrid(rows, columns);
+		//initialize the bubble grid, or the floating bubbles
+		//targets the user struggles with are asked more often than the ones they know
+		generator = new KanaGridGenerator(new Random(), kanaSet);
+		targetScheduler = new LeitnerScheduler(generator.getRandom(), kanaSet);
+		if(floating) {
+			//the bubbles are placed once the size of the surface is known
+			bubbleField = new BubbleField(bubbleCount, 50, generator, targetScheduler, generator.getRandom());
+		} else {
+			myBubbleGrid.set(new KanaBubbleGrid(rows, columns, generator, targetScheduler));
+			scaleDetector = new ScaleGestureDetector(this, this);
+			
+			//the grids for the next questions are built in the background
+			//the thread waits for onResume() and lives until onDestroy()
+			gridPrefetcher = new GridPrefetcher(rows, columns, generator, targetScheduler);
+			gridPrefetcher.start();
+		}
 
-		//start the timer
-		startTime = SystemClock.uptimeMillis();
+		//per kana scores are kept between games, in one store shared by every game
+		masteryStore = MasteryStore.acquire(getFilesDir());
 
-		//set up the sounds
-		sp = new SoundPool(5, AudioManager.STREAM_MUSIC, 0);
-		pop = sp.load(this, R.raw.water_droplet, 1);
-		pop_fail = sp.load(this, R.raw.ice_block, 1);
+		//start the timer, or continue the game that was closed in the background
+		long now = SystemClock.uptimeMillis();
+		startTime = now;
+		questionStartTime = now;
+		gridShownNanos = System.nanoTime();
+		if(savedInstanceState != null)
+			restoreGame(GameSnapshot.decode(savedInstanceState.getByteArray(SNAPSHOT_KEY)), now);
+		if(!floating) {
+			//a continued game is recorded from the grid it continues with
+			recorder = new InputRecorder(rows, columns, questionMode, answerMode, now);
+			recorder.recordGrid(now, myBubbleGrid.get());
+		}
+		if(showTimer)
+			ourSurfaceView.scheduler.setTick(startTime, 1000);
+
+		//set up the sounds, a tap before they are decoded is played once they are
+		audio = AppAudio.acquire(this);
+		audio.preloadPronunciation(floating ? bubbleField.getTargetIndex() : myBubbleGrid.get().getTargetIndex());
+		startupTrace.mark("created");
 	}
 
 	@Override
 	protected void onPause() {
 		super.onPause();
 		ourSurfaceView.pause();
+		if(gridPrefetcher != null) {
+			gridPrefetcher.pause();
+			if(gridPrefetcher.getShownCount() > 0)
+				Log.i(TAG, String.format("next grid shown %.1f ms after the reveal on average, %.1f ms at most, %d of %d grids built while waiting",
+						gridPrefetcher.getAverageNanos() / 1e6, gridPrefetcher.getMaxNanos() / 1e6,
+						gridPrefetcher.getMisses(), gridPrefetcher.getShownCount()));
+		}
+		masteryStore.flush();
+		if(recorder != null)
+			recorder.writeInBackground(getFilesDir());
+		reactionStats.writeInBackground(getFilesDir());
+		pausedAt = SystemClock.uptimeMillis();
+	}
+
+	@Override
+	protected void onSaveInstanceState(Bundle outState) {
+		super.onSaveInstanceState(outState);
+		outState.putByteArray(SNAPSHOT_KEY, saveGame().encode());
+	}
+
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		ourSurfaceView.shutdown();
+		if(gridPrefetcher != null)
+			gridPrefetcher.shutdown();
+		if(recorder != null)
+			recorder.close();
+		reactionStats.close();
+		MasteryStore.release();
+		AppAudio.release();
+		
+		//the render thread has ended, the shared bitmaps stay loaded for the next game
+		scaledSprite.recycle();
+		assets.release();
 	}
 
 	@Override
 	protected void onResume() {
 		super.onResume();
+		if(gridPrefetcher != null)
+			gridPrefetcher.resume();
+		if(pausedAt != 0) {
+			//the time spent in the background is not counted, the render thread is still parked
+			long paused = SystemClock.uptimeMillis() - pausedAt;
+			pausedAt = 0;
+			startTime += paused;
+			questionStartTime += paused;
+			gridShownNanos += paused * 1000000;
+			if(showTimer)
+				ourSurfaceView.scheduler.setTick(startTime, 1000);
+		}
 		ourSurfaceView.resume();
+		startupTrace.mark("resumed");
 	}
 
 	public boolean onTouch(View v, MotionEvent event) {
-		//will not process any touch events that happened while the thread was asleep
-		//(prevents the user from queuing up many touch events)
-		if(event.getEventTime() > sleepEnd) {
-			int sound = myBubbleGrid.processGridTouch(event.getX(), event.getY(), sideMargin, topMargin);
-			
-			switch(sound) {
-			case KanaBubbleGrid.TARGET_HIT:
-				//play the appropriate sound if the user gets the answer correct
-				if(soundOn && pop != 0)
-					sp.play(pop, 1, 1, 0, 0, 1);
-				
-				//allows the user to see their correct answer for 1 second
-				try {
-					Thread.sleep(1000);	
-					sleepEnd = SystemClock.uptimeMillis();
-				} catch (InterruptedException e) {
-					e.printStackTrace();
+		if(scaleDetector == null) {
+			//floating bubbles cannot be panned or zoomed
+			answerTouch(event.getX(), event.getY(), event.getEventTime());
+			return false;
+		}
+
+		scaleDetector.onTouchEvent(event);
+		float x = event.getX();
+		float y = event.getY();
+		switch(event.getAction() & MotionEvent.ACTION_MASK) {
+		case MotionEvent.ACTION_DOWN:
+			touchDownX = lastTouchX = x;
+			touchDownY = lastTouchY = y;
+			touchMoved = false;
+			//a grid that cannot be zoomed is answered as soon as it is touched,
+			//otherwise the finger might still pan or zoom and the bubble is chosen when it is lifted
+			touchAnswered = viewport.isLaidOut() && viewport.getMaxZoom() == 1;
+			if(touchAnswered)
+				answerTouch(x, y, event.getEventTime());
+			break;
+		case MotionEvent.ACTION_POINTER_DOWN:
+			touchMoved = true;
+			break;
+		case MotionEvent.ACTION_POINTER_UP:
+			//the remaining finger becomes the first one, so the next move must not jump
+			lastTouchX = Float.NaN;
+			break;
+		case MotionEvent.ACTION_MOVE:
+			if(event.getPointerCount() == 1 && !scaleDetector.isInProgress() && !Float.isNaN(lastTouchX)) {
+				float slop = TOUCH_SLOP * getResources().getDisplayMetrics().density;
+				float dx = x - touchDownX;
+				float dy = y - touchDownY;
+				if(dx * dx + dy * dy > slop * slop)
+					touchMoved = true;
+				if(touchMoved && viewport.isScrollable()) {
+					viewport.pan(x - lastTouchX, y - lastTouchY);
+					ourSurfaceView.scheduler.requestRender();
 				}
-				
-				//new grid is regenerated
-				myBubbleGrid = new KanaBubbleGrid(rows, columns);
-				
-				//increase the question number and the amount of the user's correct answers
+			}
+			lastTouchX = x;
+			lastTouchY = y;
+			break;
+		case MotionEvent.ACTION_UP:
+			if(!touchAnswered && !touchMoved)
+				answerTouch(x, y, event.getEventTime());
+			break;
+		}
+		return true;
+	}
+
+	/**
+	 * Chooses the bubble under a touch.
+	 * @param x - <i>x position of the user's touch</i>
+	 * @param y - <i>y position of the user's touch</i>
+	 * @param eventTime - <i>uptime in milliseconds when the touch happened</i>
+	 */
+	private void answerTouch(float x, float y, long eventTime) {
+		//touches are only processed while the user is looking for the target,
+		//the state machine decides what happens to touches during the reveal
+		if(gameState.acceptTouch(x, y))
+			processTouch(x, y, eventTime);
+	}
+
+	public boolean onScaleBegin(ScaleGestureDetector detector) {
+		zooming = true;
+		touchMoved = true;
+		return true;
+	}
+
+	public boolean onScale(ScaleGestureDetector detector) {
+		viewport.zoom(detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+		ourSurfaceView.scheduler.requestRender();
+		return true;
+	}
+
+	public void onScaleEnd(ScaleGestureDetector detector) {
+		//draw once more, so the bubbles are decoded at the size the zoom ended at
+		zooming = false;
+		ourSurfaceView.scheduler.requestRender();
+	}
+
+	/**
+	 * Checks the user's touch against the game grid and updates the score.
+	 * Only the touch, the score, the recording, the target scheduler and the start of the reveal
+	 * are done while holding the game lock, which the render thread takes when it changes the
+	 * question. Sounds and the stores are updated after the lock is released, so a touch never
+	 * keeps a frame waiting for them.
+	 * @param x - <i>x position of the user's touch</i>
+	 * @param y - <i>y position of the user's touch</i>
+	 * @param eventTime - <i>uptime in milliseconds when the touch happened</i>
+	 */
+	void processTouch(float x, float y, long eventTime) {
+		int sound;
+		int target;
+		long now = SystemClock.uptimeMillis();
+		long questionMs;
+		synchronized(this) {
+			if(bubbleField != null) {
+				long m = margins;
+				sound = bubbleField.processTouch(x, y, FloatPair.first(m), FloatPair.second(m));
+				target = bubbleField.getTargetIndex();
+			} else {
+				//the grid checks the touch in its own units, wherever it is panned or zoomed to
+				//the transform is copied once, so the recording converts the touch exactly the same way
+				KanaBubbleGrid grid = myBubbleGrid.get();
+				viewport.getTransform(touchTransform);
+				long g = GridViewport.toGrid(touchTransform, x, y);
+				sound = grid.processGridTouch(FloatPair.first(g), FloatPair.second(g), 0, 0);
+				target = grid.getTargetIndex();
+				//only appends to memory, and keeps the touches in order with the grids
+				recorder.recordTouch(eventTime, x, y, touchTransform, sound);
+			}
+			questionMs = now - questionStartTime;
+			if(sound == KanaBubbleGrid.TARGET_HIT) {
+				//allows the user to see their correct answer for 1 second,
+				//the game loop sets up the next question once the reveal is over
+				gameState.startReveal(now);
 				correct++;
-				questionNum++;
-				break;
-				
-			case KanaBubbleGrid.TARGET_MISS:
-				//when the user hits the wrong bubble, play the appropriate sound and increase their wrong guess count
-				if(soundOn && pop_fail != 0)
-					sp.play(pop_fail, 1, 1, 0, 0, 1);
+				//before the lock is released, so the next target is chosen knowing this answer
+				targetScheduler.recordHit(target);
+			} else if(sound == KanaBubbleGrid.TARGET_MISS) {
 				wrong++;
-				break;
-			case KanaBubbleGrid.TARGET_NONE:
-				break;
+				targetScheduler.recordMiss(target);
 			}
 		}
-		return false;
+
+		//reaction time: from the grid being shown to the touch, leaving out the time the touch
+		//waited in the input queue. The event time only has millisecond precision.
+		long queuedMs = Math.max(0, now - eventTime);
+		long reactionMicros = Math.max(0, (System.nanoTime() - gridShownNanos) / 1000 - queuedMs * 1000);
+		
+		switch(sound) {
+		case KanaBubbleGrid.TARGET_HIT:
+			//play the appropriate sound if the user gets the answer correct
+			if(soundOn) {
+				audio.playEffect(AudioEngine.HIT, 1);
+				audio.playPronunciation(target, 1);
+			}
+			ourSurfaceView.scheduler.requestRenderAt(gameState.getRevealEnd());
+			masteryStore.recordHit(target, questionMs);
+			reactionStats.recordHit(target, questionMode, answerMode, reactionMicros);
+			break;
+			
+		case KanaBubbleGrid.TARGET_MISS:
+			//when the user hits the wrong bubble, play the appropriate sound
+			if(soundOn)
+				audio.playEffect(AudioEngine.MISS, 1);
+			masteryStore.recordMiss(target);
+			reactionStats.recordMiss(questionMode, answerMode, reactionMicros);
+			break;
+		case KanaBubbleGrid.TARGET_NONE:
+			break;
+		}
+		
+		//redraw the screen if the game has changed
+		if(sound != KanaBubbleGrid.TARGET_NONE)
+			ourSurfaceView.scheduler.requestRender();
+	}
+
+	/**
+	 * Takes a snapshot of the game in progress.
+	 * @return GameSnapshot - <i>state of the game</i>
+	 */
+	synchronized GameSnapshot saveGame() {
+		long now = pausedAt != 0 ? pausedAt : SystemClock.uptimeMillis();
+		GameSnapshot snapshot = new GameSnapshot();
+		snapshot.flags = (floating ? GameSnapshot.FLOATING : 0)
+				| (gameState.getState() == GameStateMachine.PLAYING ? 0 : GameSnapshot.REVEAL);
+		snapshot.questionMode = questionMode;
+		snapshot.answerMode = answerMode;
+		snapshot.kanaSet = kanaSet;
+		snapshot.rows = rows;
+		snapshot.columns = columns;
+		snapshot.correct = correct;
+		snapshot.wrong = wrong;
+		snapshot.questionNum = questionNum;
+		snapshot.elapsedMs = now - startTime;
+		snapshot.questionElapsedMs = now - questionStartTime;
+		if(bubbleField != null)
+			snapshot.setBubbles(bubbleField);
+		else
+			snapshot.setBubbles(myBubbleGrid.get());
+		return snapshot;
+	}
+
+	/**
+	 * Continues a game from a snapshot. Snapshots of a game with other options are ignored.
+	 * Called before the first frame is drawn.
+	 * @param snapshot - <i>saved game, may be null</i>
+	 * @param now - <i>current uptime in milliseconds</i>
+	 */
+	synchronized void restoreGame(GameSnapshot snapshot, long now) {
+		int bubbles = floating ? bubbleField.getCount() : rows * columns;
+		if(snapshot == null || !snapshot.matches(floating, questionMode, answerMode, kanaSet, rows, columns, bubbles))
+			return;
+		correct = snapshot.correct;
+		wrong = snapshot.wrong;
+		questionNum = snapshot.questionNum;
+		//the timer continues from the time played, not from when the game was first started
+		startTime = now - snapshot.elapsedMs;
+		questionStartTime = now - snapshot.questionElapsedMs;
+		if(bubbleField != null)
+			bubbleField.restore(snapshot.kana, snapshot.colors, snapshot.targetIndex);
+		else
+			myBubbleGrid.get().restore(snapshot.kana, snapshot.colors, snapshot.targetIndex);
+		if((snapshot.flags & GameSnapshot.REVEAL) != 0) {
+			//the target was found just before the game was closed, show it again before the next question
+			gameState.startReveal(now);
+			ourSurfaceView.scheduler.requestRenderAt(gameState.getRevealEnd());
+		}
+	}
+
+	/**
+	 * Moves the game forward in time. Called by the game loop before each frame.
+	 * @param now - <i>current uptime in milliseconds</i>
+	 */
+	void updateGame(long now) {
+		if(!gameState.update(now))
+			return;
+		int target;
+		//a snapshot is never taken halfway through the change of question
+		synchronized(this) {
+			//the reveal is over, so a new grid is regenerated and the question number is increased
+			//the old grid is no longer drawn, so it can be refilled for a later question
+			//floating bubbles keep moving and are only given new Kana
+			if(bubbleField != null) {
+				bubbleField.regenerate(generator);
+				target = bubbleField.getTargetIndex();
+			} else {
+				//the game loop may wake up a little after the end of the reveal
+				switchStartNanos = System.nanoTime() - Math.max(0, now - gameState.getRevealEnd()) * 1000000;
+				gridPrefetcher.recycle(myBubbleGrid.getAndSet(gridPrefetcher.next()));
+				//recorded before touches are accepted again, so no touch of this grid comes before it
+				recorder.recordGrid(now, myBubbleGrid.get());
+				target = myBubbleGrid.get().getTargetIndex();
+			}
+			questionStartTime = now;
+			//replaced by the exact time once the new grid is posted
+			gridShownNanos = System.nanoTime();
+			questionNum++;
+			gameState.finishTransition();
+		}
+		audio.preloadPronunciation(target);
+
+		//process the touch that was kept during the reveal, if any
+		if(gameState.takePendingTouch(pendingTouch))
+			processTouch(pendingTouch[0], pendingTouch[1], SystemClock.uptimeMillis());
 	}
 
 	/**
 	 * Displays the graphics of the game.
 	 * @author Amy Lim
 	 */
-	public class GFXSurfaceView extends SurfaceView implements Runnable {
+	public class GFXSurfaceView extends SurfaceView implements GameLoop.Renderer, SurfaceHolder.Callback {
+
+		//space kept free above and below the bubbles for the HUD and the target
+		final static int FIELD_TOP = 60;
+		final static int FIELD_BOTTOM = 170;
+		//bubbles smaller than this many pixels are drawn as colored squares without Kana
+		final static float GLYPH_MIN_SIZE = 20;
 
 		SurfaceHolder ourHolder;
-		Thread ourThread = null;
-		boolean isRunning = false;
+		final RenderScheduler scheduler = new RenderScheduler();
+		//one render thread for the whole game, parked while paused or while there is no surface
+		final GameLoop loop = new GameLoop("GameLoop", scheduler, this);
+		final KanaGlyphAtlas glyphAtlas;
+		final GameHud hud = new GameHud();
+		final FrameStats frameStats = new FrameStats();
+		final Paint textPaint = new Paint();
+		final Paint targetPaint = new Paint();
+		final Paint tilePaint = new Paint();
+		BubbleSprite drawnSprite = null;		//returned by the last spriteFor(), stretched while zooming
+		//only used by the render thread
+		boolean assetsLoaded = false;
+		int shownQuestion = 0;				//question of the last posted frame
+		long lastStepNanos = 0;				//time the floating bubbles were last advanced, 0 after a pause
+		int fieldWidth = 0, fieldHeight = 0;		//size the bubbles or the grid were last laid out in
+		final float[] transform = new float[3];		//position and scale of the grid in this frame
 
 		public GFXSurfaceView(Context context) {
 			super(context);
+			glyphAtlas = assets.getGlyphAtlas();
+			textPaint.setColor(Color.BLACK);
+			textPaint.setTextAlign(Align.CENTER);
+			textPaint.setTextSize(70);
+			targetPaint.setColor(Color.WHITE);
+			targetPaint.setTextAlign(Align.CENTER);
+			targetPaint.setTextSize(70);
 			ourHolder = getHolder();		//tells us if the surface is valid and locks the canvas so that no one else can draw on it
+			ourHolder.addCallback(this);
+			loop.start();
+		}
+
+		public void surfaceCreated(SurfaceHolder holder) {
+			scheduler.setSurfaceReady(true);
+		}
+
+		public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+			scheduler.requestRender();
+		}
+
+		public void surfaceDestroyed(SurfaceHolder holder) {
+			//the surface must not be drawn on once this returns
+			scheduler.setSurfaceReady(false);
+			scheduler.awaitIdle();
 		}
 
+		/**
+		 * Parks the render thread. Nothing is drawn or updated once this returns.
+		 */
 		public void pause() {
-			isRunning = false;
-			while(true) {
-				try {
-					ourThread.join();
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-				break;
-			}
-			ourThread = null;
+			loop.pause();
 		}
 
+		/**
+		 * Lets the parked render thread draw again.
+		 */
 		public void resume() {
-			isRunning = true;
-			ourThread = new Thread(this);	//will use the run() defined in this class
-			ourThread.start();
+			lastStepNanos = 0;		//the bubbles do not move while the game is paused
+			loop.resume();
 		}
 
-		public void run() {
-			while(isRunning) {
-				if(!ourHolder.getSurface().isValid())
-					continue;
-
-				//set up and lock canvas
-				Canvas canvas = ourHolder.lockCanvas();
-
-				//draw on the canvas
-				canvas.drawColor(Color.BLACK);
-
-				//display the bubble grid
-				sideMargin = (canvas.getWidth() - myBubbleGrid.getWidth()) / 2;
-				topMargin = (canvas.getHeight() - myBubbleGrid.getHeight()) / 4;
-				for(int row = 0; row < myBubbleGrid.getMaxRows(); row++) {
-					for(int column = 0; column < myBubbleGrid.getMaxColumns(); column++) {
-						KanaBubble tempBubble = myBubbleGrid.getKanaBubble(row, column);
-
-						switch(tempBubble.color) {
-						case KanaBubble.GREEN:
-							canvas.drawBitmap(green_bubble_bitmap, tempBubble.getX() + sideMargin, tempBubble.getY() + topMargin, null);
-							break;
-						case KanaBubble.RED:
-							canvas.drawBitmap(red_bubble_bitmap, tempBubble.getX() + sideMargin, tempBubble.getY() + topMargin, null);
-							break;
-						case KanaBubble.BLUE:
-							canvas.drawBitmap(blue_bubble_bitmap, tempBubble.getX() + sideMargin, tempBubble.getY() + topMargin, null);
-							break;
-						}
-
-						Paint textPaint = new Paint();
-						textPaint.setColor(Color.BLACK);
-						textPaint.setTextAlign(Align.CENTER);
-						textPaint.setTextSize(70);
-						canvas.drawText(tempBubble.getKana(questionMode), tempBubble.getX()+50 + sideMargin, tempBubble.getY()+75 + topMargin, textPaint);	
-					}
+		/**
+		 * Ends the render thread. Called once, when the game is destroyed.
+		 */
+		public void shutdown() {
+			loop.shutdown();
+		}
+
+		public void renderFrame() {
+			if(!assetsLoaded) {
+				//the assets are usually built while the menu was open, otherwise the first frame waits for them
+				if(!assets.isReady())
+					startupTrace.setCold();
+				try {
+					assets.awaitReady();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
 				}
+				assetsLoaded = true;
+				startupTrace.mark("assets ready");
+			}
 
-				//display the target
-				Paint targetPaint = new Paint();
-				targetPaint.setColor(Color.WHITE);
-				targetPaint.setTextAlign(Align.CENTER);
-				targetPaint.setTextSize(70);
-				canvas.drawText(myBubbleGrid.getTarget().getKana(answerMode), canvas.getWidth()/2, canvas.getHeight()-100, targetPaint);
-
-				//display the question number
-				Paint questionPaint = new Paint();
-				questionPaint.setColor(Color.WHITE);
-				questionPaint.setTextAlign(Align.CENTER);
-				questionPaint.setTextSize(20);
-				canvas.drawText("# " + Integer.toString(questionNum), canvas.getWidth()/2, 30, questionPaint);
-				
-				//display the timer
-				if(showTimer) {
-					Paint timerPaint = new Paint();
-					timerPaint.setColor(Color.WHITE);
-					timerPaint.setTextAlign(Align.LEFT);
-					timerPaint.setTextSize(20);
-					long endTime = SystemClock.uptimeMillis();
-					long totalTimerSec = (endTime - startTime) / 1000;
-					int timerMin = (int) (totalTimerSec / 60);
-					int timerSec = (int) (totalTimerSec % 60);
-					String secString = (timerSec < 10) ? "0" + Integer.toString(timerSec) : Integer.toString(timerSec);
-					String time = Integer.toString(timerMin) + ":" + secString;
-					canvas.drawText(time, 3, 30, timerPaint);
+			updateGame(SystemClock.uptimeMillis());
+
+			//set up and lock canvas
+			frameStats.beginFrame();
+			Canvas canvas = ourHolder.lockCanvas();
+			frameStats.canvasLocked();
+			if(canvas == null) {
+				//the surface was lost after the frame was scheduled, try again once it is back
+				scheduler.requestRender();
+				return;
+			}
+
+			//draw on the canvas
+			canvas.drawColor(Color.BLACK);
+
+			//display the bubble grid or the floating bubbles, and the target
+			//glyphs wider than 90 pixels are narrowed to fit inside the 100 pixel bubbles, the atlas
+			//was already built at this size by the asset registry
+			glyphAtlas.ensure(AssetRegistry.TEXT_SIZE, AssetRegistry.GLYPH_WIDTH, getResources().getDisplayMetrics().density);
+			if(bubbleField != null)
+				drawField(canvas);
+			else
+				drawGrid(canvas);
+
+			//display the question number, timer and score
+			hud.draw(canvas, questionNum, SystemClock.uptimeMillis() - startTime, correct, wrong, showTimer, showScore);
+			if(showScore)
+				hud.drawReaction(canvas, reactionStats, ReactionStats.modeHitHistogram(questionMode, answerMode));
+			if(showFrameStats) {
+				//at the top edge of the field, the line above it holds the reaction times
+				frameStats.drawOverlay(canvas, FIELD_TOP + 14);
+			}
+
+			//display the canvas
+			frameStats.drawFinished();
+			ourHolder.unlockCanvasAndPost(canvas);
+			frameStats.framePosted();
+			if(!startupTrace.isFinished())
+				Log.i(TAG, startupTrace.finish("first frame"));
+			if(questionNum != shownQuestion) {
+				//reaction times are measured from the first frame that shows the grid
+				shownQuestion = questionNum;
+				gridShownNanos = System.nanoTime();
+				if(switchStartNanos != 0) {
+					gridPrefetcher.recordShown(gridShownNanos - switchStartNanos);
+					switchStartNanos = 0;
 				}
+			}
+			scheduler.frameDrawn();
+		}
+
+		/**
+		 * Draws the visible part of the bubble grid and the target. Bubbles outside the screen
+		 * are skipped, and bubbles too small to read are drawn as plain squares.
+		 * @param canvas - <i>canvas to draw on</i>
+		 */
+		void drawGrid(Canvas canvas) {
+			KanaBubbleGrid grid = myBubbleGrid.get();
+			//the grid is shrunk to fit between the question number at the top and the target at the bottom
+			int width = canvas.getWidth();
+			int height = canvas.getHeight() - FIELD_TOP - FIELD_BOTTOM;
+			if(width != fieldWidth || height != fieldHeight) {
+				fieldWidth = width;
+				fieldHeight = height;
+				viewport.layout(0, FIELD_TOP, width, height, grid.getWidth(), grid.getHeight());
+			}
+			viewport.getTransform(transform);
+			float left = transform[0];
+			float top = transform[1];
+			float scale = transform[2];
+			float size = grid.diameter * scale;
+
+			int firstRow = GridViewport.firstVisible(top, scale, grid.diameter, FIELD_TOP);
+			int lastRow = GridViewport.lastVisible(top, scale, grid.diameter, FIELD_TOP + height, grid.getMaxRows());
+			int firstColumn = GridViewport.firstVisible(left, scale, grid.diameter, 0);
+			int lastColumn = GridViewport.lastVisible(left, scale, grid.diameter, width, grid.getMaxColumns());
 
-				//display the score: number correct, number wrong, accuracy, and average guess per question
-				if(showScore) {
-					Paint scorePaint = new Paint();
-					scorePaint.setColor(Color.WHITE);
-					scorePaint.setTextAlign(Align.CENTER);
-					scorePaint.setTextSize(20);
-					float sectionSize = canvas.getWidth()/4;
-					canvas.drawText("Correct: " + Integer.toString(correct), sectionSize, canvas.getHeight()-55, scorePaint);
-					canvas.drawText("Wrong Guesses: " + Integer.toString(wrong), sectionSize*3, canvas.getHeight()-55, scorePaint);
-					if(correct != 0 || wrong != 0) {
-						//display accuracy
-						float accuracy = (float) correct / (correct + wrong) * 100;
-						String accString = Float.toString(accuracy);
-						int decIndex1 = accString.indexOf(".");
-						if(decIndex1 != -1)
-							canvas.drawText("Accuracy: " + accString.substring(0, decIndex1) + "%", sectionSize, canvas.getHeight()-25, scorePaint);
+			canvas.save();
+			canvas.clipRect(0, FIELD_TOP, width, FIELD_TOP + height);
+			if(size < GLYPH_MIN_SIZE) {
+				for(int row = firstRow; row <= lastRow; row++) {
+					for(int column = firstColumn; column <= lastColumn; column++) {
+						float x = grid.getCellX(column) * scale + left;
+						float y = grid.getCellY(row) * scale + top;
+						tilePaint.setColor(BubbleSprite.tintOf(grid.getColor(row, column)));
+						canvas.drawRect(x, y, x + size - 1, y + size - 1, tilePaint);
+					}
+				}
+			} else {
+				//while zooming the last decoded bubble is stretched, the size is decoded once the zoom ends
+				BubbleSprite sprite = zooming && drawnSprite != null ? drawnSprite : spriteFor(Math.round(size));
+				boolean exact = sprite.getSize() == Math.round(size);
+				for(int row = firstRow; row <= lastRow; row++) {
+					for(int column = firstColumn; column <= lastColumn; column++) {
+						float x = grid.getCellX(column) * scale + left;
+						float y = grid.getCellY(row) * scale + top;
+						if(exact)
+							sprite.draw(canvas, grid.getColor(row, column), x, y);
 						else
-							canvas.drawText("Accuracy: " + accString + "%", sectionSize, canvas.getHeight()-25, scorePaint);
-						
-						//display avg guess per question
-						float avg = (float) (correct + wrong) / correct;
-						String avgString = Float.toString(avg);
-						int decIndex2 = avgString.indexOf(".");
-						if(decIndex2 != -1) {
-							canvas.drawText("avg guesses", sectionSize*3, canvas.getHeight()-30, scorePaint);
-							canvas.drawText("per question: " + avgString.substring(0, decIndex2+2), sectionSize*3 + 10, canvas.getHeight()-10, scorePaint);
-						} else {
-							canvas.drawText("avg guesses", sectionSize*3, canvas.getHeight()-30, scorePaint);
-							canvas.drawText("per question: " + avgString, sectionSize*3 + 10, canvas.getHeight()-10, scorePaint);
-						}
+							sprite.draw(canvas, grid.getColor(row, column), x, y, size);
+						glyphAtlas.drawKana(canvas, questionMode, grid.getKanaIndex(row, column), x + 50*scale, y + 75*scale, scale, textPaint);
 					}
-					
 				}
+			}
+			canvas.restore();
+
+			//display the target
+			glyphAtlas.drawKana(canvas, answerMode, grid.getTarget().getKanaIndex(), canvas.getWidth()/2, canvas.getHeight()-100, targetPaint);
+		}
+
+		/**
+		 * Moves the floating bubbles forward to the current time and draws them and the target.
+		 * The bubbles are drawn between their last two simulated positions.
+		 * @param canvas - <i>canvas to draw on</i>
+		 */
+		void drawField(Canvas canvas) {
+			//the bubbles move between the question number at the top and the target at the bottom
+			int width = canvas.getWidth();
+			int height = canvas.getHeight() - FIELD_TOP - FIELD_BOTTOM;
+			if(width != fieldWidth || height != fieldHeight) {
+				fieldWidth = width;
+				fieldHeight = height;
+				bubbleField.setBounds(width, height);
+			}
+			margins = FloatPair.pack(0, FIELD_TOP);
+
+			long now = System.nanoTime();
+			bubbleField.advance(lastStepNanos == 0 ? 0 : now - lastStepNanos);
+			lastStepNanos = now;
+			//keep drawing frames while the bubbles move
+			scheduler.requestAnimation(RenderScheduler.FRAME_INTERVAL_MS * 4);
+
+			float alpha = bubbleField.getAlpha();
+			float radius = bubbleField.getRadius();
+			float scale = radius / 50;
+			if(radius * 2 < GLYPH_MIN_SIZE) {
+				//too small to read a Kana, the bubbles are drawn as colored squares like a far zoomed out grid
+				for(int i = 0; i < bubbleField.getCount(); i++) {
+					float x = bubbleField.getDrawX(i, alpha);
+					float y = bubbleField.getDrawY(i, alpha) + FIELD_TOP;
+					tilePaint.setColor(BubbleSprite.tintOf(bubbleField.getColor(i)));
+					canvas.drawRect(x - radius, y - radius, x + radius - 1, y + radius - 1, tilePaint);
+				}
+			} else {
+				BubbleSprite sprite = spriteFor(Math.round(radius * 2));
+				for(int i = 0; i < bubbleField.getCount(); i++) {
+					float x = bubbleField.getDrawX(i, alpha);
+					float y = bubbleField.getDrawY(i, alpha) + FIELD_TOP;
+					sprite.draw(canvas, bubbleField.getColor(i), x - radius, y - radius);
+					glyphAtlas.drawKana(canvas, questionMode, bubbleField.getKanaIndex(i), x, y + 25*scale, scale, textPaint);
+				}
+			}
+
+			//display the target
+			glyphAtlas.drawKana(canvas, answerMode, bubbleField.getTargetIndex(), canvas.getWidth()/2, canvas.getHeight()-100, targetPaint);
+		}
 
-				//display the canvas
-				ourHolder.unlockCanvasAndPost(canvas);
+		/**
+		 * Obtains a bubble decoded at the size it is drawn at. The shared bubble is used at its own
+		 * size; any other size is decoded into the copy of this game, which the shared one is never
+		 * changed for, so the next game still starts with it decoded.
+		 * @param size - <i>width and height of a bubble in pixels</i>
+		 * @return BubbleSprite - <i>sprite decoded at the size</i>
+		 */
+		BubbleSprite spriteFor(int size) {
+			if(size == bubbleSprite.getSize()) {
+				drawnSprite = bubbleSprite;
+			} else {
+				if(scaledSprite.ensure(size) && !startupTrace.isFinished())
+					startupTrace.mark("bubble decoded");
+				drawnSprite = scaledSprite;
 			}
+			return drawnSprite;
 		}
 	}
 }
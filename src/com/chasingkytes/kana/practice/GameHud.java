@@ -0,0 +1,204 @@
+package com.chasingkytes.kana.practice;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Paint.Align;
+
+/**
+ * Draws the question number, timer and score around the game grid.
+ *
+ * The text is written into reused char arrays and is only rebuilt when the value
+ * it shows changes, so drawing the HUD does not create any objects.
+ */
+public class GameHud {
+
+	final Paint questionPaint = new Paint();
+	final Paint timerPaint = new Paint();
+	final Paint scorePaint = new Paint();
+	final Paint reactionPaint = new Paint();
+
+	private final char[] questionText = new char[16];
+	private final char[] timerText = new char[16];
+	private final char[] correctText = new char[32];
+	private final char[] wrongText = new char[32];
+	private final char[] accuracyText = new char[32];
+	private final char[] avgText = new char[32];
+	private final char[] reactionText = new char[64];
+	private int questionLength, timerLength, correctLength, wrongLength, accuracyLength, avgLength, reactionLength;
+
+	//values the text buffers were last built from
+	private int shownQuestion = -1;
+	private long shownSeconds = -1;
+	private int shownCorrect = -1;
+	private int shownWrong = -1;
+	private int shownReactionHistogram = -1;
+	private int shownReactionCount = -1;
+
+	/**
+	 * Creates the GameHud and its paints.
+	 */
+	public GameHud() {
+		questionPaint.setColor(Color.WHITE);
+		questionPaint.setTextAlign(Align.CENTER);
+		questionPaint.setTextSize(20);
+
+		timerPaint.setColor(Color.WHITE);
+		timerPaint.setTextAlign(Align.LEFT);
+		timerPaint.setTextSize(20);
+
+		scorePaint.setColor(Color.WHITE);
+		scorePaint.setTextAlign(Align.CENTER);
+		scorePaint.setTextSize(20);
+
+		reactionPaint.setColor(Color.LTGRAY);
+		reactionPaint.setTextAlign(Align.CENTER);
+		reactionPaint.setTextSize(16);
+	}
+
+	/**
+	 * Draws the question number, and the timer and score if they are turned on.
+	 * @param canvas - <i>canvas to draw on</i>
+	 * @param questionNum - <i>number of the current question</i>
+	 * @param elapsedMs - <i>time since the game started in milliseconds</i>
+	 * @param correct - <i>amount of correct answers</i>
+	 * @param wrong - <i>amount of wrong guesses</i>
+	 * @param showTimer - <i>true to draw the timer</i>
+	 * @param showScore - <i>true to draw the score</i>
+	 */
+	public void draw(Canvas canvas, int questionNum, long elapsedMs, int correct, int wrong, boolean showTimer, boolean showScore) {
+		int width = canvas.getWidth();
+		int height = canvas.getHeight();
+
+		//display the question number
+		if(questionNum != shownQuestion) {
+			shownQuestion = questionNum;
+			questionLength = appendInt(questionText, appendString(questionText, 0, "# "), questionNum);
+		}
+		canvas.drawText(questionText, 0, questionLength, width/2, 30, questionPaint);
+
+		//display the timer
+		if(showTimer) {
+			long totalTimerSec = elapsedMs / 1000;
+			if(totalTimerSec != shownSeconds) {
+				shownSeconds = totalTimerSec;
+				int timerSec = (int) (totalTimerSec % 60);
+				int pos = appendInt(timerText, 0, (int) (totalTimerSec / 60));
+				timerText[pos++] = ':';
+				timerText[pos++] = (char) ('0' + timerSec / 10);
+				timerText[pos++] = (char) ('0' + timerSec % 10);
+				timerLength = pos;
+			}
+			canvas.drawText(timerText, 0, timerLength, 3, 30, timerPaint);
+		}
+
+		//display the score: number correct, number wrong, accuracy, and average guess per question
+		if(showScore) {
+			if(correct != shownCorrect || wrong != shownWrong)
+				updateScore(correct, wrong);
+			float sectionSize = width/4;
+			canvas.drawText(correctText, 0, correctLength, sectionSize, height-55, scorePaint);
+			canvas.drawText(wrongText, 0, wrongLength, sectionSize*3, height-55, scorePaint);
+			if(correct != 0 || wrong != 0) {
+				canvas.drawText(accuracyText, 0, accuracyLength, sectionSize, height-25, scorePaint);
+				canvas.drawText("avg guesses", sectionSize*3, height-30, scorePaint);
+				canvas.drawText(avgText, 0, avgLength, sectionSize*3 + 10, height-10, scorePaint);
+			}
+		}
+	}
+
+	/**
+	 * Draws the 50th, 90th and 99th percentile of the time taken to find the target,
+	 * once at least one target has been found.
+	 * @param canvas - <i>canvas to draw on</i>
+	 * @param stats - <i>reaction times of the game</i>
+	 * @param histogram - <i>histogram to show, usually ReactionStats.modeHitHistogram() of the current modes</i>
+	 */
+	public void drawReaction(Canvas canvas, ReactionStats stats, int histogram) {
+		int count = stats.getCount(histogram);
+		if(count == 0)
+			return;
+		if(histogram != shownReactionHistogram || count != shownReactionCount) {
+			shownReactionHistogram = histogram;
+			shownReactionCount = count;
+			int pos = appendString(reactionText, 0, "p50 ");
+			pos = appendInt(reactionText, pos, (int) (stats.getPercentile(histogram, 50) / 1000));
+			pos = appendString(reactionText, pos, "  p90 ");
+			pos = appendInt(reactionText, pos, (int) (stats.getPercentile(histogram, 90) / 1000));
+			pos = appendString(reactionText, pos, "  p99 ");
+			pos = appendInt(reactionText, pos, (int) (stats.getPercentile(histogram, 99) / 1000));
+			reactionLength = appendString(reactionText, pos, " ms");
+		}
+		canvas.drawText(reactionText, 0, reactionLength, canvas.getWidth()/2, 55, reactionPaint);
+	}
+
+	/**
+	 * Rebuilds the score text. Only called when <i>correct</i> or <i>wrong</i> changes.
+	 * @param correct - <i>amount of correct answers</i>
+	 * @param wrong - <i>amount of wrong guesses</i>
+	 */
+	private void updateScore(int correct, int wrong) {
+		shownCorrect = correct;
+		shownWrong = wrong;
+		correctLength = appendInt(correctText, appendString(correctText, 0, "Correct: "), correct);
+		wrongLength = appendInt(wrongText, appendString(wrongText, 0, "Wrong Guesses: "), wrong);
+
+		int total = correct + wrong;
+		if(total == 0)
+			return;
+
+		//accuracy as a whole percentage, rounded down
+		int pos = appendInt(accuracyText, appendString(accuracyText, 0, "Accuracy: "), (int) ((long) correct * 100 / total));
+		accuracyText[pos++] = '%';
+		accuracyLength = pos;
+
+		//average guesses per question with one decimal place, rounded down
+		pos = appendString(avgText, 0, "per question: ");
+		if(correct == 0) {
+			pos = appendString(avgText, pos, "Infinity");
+		} else {
+			long tenths = (long) total * 10 / correct;
+			pos = appendInt(avgText, pos, (int) (tenths / 10));
+			avgText[pos++] = '.';
+			avgText[pos++] = (char) ('0' + tenths % 10);
+		}
+		avgLength = pos;
+	}
+
+	/**
+	 * Copies a String into a char array.
+	 * @param buffer - <i>array to write into</i>
+	 * @param pos - <i>index to start writing at</i>
+	 * @param str - <i>String to copy</i>
+	 * @return int - <i>index after the last written character</i>
+	 */
+	static int appendString(char[] buffer, int pos, String str) {
+		str.getChars(0, str.length(), buffer, pos);
+		return pos + str.length();
+	}
+
+	/**
+	 * Writes the decimal digits of a number into a char array.
+	 * @param buffer - <i>array to write into</i>
+	 * @param pos - <i>index to start writing at</i>
+	 * @param value - <i>number to write</i>
+	 * @return int - <i>index after the last written character</i>
+	 */
+	static int appendInt(char[] buffer, int pos, int value) {
+		long number = value;
+		if(number < 0) {
+			buffer[pos++] = '-';
+			number = -number;
+		}
+		//count the digits so they can be written from the right
+		int digits = 1;
+		for(long rest = number / 10; rest > 0; rest /= 10)
+			digits++;
+		int end = pos + digits;
+		for(int i = end - 1; i >= pos; i--) {
+			buffer[i] = (char) ('0' + number % 10);
+			number /= 10;
+		}
+		return end;
+	}
+}
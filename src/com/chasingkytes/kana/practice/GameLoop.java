@@ -0,0 +1,94 @@
+package com.chasingkytes.kana.practice;
+
+/**
+ * The render thread of a game. It is started once when the game is created and lives until
+ * the game is destroyed: while the game is paused or the surface is not available it is parked
+ * by the RenderScheduler, so pausing and resuming never create or destroy a thread.
+ */
+public class GameLoop implements Runnable {
+
+	/**
+	 * Draws the frames of the game on the render thread.
+	 */
+	public interface Renderer {
+
+		/**
+		 * Draws one frame. Called every time the RenderScheduler decides the screen must be redrawn.
+		 */
+		void renderFrame();
+	}
+
+	private final RenderScheduler scheduler;
+	private final Renderer renderer;
+	private final Thread thread;
+
+	/**
+	 * Creates a GameLoop. The thread is not started until start().
+	 * @param name - <i>name of the thread</i>
+	 * @param scheduler - <i>decides when frames are drawn</i>
+	 * @param renderer - <i>draws the frames</i>
+	 */
+	public GameLoop(String name, RenderScheduler scheduler, Renderer renderer) {
+		this.scheduler = scheduler;
+		this.renderer = renderer;
+		thread = new Thread(this, name);
+	}
+
+	/**
+	 * Starts the thread. It stays parked until the game is resumed and the surface is ready.
+	 */
+	public void start() {
+		thread.start();
+	}
+
+	/**
+	 * Lets the thread draw frames again.
+	 */
+	public void resume() {
+		scheduler.setRunning(true);
+	}
+
+	/**
+	 * Parks the thread. Returns once the frame being drawn, if any, is finished.
+	 */
+	public void pause() {
+		scheduler.setRunning(false);
+		scheduler.awaitIdle();
+	}
+
+	/**
+	 * Stops the thread for good and waits for it to end.
+	 * If the caller is interrupted while waiting, the interrupt is kept for the caller to see.
+	 */
+	public void shutdown() {
+		scheduler.quit();
+		boolean interrupted = false;
+		while(thread.isAlive()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Checks if the thread is running or parked.
+	 * @return boolean - <i>true between start() and the end of shutdown()</i>
+	 */
+	public boolean isAlive() {
+		return thread.isAlive();
+	}
+
+	public void run() {
+		try {
+			while(scheduler.awaitFrame())
+				renderer.renderFrame();
+		} finally {
+			//a renderer that throws must not leave pause() waiting for a frame that never finishes
+			scheduler.quit();
+		}
+	}
+}
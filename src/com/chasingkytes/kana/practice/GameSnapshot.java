@@ -0,0 +1,165 @@
+package com.chasingkytes.kana.practice;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The state of a game in progress, stored in a few bytes so the game can be continued after
+ * Android has closed it in the background.
+ *
+ * The snapshot is big-endian: the magic number "KSNP", a version, flags, the question and answer
+ * modes, the Kana set, the size of the grid, the amount of bubbles, the score, the question number, the time
+ * played and the time spent on the current question in milliseconds, and the target. Then the
+ * kana index of every bubble (1 byte each) and the color of every bubble (2 bits each, four per
+ * byte). A 2x3 grid takes HEADER_SIZE + 8 bytes, a 30x30 grid HEADER_SIZE + 1125 bytes.
+ */
+public class GameSnapshot {
+
+	final static int MAGIC = 0x4B534E50;	//"KSNP"
+	final static int VERSION = 2;
+	final static int HEADER_SIZE = 47;
+
+	//flags
+	final static int FLOATING = 1;		//the bubbles are floating instead of in a grid
+	final static int REVEAL = 2;		//the target was found and is being shown
+
+	int flags;
+	int questionMode;
+	int answerMode;
+	int kanaSet;
+	int rows;
+	int columns;
+	int correct;
+	int wrong;
+	int questionNum;
+	long elapsedMs;				//time played, without the time the game was paused
+	long questionElapsedMs;		//time spent on the current question
+	int targetIndex;
+	byte[] kana;				//kana index of every bubble
+	byte[] colors;				//color of every bubble
+
+	/**
+	 * Copies the Kana, colors and target of a grid into the snapshot.
+	 * @param grid - <i>grid being played</i>
+	 */
+	public void setBubbles(KanaBubbleGrid grid) {
+		int cells = grid.getMaxRows() * grid.getMaxColumns();
+		kana = new byte[cells];
+		colors = new byte[cells];
+		for(int r = 0; r < grid.getMaxRows(); r++) {
+			for(int c = 0; c < grid.getMaxColumns(); c++) {
+				kana[r * grid.getMaxColumns() + c] = (byte) grid.getKanaIndex(r, c);
+				colors[r * grid.getMaxColumns() + c] = (byte) grid.getColor(r, c);
+			}
+		}
+		targetIndex = grid.getTargetIndex();
+	}
+
+	/**
+	 * Copies the Kana, colors and target of floating bubbles into the snapshot.
+	 * @param field - <i>floating bubbles being played</i>
+	 */
+	public void setBubbles(BubbleField field) {
+		kana = new byte[field.getCount()];
+		colors = new byte[field.getCount()];
+		for(int i = 0; i < kana.length; i++) {
+			kana[i] = (byte) field.getKanaIndex(i);
+			colors[i] = (byte) field.getColor(i);
+		}
+		targetIndex = field.getTargetIndex();
+	}
+
+	/**
+	 * Checks if the snapshot was taken from a game with the same options, so its bubbles fit.
+	 * @param floating - <i>true for floating bubbles</i>
+	 * @param question - <i>mode of the Kana in the bubbles</i>
+	 * @param answer - <i>mode of the target</i>
+	 * @param set - <i>categories of the Kana that are asked</i>
+	 * @param r - <i>rows of the grid</i>
+	 * @param c - <i>columns of the grid</i>
+	 * @param bubbles - <i>amount of bubbles</i>
+	 * @return boolean - <i>true if the snapshot can be restored into the game</i>
+	 */
+	public boolean matches(boolean floating, int question, int answer, int set, int r, int c, int bubbles) {
+		return ((flags & FLOATING) != 0) == floating && questionMode == question && answerMode == answer
+				&& kanaSet == set && rows == r && columns == c && kana.length == bubbles;
+	}
+
+	/**
+	 * Stores the snapshot in a byte array.
+	 * @return byte[] - <i>encoded snapshot</i>
+	 */
+	public byte[] encode() {
+		int bubbles = kana.length;
+		ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE + bubbles + (bubbles + 3) / 4);
+		data.putInt(MAGIC);
+		data.put((byte) VERSION);
+		data.put((byte) flags);
+		data.put((byte) questionMode);
+		data.put((byte) answerMode);
+		data.put((byte) kanaSet);
+		data.putShort((short) rows);
+		data.putShort((short) columns);
+		data.putInt(bubbles);
+		data.putInt(correct);
+		data.putInt(wrong);
+		data.putInt(questionNum);
+		data.putLong(elapsedMs);
+		data.putLong(questionElapsedMs);
+		data.putShort((short) targetIndex);
+		data.put(kana);
+		int packed = 0;
+		for(int i = 0; i < bubbles; i++) {
+			packed |= (colors[i] & 3) << ((i & 3) * 2);
+			if((i & 3) == 3 || i == bubbles - 1) {
+				data.put((byte) packed);
+				packed = 0;
+			}
+		}
+		return data.array();
+	}
+
+	/**
+	 * Reads a snapshot stored with encode().
+	 * @param bytes - <i>encoded snapshot, may be null</i>
+	 * @return GameSnapshot - <i>snapshot, null if there is none or it is damaged or of another version</i>
+	 */
+	public static GameSnapshot decode(byte[] bytes) {
+		if(bytes == null || bytes.length < HEADER_SIZE)
+			return null;
+		ByteBuffer data = ByteBuffer.wrap(bytes);
+		if(data.getInt() != MAGIC || data.get() != VERSION)
+			return null;
+		GameSnapshot snapshot = new GameSnapshot();
+		snapshot.flags = data.get();
+		snapshot.questionMode = data.get();
+		snapshot.answerMode = data.get();
+		snapshot.kanaSet = data.get() & 0xff;
+		snapshot.rows = data.getShort() & 0xffff;
+		snapshot.columns = data.getShort() & 0xffff;
+		int bubbles = data.getInt();
+		if(bubbles < 0 || bytes.length != HEADER_SIZE + bubbles + (bubbles + 3) / 4)
+			return null;
+		snapshot.correct = data.getInt();
+		snapshot.wrong = data.getInt();
+		snapshot.questionNum = data.getInt();
+		snapshot.elapsedMs = data.getLong();
+		snapshot.questionElapsedMs = data.getLong();
+		snapshot.targetIndex = data.getShort() & 0xffff;
+		snapshot.kana = new byte[bubbles];
+		data.get(snapshot.kana);
+		snapshot.colors = new byte[bubbles];
+		for(int i = 0; i < bubbles; i += 4) {
+			int packed = data.get();
+			for(int j = i; j < Math.min(bubbles, i + 4); j++)
+				snapshot.colors[j] = (byte) ((packed >> ((j & 3) * 2)) & 3);
+		}
+
+		//a snapshot whose Kana do not exist could not be drawn
+		if(snapshot.targetIndex >= KanaBubble.KANA_COUNT)
+			return null;
+		for(int i = 0; i < bubbles; i++)
+			if((snapshot.kana[i] & 0xff) >= KanaBubble.KANA_COUNT)
+				return null;
+		return snapshot;
+	}
+}
@@ -0,0 +1,121 @@
+package com.chasingkytes.kana.practice;
+
+/**
+ * Keeps track of which part of a question the game is in.
+ *
+ * PLAYING - the user is looking for the target and touches are processed.
+ * REVEAL - the user found the target and the answer is shown for REVEAL_DURATION_MS.
+ * TRANSITION - the reveal is over and the game loop is setting up the next question.
+ *
+ * The reveal is ended by the game loop calling update(), so the UI thread never waits.
+ * Touches that arrive outside of PLAYING are either dropped or, with TOUCH_COALESCE,
+ * only the most recent one is kept and handed back once the next question starts.
+ */
+public class GameStateMachine {
+
+	final static int PLAYING = 0;
+	final static int REVEAL = 1;
+	final static int TRANSITION = 2;
+
+	final static int TOUCH_DROP = 0;
+	final static int TOUCH_COALESCE = 1;
+
+	//how long the user can see their correct answer
+	final static long REVEAL_DURATION_MS = 1000;
+
+	private final int touchPolicy;
+	private int state = PLAYING;
+	private long revealEnd = 0;
+	//a flag rather than a special position, since a touch can be anywhere
+	private boolean hasPendingTouch = false;
+	private float pendingX, pendingY;
+
+	/**
+	 * Creates a GameStateMachine that starts in PLAYING.
+	 * @param policy - <i>TOUCH_DROP or TOUCH_COALESCE, what to do with touches during the reveal</i>
+	 */
+	public GameStateMachine(int policy) {
+		touchPolicy = policy;
+	}
+
+	/**
+	 * Obtains the current state.
+	 * @return int - <i>PLAYING, REVEAL, or TRANSITION</i>
+	 */
+	public synchronized int getState() {
+		return state;
+	}
+
+	/**
+	 * Obtains the uptime in milliseconds that the current reveal ends at.
+	 * @return long - <i>end of the reveal</i>
+	 */
+	public synchronized long getRevealEnd() {
+		return revealEnd;
+	}
+
+	/**
+	 * Checks whether a touch should be processed now. Touches outside of PLAYING are
+	 * dropped or kept for later depending on the touch policy.
+	 * @param x - <i>x position of the user's touch</i>
+	 * @param y - <i>y position of the user's touch</i>
+	 * @return boolean - <i>true if the touch should be processed now</i>
+	 */
+	public synchronized boolean acceptTouch(float x, float y) {
+		if(state == PLAYING)
+			return true;
+		if(touchPolicy == TOUCH_COALESCE) {
+			//only the newest touch is kept
+			hasPendingTouch = true;
+			pendingX = x;
+			pendingY = y;
+		}
+		return false;
+	}
+
+	/**
+	 * Shows the answer. Called when the user hits the target.
+	 * @param now - <i>current uptime in milliseconds</i>
+	 */
+	public synchronized void startReveal(long now) {
+		state = REVEAL;
+		revealEnd = now + REVEAL_DURATION_MS;
+		hasPendingTouch = false;
+	}
+
+	/**
+	 * Advances the state using the game loop's clock.
+	 * @param now - <i>current uptime in milliseconds</i>
+	 * @return boolean - <i>true if the reveal has ended and the next question must be set up,
+	 * the caller then has to call finishTransition()</i>
+	 */
+	public synchronized boolean update(long now) {
+		if(state == REVEAL && now >= revealEnd) {
+			state = TRANSITION;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Starts processing touches again once the next question is ready.
+	 */
+	public synchronized void finishTransition() {
+		if(state == TRANSITION)
+			state = PLAYING;
+	}
+
+	/**
+	 * Removes the touch that was kept during the reveal.
+	 * @param position - <i>array of at least 2 that receives the x and y position of the touch, if there is one</i>
+	 * @return boolean - <i>true if a touch was waiting</i>
+	 */
+	public synchronized boolean takePendingTouch(float[] position) {
+		if(!hasPendingTouch)
+			return false;
+		hasPendingTouch = false;
+		position[0] = pendingX;
+		position[1] = pendingY;
+		return true;
+	}
+}
@@ -0,0 +1,222 @@
+package com.chasingkytes.kana.practice;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Builds the next KanaBubbleGrid objects on a background thread while the user is
+ * playing, so a new question can be shown without waiting for its grid to be created.
+ *
+ * The ready grids are kept in a small bounded queue. The background thread waits
+ * while the queue is full. If the queue is ever empty, next() builds the grid itself.
+ * Like the GameLoop, the thread is started once and lives until shutdown(): while the game
+ * is paused it waits in pause(), so pausing and resuming never create or destroy a thread.
+ * Grids that are no longer shown are given back with recycle() and refilled in place,
+ * so once the game is running no new grids are created.
+ *
+ * The grids are built without a target. next() asks the TargetScheduler for the target and
+ * places it into the grid, so every target is chosen once the previous question was answered,
+ * not up to CAPACITY + 1 questions ahead.
+ */
+public class GridPrefetcher implements Runnable {
+
+	//amount of grids kept ready
+	final static int CAPACITY = 2;
+
+	private final int rows;
+	private final int columns;
+	private final KanaGridGenerator generator;
+	private final TargetScheduler scheduler;
+	private final BlockingQueue<KanaBubbleGrid> readyGrids = new ArrayBlockingQueue<KanaBubbleGrid>(CAPACITY);
+	private final BlockingQueue<KanaBubbleGrid> spareGrids = new ArrayBlockingQueue<KanaBubbleGrid>(CAPACITY);
+	private final Thread producer;
+	private boolean running = false;
+	private boolean quit = false;
+
+	//time from the end of a reveal to the first frame of the next grid, given by recordShown()
+	private long lastNanos = 0;
+	private long totalNanos = 0;
+	private long maxNanos = 0;
+	private int count = 0;
+	private int misses = 0;
+
+	/**
+	 * Creates a GridPrefetcher. Call start() and resume() to begin building grids.
+	 * @param r - <i>number of rows of every grid</i>
+	 * @param c - <i>number of columns of every grid</i>
+	 * @param gridGenerator - <i>chooses the Kana of the grids</i>
+	 * @param targetScheduler - <i>chooses the target of each grid when next() hands it out, null for uniformly random targets</i>
+	 */
+	public GridPrefetcher(int r, int c, KanaGridGenerator gridGenerator, TargetScheduler targetScheduler) {
+		rows = r;
+		columns = c;
+		generator = gridGenerator;
+		scheduler = targetScheduler;
+		producer = new Thread(this, "GridPrefetcher");
+		producer.setDaemon(true);
+		producer.setPriority(Thread.MIN_PRIORITY);
+	}
+
+	/**
+	 * Starts the background thread. It waits until the game is resumed.
+	 */
+	public void start() {
+		producer.start();
+	}
+
+	/**
+	 * Lets the background thread build grids again.
+	 */
+	public synchronized void resume() {
+		running = true;
+		notifyAll();
+	}
+
+	/**
+	 * Parks the background thread once it has built the grid it is working on. Returns at once.
+	 */
+	public synchronized void pause() {
+		running = false;
+	}
+
+	/**
+	 * Stops the background thread for good and waits for it to end, which takes at most one grid.
+	 * If the caller is interrupted while waiting, the interrupt is kept for the caller to see.
+	 */
+	public void shutdown() {
+		synchronized(this) {
+			quit = true;
+			notifyAll();
+		}
+		//wakes the thread if it is waiting for room in the queue
+		producer.interrupt();
+		boolean interrupted = false;
+		while(producer.isAlive()) {
+			try {
+				producer.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Checks if the background thread is building grids or parked.
+	 * @return boolean - <i>true between start() and the end of shutdown()</i>
+	 */
+	public boolean isAlive() {
+		return producer.isAlive();
+	}
+
+	public void run() {
+		try {
+			while(awaitRunning()) {
+				KanaBubbleGrid grid = spareGrids.poll();
+				if(grid == null)
+					grid = new KanaBubbleGrid(rows, columns, generator);
+				else
+					grid.regenerate(generator);
+				readyGrids.put(grid);
+			}
+		} catch (InterruptedException e) {
+			//shutdown() was called
+		}
+	}
+
+	/**
+	 * Parks the background thread while the game is paused.
+	 * @return boolean - <i>false once shutdown() was called</i>
+	 * @throws InterruptedException if shutdown() was called while waiting
+	 */
+	private synchronized boolean awaitRunning() throws InterruptedException {
+		while(!running && !quit)
+			wait();
+		return !quit;
+	}
+
+	/**
+	 * Obtains the next grid, with its target chosen now. Returns as soon as the target is placed
+	 * when a grid is ready, otherwise the grid is built on the calling thread.
+	 * Call it once the previous question was answered, when the grid is about to be shown.
+	 * @return KanaBubbleGrid
+	 */
+	public KanaBubbleGrid next() {
+		KanaBubbleGrid grid = readyGrids.poll();
+		if(grid == null) {
+			grid = new KanaBubbleGrid(rows, columns, generator);
+			synchronized(this) {
+				misses++;
+			}
+		}
+		if(scheduler != null)
+			grid.setTarget(generator, scheduler.nextTarget());
+		return grid;
+	}
+
+	/**
+	 * Gives back a grid that is no longer shown, so it can be refilled for a later question.
+	 * The grid must not be used after it is recycled.
+	 * @param grid - <i>grid that was obtained from next()</i>
+	 */
+	public void recycle(KanaBubbleGrid grid) {
+		if(grid != null && grid.getMaxRows() == rows && grid.getMaxColumns() == columns)
+			spareGrids.offer(grid);		//dropped if there are already enough spare grids
+	}
+
+	/**
+	 * Records how long it took from the end of a reveal until the first frame showing the grid
+	 * from next() was posted. This is the delay the user sees between two questions, so it includes
+	 * waking the render thread, next(), and drawing the grid.
+	 * @param nanos - <i>time in nanoseconds</i>
+	 */
+	public synchronized void recordShown(long nanos) {
+		lastNanos = nanos;
+		totalNanos += nanos;
+		maxNanos = Math.max(maxNanos, nanos);
+		count++;
+	}
+
+	/**
+	 * Obtains the last time given to recordShown().
+	 * @return long - <i>time in nanoseconds</i>
+	 */
+	public synchronized long getLastNanos() {
+		return lastNanos;
+	}
+
+	/**
+	 * Obtains the average time given to recordShown().
+	 * @return long - <i>time in nanoseconds, 0 if nothing was recorded</i>
+	 */
+	public synchronized long getAverageNanos() {
+		if(count == 0)
+			return 0;
+		return totalNanos / count;
+	}
+
+	/**
+	 * Obtains the longest time given to recordShown().
+	 * @return long - <i>time in nanoseconds</i>
+	 */
+	public synchronized long getMaxNanos() {
+		return maxNanos;
+	}
+
+	/**
+	 * Obtains how many times recordShown() was called.
+	 * @return int - <i>amount of grids shown</i>
+	 */
+	public synchronized int getShownCount() {
+		return count;
+	}
+
+	/**
+	 * Obtains how many times next() had to build the grid itself because none was ready.
+	 * @return int - <i>amount of misses</i>
+	 */
+	public synchronized int getMisses() {
+		return misses;
+	}
+}
@@ -0,0 +1,189 @@
+package com.chasingkytes.kana.practice;
+
+/**
+ * The part of a KanaBubbleGrid that is on the screen, and how large it is drawn.
+ *
+ * The grid is laid out in its own units, 100 per bubble. When the whole grid does not fit on
+ * the screen at that size, it is shrunk until it does, so large grids start out fully visible.
+ * The user can then zoom in, up to the size the bubbles were designed for, and pan around
+ * the zoomed grid. Only the rows and columns inside the view are drawn, so a frame costs the
+ * same however large the grid is.
+ *
+ * Gestures change the viewport on the UI thread while the render thread draws with it and
+ * touches are mapped through it, so every method is synchronized.
+ */
+public class GridViewport {
+
+	private float viewLeft, viewTop, viewWidth, viewHeight;
+	private float gridWidth, gridHeight;
+	private float fitScale = 0;			//scale at which the whole grid fits the view, 0 before layout()
+	private float zoom = 1;				//multiplies fitScale, from 1 to getMaxZoom()
+	private float offsetX, offsetY;		//screen position of the top left corner of the grid
+
+	/**
+	 * Places the grid inside a part of the screen. The zoom is kept when only the view changes.
+	 * A grid that fits is centered horizontally and placed a quarter of the free space from the top.
+	 * @param left - <i>left edge of the view in pixels</i>
+	 * @param top - <i>top edge of the view in pixels</i>
+	 * @param width - <i>width of the view in pixels</i>
+	 * @param height - <i>height of the view in pixels</i>
+	 * @param gridWidth - <i>width of the grid in grid units</i>
+	 * @param gridHeight - <i>height of the grid in grid units</i>
+	 */
+	public synchronized void layout(float left, float top, float width, float height, float gridWidth, float gridHeight) {
+		viewLeft = left;
+		viewTop = top;
+		viewWidth = Math.max(1, width);
+		viewHeight = Math.max(1, height);
+		this.gridWidth = gridWidth;
+		this.gridHeight = gridHeight;
+		//never drawn larger than the designed size, only shrunk when the grid does not fit
+		fitScale = Math.min(1, Math.min(viewWidth / gridWidth, viewHeight / gridHeight));
+		zoom = Math.min(zoom, getMaxZoom());
+		offsetX = viewLeft + (viewWidth - gridWidth * getScale()) / 2;
+		offsetY = viewTop + (viewHeight - gridHeight * getScale()) / 4;
+		clamp();
+	}
+
+	/**
+	 * Checks if layout() was called.
+	 * @return boolean - <i>true once the grid has been placed on the screen</i>
+	 */
+	public synchronized boolean isLaidOut() {
+		return fitScale > 0;
+	}
+
+	/**
+	 * Obtains the size of the grid on the screen compared to its own units.
+	 * @return float - <i>pixels per grid unit</i>
+	 */
+	public synchronized float getScale() {
+		return fitScale * zoom;
+	}
+
+	/**
+	 * Obtains the largest zoom, at which a bubble is drawn at its designed size.
+	 * @return float - <i>largest zoom, at least 1</i>
+	 */
+	public synchronized float getMaxZoom() {
+		return fitScale > 0 ? Math.max(1, 1 / fitScale) : 1;
+	}
+
+	/**
+	 * Checks if part of the grid is outside the view, in which case touches that move
+	 * pan the grid instead of choosing a bubble.
+	 * @return boolean - <i>true if the grid can be panned</i>
+	 */
+	public synchronized boolean isScrollable() {
+		float scale = getScale();
+		return gridWidth * scale > viewWidth + 0.5f || gridHeight * scale > viewHeight + 0.5f;
+	}
+
+	/**
+	 * Moves the grid on the screen. The grid is kept inside the view as far as possible.
+	 * @param dx - <i>horizontal distance in pixels</i>
+	 * @param dy - <i>vertical distance in pixels</i>
+	 */
+	public synchronized void pan(float dx, float dy) {
+		offsetX += dx;
+		offsetY += dy;
+		clamp();
+	}
+
+	/**
+	 * Zooms the grid around a point on the screen, which stays over the same part of the grid.
+	 * @param factor - <i>change of the zoom, above 1 to zoom in</i>
+	 * @param focusX - <i>x position of the point in pixels</i>
+	 * @param focusY - <i>y position of the point in pixels</i>
+	 */
+	public synchronized void zoom(float factor, float focusX, float focusY) {
+		if(fitScale == 0)
+			return;
+		float oldScale = getScale();
+		zoom = Math.max(1, Math.min(getMaxZoom(), zoom * factor));
+		float ratio = getScale() / oldScale;
+		offsetX = focusX - (focusX - offsetX) * ratio;
+		offsetY = focusY - (focusY - offsetY) * ratio;
+		clamp();
+	}
+
+	/**
+	 * Copies the position and scale of the grid in one step, so a frame is never drawn
+	 * with the position of one gesture and the scale of another.
+	 * @param out - <i>receives the x and y position of the grid in pixels and getScale()</i>
+	 */
+	public synchronized void getTransform(float[] out) {
+		out[0] = offsetX;
+		out[1] = offsetY;
+		out[2] = getScale();		//0 before layout()
+	}
+
+	/**
+	 * Converts a position on the screen to grid units.
+	 * @param x - <i>x position in pixels</i>
+	 * @param y - <i>y position in pixels</i>
+	 * @return long - <i>x and y position in grid units packed with FloatPair, (-1, -1) before layout()</i>
+	 */
+	public synchronized long toGrid(float x, float y) {
+		if(fitScale == 0)
+			return FloatPair.pack(-1, -1);
+		float scale = getScale();
+		return FloatPair.pack((x - offsetX) / scale, (y - offsetY) / scale);
+	}
+
+	/**
+	 * Converts a position on the screen to grid units with a transform copied by getTransform(),
+	 * so a touch can be converted again later exactly as it was during the game.
+	 * @param transform - <i>x and y position of the grid in pixels and its scale</i>
+	 * @param x - <i>x position in pixels</i>
+	 * @param y - <i>y position in pixels</i>
+	 * @return long - <i>x and y position in grid units packed with FloatPair, (-1, -1) if the grid was not laid out</i>
+	 */
+	public static long toGrid(float[] transform, float x, float y) {
+		if(transform[2] == 0)
+			return FloatPair.pack(-1, -1);
+		return FloatPair.pack((x - transform[0]) / transform[2], (y - transform[1]) / transform[2]);
+	}
+
+	/**
+	 * Obtains the first of the rows or columns that are at least partly inside a range of the screen.
+	 * @param offset - <i>screen position of the grid in pixels, from getTransform()</i>
+	 * @param scale - <i>scale of the grid, from getTransform()</i>
+	 * @param cellSize - <i>size of a cell in grid units</i>
+	 * @param viewStart - <i>start of the range in pixels</i>
+	 * @return int - <i>first visible row or column, may be past the grid</i>
+	 */
+	public static int firstVisible(float offset, float scale, float cellSize, float viewStart) {
+		return Math.max(0, (int) Math.floor((viewStart - offset) / (cellSize * scale)));
+	}
+
+	/**
+	 * Obtains the last of the rows or columns that are at least partly inside a range of the screen.
+	 * @param offset - <i>screen position of the grid in pixels, from getTransform()</i>
+	 * @param scale - <i>scale of the grid, from getTransform()</i>
+	 * @param cellSize - <i>size of a cell in grid units</i>
+	 * @param viewEnd - <i>end of the range in pixels</i>
+	 * @param count - <i>amount of rows or columns in the grid</i>
+	 * @return int - <i>last visible row or column, below the first one if none are visible</i>
+	 */
+	public static int lastVisible(float offset, float scale, float cellSize, float viewEnd, int count) {
+		return Math.min(count - 1, (int) Math.floor((viewEnd - offset) / (cellSize * scale)));
+	}
+
+	/**
+	 * Keeps the grid inside the view: a grid narrower than the view is centered, one shorter than
+	 * the view stays inside it, and a larger one cannot be moved far enough to leave empty space.
+	 */
+	private void clamp() {
+		float width = gridWidth * getScale();
+		float height = gridHeight * getScale();
+		if(width > viewWidth)
+			offsetX = Math.max(viewLeft + viewWidth - width, Math.min(viewLeft, offsetX));
+		else
+			offsetX = viewLeft + (viewWidth - width) / 2;
+		if(height > viewHeight)
+			offsetY = Math.max(viewTop + viewHeight - height, Math.min(viewTop, offsetY));
+		else
+			offsetY = Math.max(viewTop, Math.min(viewTop + viewHeight - height, offsetY));
+	}
+}
@@ -0,0 +1,102 @@
+package com.chasingkytes.kana.practice;
+
+/**
+ * Binary heap of the items 0 to size - 1, ordered by a long key, that keeps track of 
+ * where every item is so the key of any item can be changed in O(log n).
+ * Ties are broken by the item number, so the order is always the same for the same keys.
+ */
+public class IndexedMinHeap {
+
+	private final int[] heap;		//items in heap order
+	private final int[] position;	//position of every item in heap
+	private final long[] keys;		//key of every item
+
+	/**
+	 * Creates an IndexedMinHeap that holds every item from 0 to <i>size</i> - 1, all with a key of 0.
+	 * @param size - <i>amount of items</i>
+	 */
+	public IndexedMinHeap(int size) {
+		heap = new int[size];
+		position = new int[size];
+		keys = new long[size];
+		for(int i = 0; i < size; i++) {
+			heap[i] = i;
+			position[i] = i;
+		}
+	}
+
+	/**
+	 * Obtains the amount of items in the heap.
+	 * @return int - <i>amount of items</i>
+	 */
+	public int size() {
+		return heap.length;
+	}
+
+	/**
+	 * Obtains the item with the smallest key in O(1).
+	 * @return int - <i>item</i>
+	 */
+	public int peek() {
+		return heap[0];
+	}
+
+	/**
+	 * Obtains the key of an item.
+	 * @param item - <i>item</i>
+	 * @return long - <i>key</i>
+	 */
+	public long getKey(int item) {
+		return keys[item];
+	}
+
+	/**
+	 * Changes the key of an item in O(log n).
+	 * @param item - <i>item</i>
+	 * @param key - <i>new key</i>
+	 */
+	public void setKey(int item, long key) {
+		long old = keys[item];
+		keys[item] = key;
+		if(key < old)
+			siftUp(position[item]);
+		else
+			siftDown(position[item]);
+	}
+
+	private boolean less(int a, int b) {
+		return keys[a] < keys[b] || (keys[a] == keys[b] && a < b);
+	}
+
+	private void siftUp(int pos) {
+		int item = heap[pos];
+		while(pos > 0) {
+			int parent = (pos - 1) / 2;
+			if(!less(item, heap[parent]))
+				break;
+			move(heap[parent], pos);
+			pos = parent;
+		}
+		move(item, pos);
+	}
+
+	private void siftDown(int pos) {
+		int item = heap[pos];
+		int half = heap.length / 2;
+		while(pos < half) {
+			int child = pos * 2 + 1;
+			if(child + 1 < heap.length && less(heap[child + 1], heap[child]))
+				child++;
+			if(!less(heap[child], item))
+				break;
+			move(heap[child], pos);
+			pos = child;
+		}
+		move(item, pos);
+	}
+
+	private void move(int item, int pos) {
+		heap[pos] = item;
+		position[item] = pos;
+	}
+}
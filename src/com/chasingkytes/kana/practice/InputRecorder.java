@@ -0,0 +1,259 @@
+package com.chasingkytes.kana.practice;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Records everything a game of the bubble grid needs to be played again exactly: every grid
+ * that is shown, where the grid was on the screen and every touch with the result it had. An InputReplayer feeds the recording back through a KanaBubbleGrid
+ * without a device, so a reported bug can be reproduced and the game core can be timed.
+ *
+ * The grids are recorded rather than rebuilt from the seed of the grid generator: the
+ * GridPrefetcher builds them on another thread while the render thread places the targets, so
+ * the order the generator is used in depends on timing. The seed is therefore not recorded.
+ *
+ * The log is big-endian: the magic number "KREC", a version, the question and answer modes,
+ * and the size of the grid, followed by events. Each event starts with its type and
+ * the time since the recording started in milliseconds:
+ *   GRID - the target and the kana index of every bubble (1 byte each)
+ *   LAYOUT - the x and y position of the grid in pixels and its scale, written before the first
+ *            touch and whenever the grid was panned or zoomed since the last touch
+ *   TOUCH - the x and y position of the touch in pixels and the result of processGridTouch()
+ * A touch takes TOUCH_SIZE bytes, a grid GRID_SIZE bytes and one more per cell.
+ *
+ * The grids make up most of a recording of a large grid. Measured with InputReplayCheck, a
+ * question with about three touches takes 53 bytes on a 2x3 grid, 153 bytes on a 10x10 grid
+ * and 454 bytes on a 20x20 grid, where the grids are 90% of the recording. Compressing the
+ * recording only saves about a fifth, since the Kana of a grid are random, so it is not done.
+ */
+public class InputRecorder {
+
+	final static int MAGIC = 0x4B524543;	//"KREC"
+	final static int VERSION = 2;		//version 1 also held the seed of the grid generator
+	final static int HEADER_SIZE = 11;
+	final static String FILE_NAME = "last_game.krec";
+	//the recording stops at this size, about 2300 questions on a 20x20 grid or 19000 on a 2x3 grid
+	final static int MAX_BYTES = 1 << 20;
+
+	//events
+	final static int GRID = 1;
+	final static int LAYOUT = 2;
+	final static int TOUCH = 3;
+
+	//size of each event, without the Kana of a grid
+	final static int GRID_SIZE = 7;
+	final static int LAYOUT_SIZE = 17;
+	final static int TOUCH_SIZE = 14;
+
+	private final long startMs;
+	private final Object writeLock = new Object();		//one write of the file at a time
+	//hands the directory of the next background write to the writer thread
+	private final Object writerLock = new Object();
+	private Thread writer = null;
+	private File pendingDirectory = null;
+	private boolean closed = false;
+	private final int cells;
+	private ByteBuffer data;
+	private boolean full = false;
+	//transform written by the last LAYOUT event, the scale is 0 until one is written
+	private float layoutX, layoutY, layoutScale;
+
+	/**
+	 * Creates an InputRecorder and writes the header.
+	 * @param rows - <i>rows of the grid</i>
+	 * @param columns - <i>columns of the grid</i>
+	 * @param questionMode - <i>mode of the Kana in the bubbles</i>
+	 * @param answerMode - <i>mode of the target</i>
+	 * @param startMs - <i>uptime in milliseconds when the recording starts</i>
+	 */
+	public InputRecorder(int rows, int columns, int questionMode, int answerMode, long startMs) {
+		this.startMs = startMs;
+		cells = rows * columns;
+		data = ByteBuffer.allocate(Math.max(1024, HEADER_SIZE + 4 * (GRID_SIZE + cells)));
+		data.putInt(MAGIC);
+		data.put((byte) VERSION);
+		data.put((byte) questionMode);
+		data.put((byte) answerMode);
+		data.putShort((short) rows);
+		data.putShort((short) columns);
+	}
+
+	/**
+	 * Records the grid of a new question.
+	 * @param now - <i>uptime in milliseconds when the grid is shown</i>
+	 * @param grid - <i>grid of the question, of the size given to the constructor</i>
+	 */
+	public synchronized void recordGrid(long now, KanaBubbleGrid grid) {
+		if(!reserve(GRID_SIZE + cells))
+			return;
+		data.put((byte) GRID);
+		data.putInt((int) (now - startMs));
+		data.putShort((short) grid.getTargetIndex());
+		for(int r = 0; r < grid.getMaxRows(); r++)
+			for(int c = 0; c < grid.getMaxColumns(); c++)
+				data.put((byte) grid.getKanaIndex(r, c));
+	}
+
+	/**
+	 * Records a touch, and the position of the grid if it changed since the last touch.
+	 * @param eventTime - <i>uptime in milliseconds when the touch happened</i>
+	 * @param x - <i>x position of the touch in pixels</i>
+	 * @param y - <i>y position of the touch in pixels</i>
+	 * @param transform - <i>transform the touch was converted to grid units with, from GridViewport.getTransform()</i>
+	 * @param result - <i>TARGET_NONE, TARGET_HIT or TARGET_MISS</i>
+	 */
+	public synchronized void recordTouch(long eventTime, float x, float y, float[] transform, int result) {
+		int time = (int) (eventTime - startMs);
+		boolean moved = layoutScale == 0 || transform[0] != layoutX || transform[1] != layoutY || transform[2] != layoutScale;
+		if(!reserve(TOUCH_SIZE + (moved ? LAYOUT_SIZE : 0)))
+			return;
+		if(moved) {
+			layoutX = transform[0];
+			layoutY = transform[1];
+			layoutScale = transform[2];
+			data.put((byte) LAYOUT);
+			data.putInt(time);
+			data.putFloat(layoutX);
+			data.putFloat(layoutY);
+			data.putFloat(layoutScale);
+		}
+		data.put((byte) TOUCH);
+		data.putInt(time);
+		data.putFloat(x);
+		data.putFloat(y);
+		data.put((byte) result);
+	}
+
+	/**
+	 * Obtains the size of the recording.
+	 * @return int - <i>size in bytes</i>
+	 */
+	public synchronized int size() {
+		return data.position();
+	}
+
+	/**
+	 * Copies the recording, to be read by an InputReplayer.
+	 * @return byte[] - <i>the recording</i>
+	 */
+	public synchronized byte[] toByteArray() {
+		byte[] bytes = new byte[data.position()];
+		System.arraycopy(data.array(), 0, bytes, 0, bytes.length);
+		return bytes;
+	}
+
+	/**
+	 * Writes the recording to FILE_NAME in a directory on a background thread, so the UI thread
+	 * neither copies nor writes up to MAX_BYTES. The thread is started by the first call and
+	 * waits for the next one until close(). A write asked for while another is still waiting
+	 * replaces it, so only the latest recording is written.
+	 * @param directory - <i>directory of the file, usually the files directory of the app</i>
+	 */
+	public void writeInBackground(File directory) {
+		synchronized(writerLock) {
+			if(closed)
+				return;
+			pendingDirectory = directory;
+			if(writer == null) {
+				writer = new Thread(new Runnable() {
+					public void run() {
+						writePending();
+					}
+				}, "InputRecorder");
+				writer.setDaemon(true);
+				writer.start();
+			}
+			writerLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Lets the background thread end once it has finished the write it was asked for, if any.
+	 * Returns at once, so it can be called when the game is destroyed.
+	 */
+	public void close() {
+		synchronized(writerLock) {
+			closed = true;
+			writerLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Runs on the background thread: writes every time writeInBackground() is called, until close().
+	 */
+	private void writePending() {
+		while(true) {
+			File directory;
+			synchronized(writerLock) {
+				try {
+					while(pendingDirectory == null && !closed)
+						writerLock.wait();
+				} catch (InterruptedException e) {
+					return;
+				}
+				if(pendingDirectory == null)
+					return;
+				directory = pendingDirectory;
+				pendingDirectory = null;
+			}
+			writeTo(directory);
+		}
+	}
+
+	/**
+	 * Writes the recording to FILE_NAME in a directory, through a temporary file so a crash
+	 * while writing never leaves half a recording.
+	 * @param directory - <i>directory of the file, usually the files directory of the app</i>
+	 */
+	public void writeTo(File directory) {
+		synchronized(writeLock) {
+			write(directory);
+		}
+	}
+
+	private void write(File directory) {
+		byte[] bytes = toByteArray();
+		File file = new File(directory, FILE_NAME);
+		File tempFile = new File(directory, FILE_NAME + ".tmp");
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(tempFile);
+			out.write(bytes);
+			out.close();
+			out = null;
+			if(!tempFile.renameTo(file))
+				throw new IOException("could not rename " + tempFile);
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			if(out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Makes room for an event, doubling the buffer when needed.
+	 * @param size - <i>size of the event in bytes</i>
+	 * @return boolean - <i>false once the recording has reached MAX_BYTES, then nothing more is recorded</i>
+	 */
+	private boolean reserve(int size) {
+		if(full || data.position() + size > MAX_BYTES) {
+			//an event is never left out in the middle of a recording, so the replay stays exact up to here
+			full = true;
+			return false;
+		}
+		if(data.remaining() < size) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.min(MAX_BYTES, Math.max(data.capacity() * 2, data.position() + size)));
+			larger.put(data.array(), 0, data.position());
+			data = larger;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,185 @@
+package com.chasingkytes.kana.practice;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Plays a recording made by an InputRecorder again through a KanaBubbleGrid, as fast as possible
+ * and without a device. Every grid is restored as it was shown, every touch is converted to grid
+ * units with the position the grid had on the screen and passed to processGridTouch(), and the
+ * result is compared with the recorded one. The times of the events are kept in the recording
+ * but not waited for.
+ *
+ * A replay creates no objects, so it can be repeated to time the game core.
+ */
+public class InputReplayer {
+
+	private final byte[] log;
+	private final int questionMode;
+	private final int answerMode;
+	private final int rows;
+	private final int columns;
+	private final int grids;
+	private final int touches;
+	//reused by every replay
+	private final byte[] kana;
+	private final byte[] green;
+	private final float[] transform = new float[3];
+	private int hits, misses, mismatches;
+
+	/**
+	 * Reads the header of a recording and checks that its events are complete.
+	 * @param log - <i>recording from InputRecorder.toByteArray() or its file</i>
+	 * @throws IllegalArgumentException if the recording is damaged or of another version
+	 */
+	public InputReplayer(byte[] log) {
+		if(log == null || log.length < InputRecorder.HEADER_SIZE)
+			throw new IllegalArgumentException("recording too short");
+		ByteBuffer data = ByteBuffer.wrap(log);
+		if(data.getInt() != InputRecorder.MAGIC || data.get() != InputRecorder.VERSION)
+			throw new IllegalArgumentException("not a recording of this version");
+		this.log = log;
+		questionMode = data.get();
+		answerMode = data.get();
+		rows = data.getShort() & 0xffff;
+		columns = data.getShort() & 0xffff;
+		kana = new byte[rows * columns];
+		green = new byte[rows * columns];
+		for(int i = 0; i < green.length; i++)
+			green[i] = KanaBubble.GREEN;
+
+		//count the events once, so damage is found before a replay starts
+		int gridCount = 0;
+		int touchCount = 0;
+		while(data.hasRemaining()) {
+			int type = data.get();
+			int size;
+			if(type == InputRecorder.GRID) {
+				size = InputRecorder.GRID_SIZE + kana.length;
+				gridCount++;
+			} else if(type == InputRecorder.LAYOUT) {
+				size = InputRecorder.LAYOUT_SIZE;
+			} else if(type == InputRecorder.TOUCH) {
+				size = InputRecorder.TOUCH_SIZE;
+				touchCount++;
+			} else {
+				throw new IllegalArgumentException("unknown event " + type + " at " + (data.position() - 1));
+			}
+			if(data.remaining() < size - 1)
+				throw new IllegalArgumentException("event cut off at " + (data.position() - 1));
+			data.position(data.position() + size - 1);
+		}
+		grids = gridCount;
+		touches = touchCount;
+	}
+
+	/**
+	 * Plays the recording again. Touches made before the first grid are skipped.
+	 * @param grid - <i>grid of the recorded size, its Kana are replaced by the recorded ones</i>
+	 * @return int - <i>number of touches whose result differs from the recorded one, 0 for an exact replay</i>
+	 */
+	public int replay(KanaBubbleGrid grid) {
+		if(grid.getMaxRows() != rows || grid.getMaxColumns() != columns)
+			throw new IllegalArgumentException("grid is " + grid.getMaxRows() + "x" + grid.getMaxColumns()
+					+ ", recording is " + rows + "x" + columns);
+		ByteBuffer data = ByteBuffer.wrap(log);
+		data.position(InputRecorder.HEADER_SIZE);
+		hits = 0;
+		misses = 0;
+		mismatches = 0;
+		transform[2] = 0;
+		boolean started = false;
+		while(data.hasRemaining()) {
+			int type = data.get();
+			data.getInt();		//time
+			if(type == InputRecorder.GRID) {
+				int target = data.getShort() & 0xffff;
+				data.get(kana);
+				grid.restore(kana, green, target);
+				started = true;
+			} else if(type == InputRecorder.LAYOUT) {
+				transform[0] = data.getFloat();
+				transform[1] = data.getFloat();
+				transform[2] = data.getFloat();
+			} else {
+				float x = data.getFloat();
+				float y = data.getFloat();
+				int recorded = data.get();
+				if(!started)
+					continue;
+				long g = GridViewport.toGrid(transform, x, y);
+				int result = grid.processGridTouch(FloatPair.first(g), FloatPair.second(g), 0, 0);
+				if(result == KanaBubbleGrid.TARGET_HIT)
+					hits++;
+				else if(result == KanaBubbleGrid.TARGET_MISS)
+					misses++;
+				if(result != recorded)
+					mismatches++;
+			}
+		}
+		return mismatches;
+	}
+
+	/**
+	 * Obtains the mode of the Kana in the bubbles of the recorded game.
+	 * @return int - <i>question mode</i>
+	 */
+	public int getQuestionMode() {
+		return questionMode;
+	}
+
+	/**
+	 * Obtains the mode of the target of the recorded game.
+	 * @return int - <i>answer mode</i>
+	 */
+	public int getAnswerMode() {
+		return answerMode;
+	}
+
+	/**
+	 * Obtains the rows of the recorded grid.
+	 * @return int - <i>rows</i>
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Obtains the columns of the recorded grid.
+	 * @return int - <i>columns</i>
+	 */
+	public int getColumns() {
+		return columns;
+	}
+
+	/**
+	 * Obtains the number of grids, one per question, in the recording.
+	 * @return int - <i>grids</i>
+	 */
+	public int getGridCount() {
+		return grids;
+	}
+
+	/**
+	 * Obtains the number of touches in the recording.
+	 * @return int - <i>touches</i>
+	 */
+	public int getTouchCount() {
+		return touches;
+	}
+
+	/**
+	 * Obtains the number of touches on the target in the last replay.
+	 * @return int - <i>hits</i>
+	 */
+	public int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Obtains the number of touches on a wrong bubble in the last replay.
+	 * @return int - <i>misses</i>
+	 */
+	public int getMisses() {
+		return misses;
+	}
+}
@@ -25,48 +25,14 @@ public class KanaBubble {
 	int color;
 	final float radius = 50;
 	
-	final static String[] hiraganaList = {"あ", "い", "う", "え", "お", 
-			"か", "き", "く", "け", "こ", 
-			"さ", "し", "す", "せ", "そ", 
-			"た", "ち", "つ", "て", "と", 
-			"な", "に", "ぬ", "ね", "の", 
-			"は", "ひ", "ふ", "へ", "ほ", 
-			"ま", "み", "む", "め", "も", 
-			"や", "ゆ", "よ", "わ", "ん", 
-			"ら", "り", "る", "れ", "ろ", 
-			"が", "ぎ", "ぐ", "げ", "ご", 
-			"ざ", "じ", "ず", "ぜ", "ぞ", 
-			"だ", "ぢ", "づ", "で", "ど", 
-			"ば", "び", "ぶ", "べ", "ぼ", 
-			"ぱ", "ぴ", "ぷ", "ぺ", "ぽ"};
-	final static String[] katakanaList = {"ア", "イ", "ウ", "エ", "オ", 
-		"カ", "キ", "ク", "ケ", "コ", 
-		"サ", "シ", "ス", "セ", "ソ", 
-		"タ", "チ", "ツ", "テ", "ト", 
-		"ナ", "ニ", "ヌ", "ネ", "ノ", 
-		"ハ", "ヒ", "フ", "ヘ", "ホ", 
-		"マ", "ミ", "ム", "メ", "モ", 
-		"ヤ", "ユ", "ヨ", "ワ", "ン", 
-		"ラ", "リ", "ル", "レ", "ロ", 
-		"ガ", "ギ", "グ", "ゲ", "ゴ", 
-		"ザ", "ジ", "ズ", "ゼ", "ゾ", 
-		"ダ", "ヂ", "ヅ", "デ", "ド", 
-		"バ", "ビ", "ブ", "ベ", "ボ", 
-		"パ", "ピ", "プ", "ペ", "ポ"};
-	final static String[] romajiList = {"a", "i", "u", "e", "o", 
-		"ka", "ki", "ku", "ke", "ko", 
-		"sa", "shi", "su", "se", "so", 
-		"ta", "chi", "tsu", "te", "to", 
-		"na", "ni", "nu", "ne", "no", 
-		"ha", "hi", "fu", "he", "ho", 
-		"ma", "mi", "mu", "me", "mo", 
-		"ya", "yu", "yo", "wa", "n", 
-		"ra", "ri", "ru", "re", "ro", 
-		"ga", "gi", "gu", "ge", "go", 
-		"za", "ji", "zu", "ze", "zo", 
-		"da", "di", "du", "de", "do",
-		"ba", "bi", "bu", "be", "bo", 
-		"pa", "pi", "pu", "pe", "po" };
+	//shared by randomizeKana() so a new Random is not created every time
+	private static final Random sharedRandom = new Random();
+	
+	//the Kana are read from kana_table.bin by KanaTable and shared by every KanaBubble
+	final static String[] hiraganaList = KanaTable.getHiragana();
+	final static String[] katakanaList = KanaTable.getKatakana();
+	final static String[] romajiList = KanaTable.getRomaji();
+	final static int KANA_COUNT = KanaTable.SIZE;
 	
 	/**
 	 * Creates a KanaBubble. Default constructor for KanaBubble 
@@ -80,7 +46,7 @@ public class KanaBubble {
 	
 	/**
 	 * KanaBubble constructor
-	 * @param index - <i>Integer that represents the index of the Kana in hiraganaList, katakanaList, and romajiList. Acceptable values are 0 to 70</i>
+	 * @param index - <i>Integer that represents the index of the Kana in hiraganaList, katakanaList, and romajiList. Acceptable values are 0 to KANA_COUNT - 1</i>
 	 */
 	public KanaBubble(int index) {
 		x = 0;
@@ -175,17 +141,13 @@ public class KanaBubble {
 	/**
 	 * Obtains the <i>kanaIndex</i> based off of the string input and the mode it is in
 	 * @param str - <i>String of a kana</i>
-	 * @param mode - <i>constants HIRAGANA_MODE or KATAKANA_MODE</i>
-	 * @return int - <i>index of the str param</i>
+	 * @param mode - <i>constants HIRAGANA_MODE, KATAKANA_MODE, or ROMAJI_MODE</i>
+	 * @return int - <i>index of the str param, or the size of the kana table if str is not found</i>
 	 */
 	public int findKanaIndex(String str, int mode) {
-		int index = 0;
-		if(mode == HIRAGANA_MODE)
-			while(index < 70 && !str.equals(hiraganaList[index]))
-				index++;
-		else if(mode == KATAKANA_MODE)
-			while(index < 70 && !str.equals(katakanaList[index]))
-				index++;
+		int index = KanaLookup.indexOf(str, mode);
+		if(index == KanaLookup.NOT_FOUND)
+			return KANA_COUNT;
 		return index;
 	}
 	
@@ -193,8 +155,15 @@ public class KanaBubble {
 	 * Sets a random Kana for the KanaBubble.
 	 */
 	public void randomizeKana() {
-		Random rand = new Random();
-		kanaIndex = rand.nextInt(70);
+		randomizeKana(sharedRandom);
+	}
+	
+	/**
+	 * Sets a random Kana for the KanaBubble.
+	 * @param rand - <i>random number generator to pick the Kana with</i>
+	 */
+	public void randomizeKana(Random rand) {
+		kanaIndex = rand.nextInt(KANA_COUNT);
 		hiragana = hiraganaList[kanaIndex];
 		katakana = katakanaList[kanaIndex];	
 	}
@@ -211,7 +180,7 @@ public class KanaBubble {
 	
 //	public void setKana(String str, int mode) {
 //		int index = findKanaIndex(str, mode);
-//		if(index < 70) {
+//		if(index < KANA_COUNT) {
 //			this.kanaIndex = index;
 //			this.hiragana = hiraganaList[kanaIndex];
 //			this.katakana = katakanaList[kanaIndex];
@@ -221,11 +190,11 @@ public class KanaBubble {
 //	}
 	
 	/**
-	 * Sets the Kana of the KanaBubble based off of the index that it is given. The index must be between 0 and 70.
-	 * @param index - <i>integer between 0 and 70</i>
+	 * Sets the Kana of the KanaBubble based off of the index that it is given. The index must be between 0 and KANA_COUNT - 1.
+	 * @param index - <i>integer between 0 and KANA_COUNT - 1</i>
 	 */
 	public void setKana(int index) {
-		if(index < 70) {
+		if(index < KANA_COUNT) {
 			this.kanaIndex = index;
 			this.hiragana = hiraganaList[kanaIndex];
 			this.katakana = katakanaList[kanaIndex];
@@ -242,13 +211,16 @@ public class KanaBubble {
 		this.color = color;
 	}
 	
-//	public boolean isInBubble(float x, float y) {
-//		float minX = this.x;
-//		float minY = this.y;
-//		float maxX = this.x + this.radius*2;
-//		float maxY = this.y + this.radius*2;
-//		if(x >= minX && x <= maxX && y >= minY && y <= maxY)
-//			return true;
-//		return false;
-//	}	
+	/**
+	 * Checks if a point is inside the KanaBubble. The x and y position of the KanaBubble is the
+	 * top left corner of the square around it, and a point on the edge is inside.
+	 * @param x - <i>x position of the point</i>
+	 * @param y - <i>y position of the point</i>
+	 * @return boolean - <i>true if the point is inside the circle of the KanaBubble</i>
+	 */
+	public boolean isInBubble(float x, float y) {
+		float dx = x - (this.x + this.radius);
+		float dy = y - (this.y + this.radius);
+		return dx*dx + dy*dy <= this.radius*this.radius;
+	}
 }
@@ -1,9 +1,16 @@
 package com.chasingkytes.kana.practice;
 
-import java.util.Random;
-
 /**
- * Game grid layout for the game. It is a two dimensional array of KanaBubble objects.
+ * Game grid layout for the game. It is a grid of KanaBubbles with a row and a column.
+ * 
+ * The grid is stored as one byte array of Kana indices and one byte array of colors, 
+ * stored row by row. The position of a KanaBubble is calculated from its row and column. 
+ * A grid can be filled with new Kana with regenerate() without creating any objects.
+ * 
+ * The Kana do not change while a grid is shown, so a grid can be handed to another thread 
+ * through a volatile field or an AtomicReference. The colors are the only part that changes 
+ * while the game is played. Every color change is followed by a write to a volatile counter
+ * that is read before the colors, so the render thread always sees the latest colors.
  * @author Amy Lim
  */
 public class KanaBubbleGrid {
@@ -12,22 +19,29 @@ public class KanaBubbleGrid {
 	final static int TARGET_MISS = 1;
 	final static int TARGET_NONE = 2; 
 	
+	//returned by getCellFromXY() when the touch is not inside a KanaBubble
+	final static int NO_CELL = -1;
+	
 	int maxRows;
 	int maxColumns;
 	final float diameter = 100;
-	KanaBubble[][] myGrid;
-	KanaBubble target;
+	final float radius = diameter / 2;
+	byte[] kana;		//kana index of each KanaBubble, read with & 0xff
+	byte[] colors;		//color of each KanaBubble
+	private volatile int colorVersion;		//written after every color change
+	private final int[] generated;		//reused by regenerate() to receive the kana from the generator
+	private final TargetScheduler scheduler;		//chooses the target, null for a uniformly random target
+	final KanaBubble target = new KanaBubble();
 	int targetIndex;	
 	
+	//used by grids that are not given their own generator
+	private static final KanaGridGenerator defaultGenerator = new KanaGridGenerator();
+	
 	/**
 	 * Creates a KanaBubbleGrid. Default constructor for KanaBubbleGrid. 
 	 */
 	public KanaBubbleGrid() {
-		maxRows = 2;
-		maxColumns = 3;	
-		
-		initializeGrid();
-		setTarget();
+		this(2, 3);
 	}
 	
 	/**
@@ -36,12 +50,35 @@ public class KanaBubbleGrid {
 	 * @param c - number of columns for KanaBubbleGrid
 	 */
 	public KanaBubbleGrid(int r, int c) {
+		this(r, c, defaultGenerator);
+	}
+	
+	/**
+	 * Creates a KanaBubbleGrid. 
+	 * @param r - number of rows for KanaBubbleGrid 
+	 * @param c - number of columns for KanaBubbleGrid
+	 * @param generator - <i>chooses the Kana and the target, use a seeded generator to reproduce grids</i>
+	 */
+	public KanaBubbleGrid(int r, int c, KanaGridGenerator generator) {
+		this(r, c, generator, null);
+	}
+	
+	/**
+	 * Creates a KanaBubbleGrid. 
+	 * @param r - number of rows for KanaBubbleGrid 
+	 * @param c - number of columns for KanaBubbleGrid
+	 * @param generator - <i>chooses the Kana around the target</i>
+	 * @param targetScheduler - <i>chooses the target every time the grid is filled, null for a uniformly random target</i>
+	 */
+	public KanaBubbleGrid(int r, int c, KanaGridGenerator generator, TargetScheduler targetScheduler) {
+		scheduler = targetScheduler;
 		maxRows = r;
 		maxColumns = c;
+		kana = new byte[r * c];
+		colors = new byte[r * c];
+		generated = new int[r * c];
 		
-		initializeGrid();
-		setTarget();
-		
+		regenerate(generator);
 	}
 	
 	/**
@@ -61,18 +98,73 @@ public class KanaBubbleGrid {
 	}
 	
 	/**
-	 * Obtains the KanaBubble in the KanaBubbleGrid.
+	 * Obtains a copy of the KanaBubble in the KanaBubbleGrid. The grid does not store 
+	 * KanaBubble objects, so a new one is created on every call and changing it does not 
+	 * change the grid. Use getKanaIndex(), getColor(), getCellX() and getCellY() when drawing.
 	 * @param r - <i>row of the KanaBubble</i>
 	 * @param c - <i>column of the KanaBubble</i>
 	 * @return KanaBubble in row <i>r</i> and column <i>c</i>, 
 	 * returns <i>null</i> if it is out of bounds
 	 */
 	public KanaBubble getKanaBubble(int r, int c) {
-		if(r < maxRows && c < maxColumns)
-			return myGrid[r][c];
+		if(r < maxRows && c < maxColumns) {
+			KanaBubble bubble = new KanaBubble(getKanaIndex(r, c));
+			bubble.setXY(getCellX(c), getCellY(r));
+			bubble.setColor(getColor(r, c));
+			return bubble;
+		}
 		return null;
 	}
 	
+	/**
+	 * Obtains the kana index of the KanaBubble in the KanaBubbleGrid.
+	 * @param r - <i>row of the KanaBubble</i>
+	 * @param c - <i>column of the KanaBubble</i>
+	 * @return int - <i>kana index</i>
+	 */
+	public int getKanaIndex(int r, int c) {
+		return kana[r * maxColumns + c] & 0xff;
+	}
+	
+	/**
+	 * Obtains the color of the KanaBubble in the KanaBubbleGrid.
+	 * @param r - <i>row of the KanaBubble</i>
+	 * @param c - <i>column of the KanaBubble</i>
+	 * @return int - <i>BLUE, GREEN, or RED</i>
+	 */
+	public int getColor(int r, int c) {
+		readColorVersion();
+		return colors[r * maxColumns + c];
+	}
+	
+	/**
+	 * Reads the volatile color version. The colors are plain bytes, so they must be read after 
+	 * this: a thread that reads the version sees every color written before its last change.
+	 * Do not remove the call because its result is not used, it is what makes the colors visible.
+	 * @return int - <i>number of color changes so far</i>
+	 */
+	int readColorVersion() {
+		return colorVersion;
+	}
+	
+	/**
+	 * Obtains the x position of the KanaBubbles in a column, without the grid offset.
+	 * @param c - <i>column of the KanaBubble</i>
+	 * @return float - <i>x position</i>
+	 */
+	public float getCellX(int c) {
+		return diameter * c;
+	}
+	
+	/**
+	 * Obtains the y position of the KanaBubbles in a row, without the grid offset.
+	 * @param r - <i>row of the KanaBubble</i>
+	 * @return float - <i>y position</i>
+	 */
+	public float getCellY(int r) {
+		return diameter * r;
+	}
+	
 	/**
 	 * Obtains the width of the grid.
 	 * @return width of KanaBubbleGrid
@@ -96,7 +188,7 @@ public class KanaBubbleGrid {
 	 * @return
 	 */
 	public boolean isPointerEqualsTarget(int r, int c) {
-		if(myGrid[r][c].getKanaIndex() == targetIndex)
+		if(getKanaIndex(r, c) == targetIndex)
 			return true;
 		return false;
 	}
@@ -132,9 +224,41 @@ public class KanaBubbleGrid {
 //		return coords;
 //	}
 	
+	/**
+	 * Obtains the KanaBubble that the user touched from the x and y coordinates of the 
+	 * user's touch on the screen. Only touches inside the circle of a KanaBubble count, 
+	 * touches in the corners between KanaBubbles do not. A touch on the edge of a KanaBubble is
+	 * inside it, like in BubbleIndex.hitTest(). No objects are created.
+	 * @param x - <i>x position of the user's touch</i>
+	 * @param y - <i>y position of the user's touch</i>
+	 * @param sideMargin - <i>x offset of the game grid</i>
+	 * @param topMargin - <i>y offset of the game grid</i>
+	 * @return int - <i>row and column packed into one int, read them with cellRow() and cellColumn(), 
+	 * or NO_CELL if the user did not touch a KanaBubble</i>
+	 */
+	public int getCellFromXY(float x, float y, float sideMargin, float topMargin) {
+		//reset the x and y values as if the grid was first drawn from (0,0) instead of the with the offsets (sideMargin, topMargin)
+		x = x - sideMargin;
+		y = y - topMargin;
+		if(x < -radius || x > getWidth() + radius || y < -radius || y > getHeight() + radius)
+			return NO_CELL;
+		
+		//the outer edges of the grid belong to the KanaBubbles next to them, the circle decides
+		int r = Math.max(0, Math.min(maxRows - 1, (int) Math.floor(y / diameter)));
+		int c = Math.max(0, Math.min(maxColumns - 1, (int) Math.floor(x / diameter)));
+		
+		//the touch must be inside the circle drawn in the cell
+		float dx = x - (getCellX(c) + radius);
+		float dy = y - (getCellY(r) + radius);
+		if(dx*dx + dy*dy > radius*radius)
+			return NO_CELL;
+		return packCell(r, c);
+	}
+	
 	/**
 	 * Obtains the row and column of the KanaBubble that the user touched from the 
-	 * x and y coordinates of the user's touch on the screen. 
+	 * x and y coordinates of the user's touch on the screen. Creates an array on every call, 
+	 * use getCellFromXY() when processing touches.
 	 * @param x - <i>x position of the user's touch</i>
 	 * @param y - <i>y position of the user's touch</i>
 	 * @param sideMargin - <i>x offset of the game grid</i>
@@ -146,25 +270,45 @@ public class KanaBubbleGrid {
 	public int[] getRowColumnFromXY(float x, float y, float sideMargin, float topMargin) {
 		//coordinates that will store the row and column of the user's touch
 		int[] coords = new int[2];
-
-		//maximum x and y coordinates of the grid on the screen
-		float maxX = getWidth() + sideMargin;
-		float maxY = getHeight() + topMargin;		
-	
-		if(x >= sideMargin && x < maxX && y >= topMargin && y < maxY) {
-			//reset the x and y values as if the grid was first drawn from (0,0) instead of the with the offsets (sideMargin, topMargin)
-			//makes it easier to calculate the row and column from the user's touch
-			x = x - sideMargin;
-			y = y - topMargin;
-			coords[0] = (int) (y / diameter);	//row
-			coords[1] = (int) (x / diameter);	//column
-		} else {
-			//if the touch is not in the grid, the row position is set to -1
+		int cell = getCellFromXY(x, y, sideMargin, topMargin);
+		if(cell == NO_CELL) {
+			//if the touch is not in a KanaBubble, the row position is set to -1
 			coords[0] = -1;
+		} else {
+			coords[0] = cellRow(cell);
+			coords[1] = cellColumn(cell);
 		}
 		return coords;
 	}
 	
+	/**
+	 * Packs a row and column into one int.
+	 * @param r - <i>row, at most 65535</i>
+	 * @param c - <i>column, at most 65535</i>
+	 * @return int - <i>packed cell</i>
+	 */
+	static int packCell(int r, int c) {
+		return (r << 16) | c;
+	}
+	
+	/**
+	 * Obtains the row of a packed cell.
+	 * @param cell - <i>cell from getCellFromXY()</i>
+	 * @return int - <i>row</i>
+	 */
+	static int cellRow(int cell) {
+		return cell >>> 16;
+	}
+	
+	/**
+	 * Obtains the column of a packed cell.
+	 * @param cell - <i>cell from getCellFromXY()</i>
+	 * @return int - <i>column</i>
+	 */
+	static int cellColumn(int cell) {
+		return cell & 0xffff;
+	}
+	
 //	public int processGridTouch(float x, float y) {
 //		int[] coords = getRowColumnFromXY(x, y);
 //		if(coords[0] == -1) {
@@ -192,74 +336,95 @@ public class KanaBubbleGrid {
 	 * @param y - <i>y position of the user's touch</i>
 	 * @param sideMargin - <i>x offset of the game grid</i>
 	 * @param topMargin - <i>y offset of the game grid</i>
-	 * @return <b>TARGET_NONE</b> - user did not touch the grid, 
+	 * @return <b>TARGET_NONE</b> - user did not touch a KanaBubble, 
 	 * <b>TARGET_HIT</b> - user hit the correct Kana, 
 	 * <b>TARGET_MISS</b> - user hit the wrong Kana
 	 */
 	public int processGridTouch(float x, float y, float sideMargin, float topMargin) {
-		int[] coords = getRowColumnFromXY(x, y, sideMargin, topMargin);
-		if(coords[0] == -1) {
+		int cell = getCellFromXY(x, y, sideMargin, topMargin);
+		if(cell == NO_CELL) {
 			//do nothing if the grid was not touched
 			return TARGET_NONE;
 		} else {
 			//check if the user selected the target
-			if(isPointerEqualsTarget(coords[0], coords[1])) {
+			int r = cellRow(cell);
+			int c = cellColumn(cell);
+			if(isPointerEqualsTarget(r, c)) {
 				//if the user selected the correct target change the color to blue
-				myGrid[coords[0]][coords[1]].setColor(KanaBubble.BLUE);
+				setColor(r, c, KanaBubble.BLUE);
 				return TARGET_HIT;
 			} else {
 				//if the user did not select the target change the color to red
-				myGrid[coords[0]][coords[1]].setColor(KanaBubble.RED);
+				setColor(r, c, KanaBubble.RED);
 				return TARGET_MISS;
 			}
 		}
 	}
 	
 	/**
-	 * Sets the target Kana that the user will need to find on the game grid.
+	 * Fills the game grid with different random Kana, sets the target Kana that the user 
+	 * will need to find and turns every KanaBubble green. The grid is reused, no objects are created.
+	 * Must not be called while the grid is shown on the screen.
+	 * @param generator - <i>chooses the Kana of every KanaBubble, and the target if the grid has no TargetScheduler</i>
 	 */
-	private void setTarget() {
-		//randomize the location on the grid
-		Random rand = new Random();
-		int targetRow = rand.nextInt(maxRows);
-		int targetColumn = rand.nextInt(maxColumns);
-		
-		//randomize the target Kana
-		targetIndex = rand.nextInt(70);
-		target = new KanaBubble(targetIndex);
-		
-		removeRepeatTargets();
+	public void regenerate(KanaGridGenerator generator) {
+		int targetCell;
+		if(scheduler == null)
+			targetCell = generator.generate(generated);
+		else
+			targetCell = generator.generate(generated, scheduler.nextTarget());
+		for(int i = 0; i < generated.length; i++) {
+			kana[i] = (byte) generated[i];
+			colors[i] = KanaBubble.GREEN;
+		}
 		
-		//set the target Kana on the game grid
-		myGrid[targetRow][targetColumn].setKana(targetIndex); 
+		//the target only appears once on the game grid
+		targetIndex = generated[targetCell];
+		target.setKana(targetIndex);
+		colorVersion++;
 	}
 	
 	/**
-	 * Removes repeats of the target Kana that the user will be looking 
-	 * for on the game grid.
+	 * Gives the grid a new target without refilling it, see KanaGridGenerator.retarget().
+	 * Used when the grid was built before its target could be chosen.
+	 * Must not be called while the grid is shown on the screen.
+	 * @param generator - <i>chooses the cells that change</i>
+	 * @param targetKana - <i>kana index of the new target</i>
 	 */
-	private void removeRepeatTargets() {
-		for(int i = 0; i < maxRows; i++) {
-			for(int j = 0; j < maxColumns; j++) {
-				while(myGrid[i][j].getKanaIndex() == targetIndex) {
-					myGrid[i][j].randomizeKana();
-				}
-			}
-		}
+	public void setTarget(KanaGridGenerator generator, int targetKana) {
+		for(int i = 0; i < generated.length; i++)
+			generated[i] = kana[i] & 0xff;
+		int targetCell = generator.retarget(generated, targetKana);
+		for(int i = 0; i < generated.length; i++)
+			kana[i] = (byte) generated[i];
+		targetIndex = generated[targetCell];
+		target.setKana(targetIndex);
+		colorVersion++;
 	}
 	
 	/**
-	 * Initializes the game grid to be filled with random Kana.
+	 * Replaces the Kana, colors and target with the ones of a saved grid of the same size.
+	 * Must not be called while the grid is shown on the screen.
+	 * @param savedKana - <i>kana index of every KanaBubble, stored row by row</i>
+	 * @param savedColors - <i>color of every KanaBubble, stored row by row</i>
+	 * @param savedTarget - <i>kana index of the target</i>
 	 */
-	private void initializeGrid() {
-		myGrid = new KanaBubble[maxRows][maxColumns];
-		for(int i = 0; i < maxRows; i++) {
-			for(int j = 0; j < maxColumns; j++) {
-				KanaBubble temp = new KanaBubble();
-				temp.setXY(diameter*j, diameter*i);			
-				temp.randomizeKana();
-				myGrid[i][j] = temp;
-			}
-		}
+	public void restore(byte[] savedKana, byte[] savedColors, int savedTarget) {
+		System.arraycopy(savedKana, 0, kana, 0, kana.length);
+		System.arraycopy(savedColors, 0, colors, 0, colors.length);
+		targetIndex = savedTarget;
+		target.setKana(targetIndex);
+		colorVersion++;
+	}
+	
+	/**
+	 * Changes the color of a KanaBubble and makes the change visible to other threads.
+	 * @param r - <i>row of the KanaBubble</i>
+	 * @param c - <i>column of the KanaBubble</i>
+	 * @param color - <i>GREEN, BLUE, or RED</i>
+	 */
+	private void setColor(int r, int c, int color) {
+		colors[r * maxColumns + c] = (byte) color;
+		colorVersion++;
 	}
 }
@@ -0,0 +1,208 @@
+package com.chasingkytes.kana.practice;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Paint.Align;
+import android.graphics.Rect;
+
+/**
+ * Pre-rasterized images of every Kana in hiraganaList, katakanaList and romajiList.
+ *
+ * Drawing Japanese text is slow because every glyph has to be shaped and rasterized.
+ * The atlas draws each Kana once into a single alpha bitmap, so each KanaBubble can
+ * then be drawn with one bitmap copy. Kana wider than the bubble, such as きゃ, are narrowed
+ * to fit. The atlas is rebuilt when the text size or screen density changes. 
+ * Kana that do not fit in the memory limit are drawn with drawText.
+ */
+public class KanaGlyphAtlas {
+
+	//largest amount of memory the atlas bitmap can use (1 byte per pixel)
+	final static int MAX_ATLAS_BYTES = 2 * 1024 * 1024;
+	//largest width of the atlas bitmap
+	final static int MAX_ATLAS_WIDTH = 2048;
+	//empty pixels around each glyph so neighbouring glyphs do not bleed into each other
+	final static int PADDING = 2;
+
+	final static int MODES = 3;
+
+	private Bitmap atlas;
+	private float textSize = -1;
+	private float maxWidth = -1;
+	private float density = -1;
+	private int glyphCount;		//amount of glyphs in the atlas, the rest use drawText
+	private int cellWidth;
+	private int cellHeight;
+	private int cellsPerRow;
+	private int baseline;		//distance from the top of a cell to the text baseline
+	private final Rect src = new Rect();
+	private final Rect dst = new Rect();
+
+	/**
+	 * Makes sure the atlas was built for the given text size and density, rebuilding it if needed.
+	 * @param size - <i>text size in pixels</i>
+	 * @param glyphWidth - <i>widest a glyph can be in pixels, wider glyphs are narrowed</i>
+	 * @param screenDensity - <i>logical density of the screen</i>
+	 */
+	public void ensure(float size, float glyphWidth, float screenDensity) {
+		if(size == textSize && glyphWidth == maxWidth && screenDensity == density)
+			return;
+		build(size, glyphWidth, screenDensity);
+	}
+
+	/**
+	 * Draws a Kana centered at <i>centerX</i> with its baseline at <i>baselineY</i>.
+	 * The glyph is drawn in the color of <i>paint</i>.
+	 * @param canvas - <i>canvas to draw on</i>
+	 * @param mode - <i>HIRAGANA_MODE, KATAKANA_MODE, or ROMAJI_MODE</i>
+	 * @param kanaIndex - <i>index of the Kana</i>
+	 * @param centerX - <i>horizontal center of the text</i>
+	 * @param baselineY - <i>baseline of the text</i>
+	 * @param paint - <i>paint with the text color and size</i>
+	 */
+	public void drawKana(Canvas canvas, int mode, int kanaIndex, float centerX, float baselineY, Paint paint) {
+		int glyph = mode * KanaBubble.KANA_COUNT + kanaIndex;
+		if(atlas == null || glyph >= glyphCount) {
+			//glyph did not fit in the atlas
+			canvas.drawText(kanaString(mode, kanaIndex), centerX, baselineY, paint);
+			return;
+		}
+		int left = (glyph % cellsPerRow) * cellWidth;
+		int top = (glyph / cellsPerRow) * cellHeight;
+		src.set(left, top, left + cellWidth, top + cellHeight);
+		int dstLeft = Math.round(centerX) - cellWidth / 2;
+		int dstTop = Math.round(baselineY) - baseline;
+		dst.set(dstLeft, dstTop, dstLeft + cellWidth, dstTop + cellHeight);
+		canvas.drawBitmap(atlas, src, dst, paint);
+	}
+
+	/**
+	 * Draws a Kana like drawKana(), scaled around its center and baseline, for bubbles
+	 * that are smaller or larger than the size the atlas was built for.
+	 * @param canvas - <i>canvas to draw on</i>
+	 * @param mode - <i>HIRAGANA_MODE, KATAKANA_MODE, or ROMAJI_MODE</i>
+	 * @param kanaIndex - <i>index of the Kana</i>
+	 * @param centerX - <i>horizontal center of the text</i>
+	 * @param baselineY - <i>baseline of the text</i>
+	 * @param scale - <i>size of the drawn glyph compared to the atlas</i>
+	 * @param paint - <i>paint with the text color and the unscaled size</i>
+	 */
+	public void drawKana(Canvas canvas, int mode, int kanaIndex, float centerX, float baselineY, float scale, Paint paint) {
+		if(scale == 1) {
+			drawKana(canvas, mode, kanaIndex, centerX, baselineY, paint);
+			return;
+		}
+		int glyph = mode * KanaBubble.KANA_COUNT + kanaIndex;
+		if(atlas == null || glyph >= glyphCount) {
+			//glyph did not fit in the atlas, draw the text at the scaled size
+			float size = paint.getTextSize();
+			paint.setTextSize(size * scale);
+			canvas.drawText(kanaString(mode, kanaIndex), centerX, baselineY, paint);
+			paint.setTextSize(size);
+			return;
+		}
+		int left = (glyph % cellsPerRow) * cellWidth;
+		int top = (glyph / cellsPerRow) * cellHeight;
+		src.set(left, top, left + cellWidth, top + cellHeight);
+		int dstLeft = Math.round(centerX - cellWidth * scale / 2);
+		int dstTop = Math.round(baselineY - baseline * scale);
+		dst.set(dstLeft, dstTop, dstLeft + Math.round(cellWidth * scale), dstTop + Math.round(cellHeight * scale));
+		canvas.drawBitmap(atlas, src, dst, paint);
+	}
+
+	/**
+	 * Obtains the amount of glyphs stored in the atlas.
+	 * @return int - <i>glyphs in the atlas</i>
+	 */
+	public int getGlyphCount() {
+		return glyphCount;
+	}
+
+	/**
+	 * Obtains the amount of memory used by the atlas bitmap.
+	 * @return int - <i>size in bytes</i>
+	 */
+	public int getByteCount() {
+		if(atlas == null)
+			return 0;
+		return atlas.getRowBytes() * atlas.getHeight();
+	}
+
+	/**
+	 * Frees the atlas bitmap. It will be built again on the next call to ensure().
+	 */
+	public void release() {
+		if(atlas != null) {
+			atlas.recycle();
+			atlas = null;
+		}
+		glyphCount = 0;
+		textSize = -1;
+	}
+
+	/**
+	 * Draws every Kana into a new atlas bitmap.
+	 * @param size - <i>text size in pixels</i>
+	 * @param glyphWidth - <i>widest a glyph can be in pixels</i>
+	 * @param screenDensity - <i>logical density of the screen</i>
+	 */
+	private void build(float size, float glyphWidth, float screenDensity) {
+		release();
+		textSize = size;
+		maxWidth = glyphWidth;
+		density = screenDensity;
+
+		Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setColor(Color.WHITE);
+		paint.setTextAlign(Align.CENTER);
+		paint.setTextSize(size);
+
+		//every cell is big enough to hold the widest glyph
+		int kanaCount = KanaBubble.KANA_COUNT;
+		int total = MODES * kanaCount;
+		float widest = 0;
+		for(int i = 0; i < total; i++)
+			widest = Math.max(widest, paint.measureText(kanaString(i / kanaCount, i % kanaCount)));
+		cellWidth = (int) Math.ceil(Math.min(widest, glyphWidth)) + PADDING * 2;
+		cellHeight = (int) Math.ceil(paint.descent() - paint.ascent()) + PADDING * 2;
+		baseline = (int) Math.ceil(-paint.ascent()) + PADDING;
+
+		//limit the amount of glyphs to what fits in the memory cap
+		cellsPerRow = Math.max(1, Math.min(total, MAX_ATLAS_WIDTH / cellWidth));
+		int maxRows = MAX_ATLAS_BYTES / (cellsPerRow * cellWidth * cellHeight);
+		int rows = Math.min((total + cellsPerRow - 1) / cellsPerRow, maxRows);
+		glyphCount = Math.min(total, rows * cellsPerRow);
+		if(glyphCount == 0)
+			return;
+
+		atlas = Bitmap.createBitmap(cellsPerRow * cellWidth, rows * cellHeight, Bitmap.Config.ALPHA_8);
+		Canvas atlasCanvas = new Canvas(atlas);
+		for(int i = 0; i < glyphCount; i++) {
+			float x = (i % cellsPerRow) * cellWidth + cellWidth / 2f;
+			float y = (i / cellsPerRow) * cellHeight + baseline;
+			String glyph = kanaString(i / kanaCount, i % kanaCount);
+			float width = paint.measureText(glyph);
+			paint.setTextScaleX(width > glyphWidth ? glyphWidth / width : 1);
+			atlasCanvas.drawText(glyph, x, y, paint);
+			paint.setTextScaleX(1);
+		}
+	}
+
+	/**
+	 * Obtains the text of a Kana.
+	 * @param mode - <i>HIRAGANA_MODE, KATAKANA_MODE, or ROMAJI_MODE</i>
+	 * @param kanaIndex - <i>index of the Kana</i>
+	 * @return String - <i>text of the Kana</i>
+	 */
+	private static String kanaString(int mode, int kanaIndex) {
+		switch(mode) {
+		case KanaBubble.HIRAGANA_MODE:
+			return KanaBubble.hiraganaList[kanaIndex];
+		case KanaBubble.KATAKANA_MODE:
+			return KanaBubble.katakanaList[kanaIndex];
+		default:
+			return KanaBubble.romajiList[kanaIndex];
+		}
+	}
+}
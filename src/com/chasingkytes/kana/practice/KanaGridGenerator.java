@@ -0,0 +1,229 @@
+package com.chasingkytes.kana.practice;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Chooses the Kana for every cell of a KanaBubbleGrid and which cell holds the target.
+ *
+ * The target is either given by the caller, usually from a TargetScheduler, or chosen uniformly
+ * at random. The other Kana are picked with a partial shuffle of the remaining Kana indices, so a grid 
+ * is filled in O(cells) without rerolling cells and every cell shows a different Kana. All choices 
+ * come from a single Random, so a generator created with a seed always produces the same grids.
+ *
+ * Only the Kana of one Kana set are used, the original 70 unless another set is chosen.
+ * Kana that sound the same as the target, such as ぢ for じ, are never on its grid, because
+ * the target would be ambiguous when it is shown in Romaji.
+ *
+ * Grids with more cells than there are Kana: the target still appears exactly once, every Kana
+ * is used once, and the extra cells are filled with randomly chosen Kana other than the target.
+ */
+public class KanaGridGenerator {
+
+	private final Random rand;
+	private final int[] indices;	//the Kana indices of the Kana set, in the order left by the last shuffle
+	private final int[] positions;	//position of every Kana index in indices, -1 if it is not in the set
+	private final int[][] sameSound;	//other Kana of the set with the same sound as every Kana
+	private final boolean[] onGrid;		//used by retarget() to find the Kana that are not on a grid yet
+
+	/**
+	 * Creates a KanaGridGenerator with a random seed.
+	 */
+	public KanaGridGenerator() {
+		this(new Random());
+	}
+
+	/**
+	 * Creates a KanaGridGenerator that always produces the same grids for the same seed.
+	 * @param seed - <i>seed of the random number generator</i>
+	 */
+	public KanaGridGenerator(long seed) {
+		this(new Random(seed));
+	}
+
+	/**
+	 * Creates a KanaGridGenerator for the original Kana.
+	 * @param random - <i>random number generator used for every choice</i>
+	 */
+	public KanaGridGenerator(Random random) {
+		this(random, KanaTable.BASIC_SET);
+	}
+
+	/**
+	 * Creates a KanaGridGenerator.
+	 * @param random - <i>random number generator used for every choice</i>
+	 * @param kanaSet - <i>categories of the Kana that are used, such as KanaTable.BASIC_SET</i>
+	 */
+	public KanaGridGenerator(Random random, int kanaSet) {
+		rand = random;
+		indices = KanaTable.getIndices(kanaSet);
+		if(indices.length == 0)
+			throw new IllegalArgumentException("Kana set " + kanaSet + " has no Kana");
+		positions = new int[KanaBubble.KANA_COUNT];
+		onGrid = new boolean[KanaBubble.KANA_COUNT];
+		Arrays.fill(positions, -1);
+		for(int i = 0; i < indices.length; i++)
+			positions[indices[i]] = i;
+
+		//most Kana have no other Kana with the same sound and share the empty array
+		int[] none = new int[0];
+		sameSound = new int[KanaBubble.KANA_COUNT][];
+		for(int i = 0; i < indices.length; i++) {
+			int kana = indices[i];
+			int count = 0;
+			for(int j = 0; j < indices.length; j++)
+				if(j != i && KanaTable.getSound(indices[j]) == KanaTable.getSound(kana))
+					count++;
+			sameSound[kana] = count == 0 ? none : new int[count];
+			count = 0;
+			for(int j = 0; j < indices.length; j++)
+				if(j != i && KanaTable.getSound(indices[j]) == KanaTable.getSound(kana))
+					sameSound[kana][count++] = indices[j];
+		}
+	}
+
+	/**
+	 * Obtains the random number generator used by this generator.
+	 * @return Random
+	 */
+	public Random getRandom() {
+		return rand;
+	}
+
+	/**
+	 * Checks if a Kana can be a target of this generator.
+	 * @param kanaIndex - <i>kana index</i>
+	 * @return boolean - <i>true if the Kana is in the Kana set</i>
+	 */
+	public boolean contains(int kanaIndex) {
+		return positions[kanaIndex] >= 0;
+	}
+
+	/**
+	 * Fills the cells of a grid with Kana indices and a uniformly random target.
+	 * @param cells - <i>array with one entry per cell, stored row by row, that the Kana indices are written to</i>
+	 * @return int - <i>position in <b>cells</b> of the target, the target Kana is cells[position]</i>
+	 */
+	public synchronized int generate(int[] cells) {
+		return generate(cells, indices[rand.nextInt(indices.length)]);
+	}
+
+	/**
+	 * Fills the cells of a grid with Kana indices around a given target.
+	 * @param cells - <i>array with one entry per cell, stored row by row, that the Kana indices are written to</i>
+	 * @param targetKana - <i>kana index of the target, in the Kana set, it is placed in exactly one random cell</i>
+	 * @return int - <i>position in <b>cells</b> of the target</i>
+	 */
+	public synchronized int generate(int[] cells, int targetKana) {
+		if(!contains(targetKana))
+			throw new IllegalArgumentException("Kana " + targetKana + " is not in the Kana set");
+		
+		//move the target and the Kana that sound like it to the end of indices so they are never picked
+		int others = indices.length - 1;
+		swap(positions[targetKana], others);
+		int[] same = sameSound[targetKana];
+		for(int i = 0; i < same.length; i++) {
+			others--;
+			swap(positions[same[i]], others);
+		}
+
+		//partial Fisher-Yates shuffle: the first indices become a random sample of the other Kana
+		int distinct = Math.min(cells.length - 1, others);
+		for(int i = 0; i < distinct; i++) {
+			swap(i, i + rand.nextInt(others - i));
+			cells[i] = indices[i];
+		}
+		
+		//more cells than Kana: fill the rest with Kana that do not sound like the target
+		for(int i = distinct; i < cells.length - 1; i++) {
+			if(others == 0) {
+				cells[i] = targetKana;
+				continue;
+			}
+			cells[i] = indices[rand.nextInt(others)];
+		}
+
+		//place the target in a random cell, the Kana that was there moves to the last cell
+		int targetPosition = rand.nextInt(cells.length);
+		cells[cells.length - 1] = cells[targetPosition];
+		cells[targetPosition] = targetKana;
+		if(cells.length <= others + 1)
+			return targetPosition;
+
+		//shuffle so the repeated Kana are not always at the end of the grid
+		for(int i = cells.length - 1; i > 0; i--) {
+			int j = rand.nextInt(i + 1);
+			int temp = cells[i];
+			cells[i] = cells[j];
+			cells[j] = temp;
+			if(i == targetPosition)
+				targetPosition = j;
+			else if(j == targetPosition)
+				targetPosition = i;
+		}
+		return targetPosition;
+	}
+
+	/**
+	 * Gives a filled grid a new target, so a grid can be built before its target is known.
+	 * If the target is already on the grid it stays in its cell, otherwise it replaces the Kana of
+	 * a random cell. Any other cell holding the target or a Kana that sounds like it is given a Kana
+	 * that is not on the grid yet, or a random Kana once every Kana is used. O(cells + Kana).
+	 * @param cells - <i>Kana indices of the grid, stored row by row, as filled by generate()</i>
+	 * @param targetKana - <i>kana index of the new target, in the Kana set</i>
+	 * @return int - <i>position in <b>cells</b> of the target</i>
+	 */
+	public synchronized int retarget(int[] cells, int targetKana) {
+		if(!contains(targetKana))
+			throw new IllegalArgumentException("Kana " + targetKana + " is not in the Kana set");
+		int sound = KanaTable.getSound(targetKana);
+		int targetPosition = -1;
+		for(int i = 0; i < cells.length; i++) {
+			onGrid[cells[i]] = true;
+			if(targetPosition < 0 && cells[i] == targetKana)
+				targetPosition = i;
+		}
+		if(targetPosition < 0) {
+			targetPosition = rand.nextInt(cells.length);
+			cells[targetPosition] = targetKana;
+		}
+
+		//the unused Kana are searched from a random position, so each is as likely to be picked
+		int next = rand.nextInt(indices.length);
+		for(int i = 0; i < cells.length; i++) {
+			if(i == targetPosition || KanaTable.getSound(cells[i]) != sound)
+				continue;
+			int replacement = -1;
+			for(int n = 0; n < indices.length && replacement < 0; n++) {
+				int kana = indices[(next + n) % indices.length];
+				if(!onGrid[kana] && KanaTable.getSound(kana) != sound)
+					replacement = kana;
+			}
+			//more cells than Kana: any Kana that does not sound like the target
+			next = rand.nextInt(indices.length);
+			for(int n = 0; n < indices.length && replacement < 0; n++) {
+				int kana = indices[(next + n) % indices.length];
+				if(KanaTable.getSound(kana) != sound)
+					replacement = kana;
+			}
+			//every Kana of the set sounds like the target, like generate() the target is repeated
+			cells[i] = replacement < 0 ? targetKana : replacement;
+			onGrid[cells[i]] = true;
+		}
+		Arrays.fill(onGrid, false);
+		return targetPosition;
+	}
+
+	/**
+	 * Swaps two entries of indices and keeps positions up to date.
+	 * @param a - <i>position in indices</i>
+	 * @param b - <i>position in indices</i>
+	 */
+	private void swap(int a, int b) {
+		int temp = indices[a];
+		indices[a] = indices[b];
+		indices[b] = temp;
+		positions[indices[a]] = a;
+		positions[indices[b]] = b;
+	}
+}
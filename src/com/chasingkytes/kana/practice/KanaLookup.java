@@ -0,0 +1,178 @@
+package com.chasingkytes.kana.practice;
+
+import java.util.Arrays;
+
+/**
+ * Finds the kana index of a Hiragana, Katakana or Romaji string in constant time.
+ *
+ * Hiragana and Katakana each sit in their own Unicode block, so a Kana is looked up by
+ * using its character as the position in a small table covering the block. Kana written 
+ * with two characters, such as きゃ, use both characters as a row and column in a second
+ * part of the table. Romaji are at most three lowercase letters, so each one is turned into
+ * a number in base 27 which is used as the position in a table, giving every Romaji its own
+ * slot. Kana that sound the same share their Romaji, such as じ and ぢ for "ji", and the Romaji
+ * finds the first of them. The tables are built once when the class is loaded and lookups do
+ * not create any objects.
+ */
+public class KanaLookup {
+
+	//returned when a string is not in the kana table
+	final static int NOT_FOUND = -1;
+
+	final static int HIRAGANA_BLOCK = 0x3040;
+	final static int KATAKANA_BLOCK = 0x30A0;
+	final static int BLOCK_SIZE = 0x60;
+	//one slot for every single character and every pair of characters in a block
+	final static int KANA_TABLE_SIZE = BLOCK_SIZE + BLOCK_SIZE * BLOCK_SIZE;
+
+	//longest Romaji that can be stored, and the size of the table that holds every Romaji up to that length
+	final static int MAX_ROMAJI_LENGTH = 3;
+	final static int ROMAJI_TABLE_SIZE = 27 * 27 * 27;
+
+	private static final short[] hiraganaTable = new short[KANA_TABLE_SIZE];
+	private static final short[] katakanaTable = new short[KANA_TABLE_SIZE];
+	private static final short[] romajiTable = new short[ROMAJI_TABLE_SIZE];
+
+	static {
+		Arrays.fill(hiraganaTable, (short) NOT_FOUND);
+		Arrays.fill(katakanaTable, (short) NOT_FOUND);
+		Arrays.fill(romajiTable, (short) NOT_FOUND);
+		for(int i = 0; i < KanaBubble.KANA_COUNT; i++) {
+			addEntry(hiraganaTable, kanaKey(KanaBubble.hiraganaList[i], HIRAGANA_BLOCK), i, KanaBubble.hiraganaList[i]);
+			addEntry(katakanaTable, kanaKey(KanaBubble.katakanaList[i], KATAKANA_BLOCK), i, KanaBubble.katakanaList[i]);
+			//a Romaji shared by Kana that sound the same finds the first of them
+			if(KanaTable.getSound(i) == i)
+				addEntry(romajiTable, romajiKey(KanaBubble.romajiList[i]), i, KanaBubble.romajiList[i]);
+		}
+	}
+
+	/**
+	 * Obtains the kana index of a string.
+	 * @param str - <i>Hiragana, Katakana, or Romaji</i>
+	 * @param mode - <i>HIRAGANA_MODE, KATAKANA_MODE, or ROMAJI_MODE</i>
+	 * @return int - <i>kana index, or NOT_FOUND</i>
+	 */
+	public static int indexOf(String str, int mode) {
+		switch(mode) {
+		case KanaBubble.HIRAGANA_MODE:
+			return hiraganaIndex(str);
+		case KanaBubble.KATAKANA_MODE:
+			return katakanaIndex(str);
+		case KanaBubble.ROMAJI_MODE:
+			return romajiIndex(str);
+		default:
+			return NOT_FOUND;
+		}
+	}
+
+	/**
+	 * Obtains the kana index of a Hiragana.
+	 * @param str - <i>Hiragana</i>
+	 * @return int - <i>kana index, or NOT_FOUND</i>
+	 */
+	public static int hiraganaIndex(String str) {
+		int key = kanaKey(str, HIRAGANA_BLOCK);
+		if(key < 0)
+			return NOT_FOUND;
+		return hiraganaTable[key];
+	}
+
+	/**
+	 * Obtains the kana index of a Katakana.
+	 * @param str - <i>Katakana</i>
+	 * @return int - <i>kana index, or NOT_FOUND</i>
+	 */
+	public static int katakanaIndex(String str) {
+		int key = kanaKey(str, KATAKANA_BLOCK);
+		if(key < 0)
+			return NOT_FOUND;
+		return katakanaTable[key];
+	}
+
+	/**
+	 * Obtains the kana index of a Romaji.
+	 * @param str - <i>Romaji in lowercase</i>
+	 * @return int - <i>kana index, or NOT_FOUND</i>
+	 */
+	public static int romajiIndex(String str) {
+		int key = romajiKey(str);
+		if(key < 0)
+			return NOT_FOUND;
+		return romajiTable[key];
+	}
+
+	/**
+	 * Converts a Kana from one mode to another, for example Hiragana to Romaji.
+	 * @param str - <i>Kana in <b>fromMode</b></i>
+	 * @param fromMode - <i>HIRAGANA_MODE, KATAKANA_MODE, or ROMAJI_MODE</i>
+	 * @param toMode - <i>HIRAGANA_MODE, KATAKANA_MODE, or ROMAJI_MODE</i>
+	 * @return String - <i>the same Kana in <b>toMode</b>, or null if <b>str</b> is not a Kana</i>
+	 */
+	public static String convert(String str, int fromMode, int toMode) {
+		int index = indexOf(str, fromMode);
+		if(index == NOT_FOUND)
+			return null;
+		switch(toMode) {
+		case KanaBubble.HIRAGANA_MODE:
+			return KanaBubble.hiraganaList[index];
+		case KanaBubble.KATAKANA_MODE:
+			return KanaBubble.katakanaList[index];
+		case KanaBubble.ROMAJI_MODE:
+			return KanaBubble.romajiList[index];
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Stores a kana index in a lookup table.
+	 * @param table - <i>lookup table</i>
+	 * @param key - <i>position in the table</i>
+	 * @param index - <i>kana index</i>
+	 * @param str - <i>the Kana, used in the error message</i>
+	 */
+	private static void addEntry(short[] table, int key, int index, String str) {
+		if(key < 0 || table[key] != NOT_FOUND)
+			throw new IllegalStateException("kana table entry " + index + " (" + str + ") can not be looked up");
+		table[key] = (short) index;
+	}
+
+	/**
+	 * Turns a Kana of one or two characters into its position in the table of its Unicode block.
+	 * @param str - <i>Kana</i>
+	 * @param blockStart - <i>first character of the block</i>
+	 * @return int - <i>position in the table, or -1 if it can not be a Kana of the block</i>
+	 */
+	private static int kanaKey(String str, int blockStart) {
+		if(str == null || str.length() == 0 || str.length() > 2)
+			return -1;
+		int first = str.charAt(0) - blockStart;
+		if(first < 0 || first >= BLOCK_SIZE)
+			return -1;
+		if(str.length() == 1)
+			return first;
+		int second = str.charAt(1) - blockStart;
+		if(second < 0 || second >= BLOCK_SIZE)
+			return -1;
+		return BLOCK_SIZE + first * BLOCK_SIZE + second;
+	}
+
+	/**
+	 * Turns a Romaji into its position in the Romaji table. Each letter is a digit from
+	 * 1 to 26 in base 27, so strings of different lengths never share a position.
+	 * @param str - <i>Romaji in lowercase</i>
+	 * @return int - <i>position in the table, or -1 if it can not be a Romaji</i>
+	 */
+	private static int romajiKey(String str) {
+		if(str == null || str.length() == 0 || str.length() > MAX_ROMAJI_LENGTH)
+			return -1;
+		int key = 0;
+		for(int i = 0; i < str.length(); i++) {
+			char letter = str.charAt(i);
+			if(letter < 'a' || letter > 'z')
+				return -1;
+			key = key * 27 + (letter - 'a' + 1);
+		}
+		return key;
+	}
+}
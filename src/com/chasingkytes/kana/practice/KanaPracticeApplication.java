@@ -0,0 +1,34 @@
+package com.chasingkytes.kana.practice;
+
+import android.app.Application;
+import android.content.Context;
+
+/**
+ * Holds what is shared by every screen of the application for as long as it runs.
+ */
+public class KanaPracticeApplication extends Application {
+
+	private AssetRegistry assetRegistry;
+
+	@Override
+	public void onCreate() {
+		super.onCreate();
+		assetRegistry = new AssetRegistry(this);
+	}
+
+	@Override
+	public void onLowMemory() {
+		super.onLowMemory();
+		//the assets are built again when the next game starts
+		assetRegistry.trim();
+	}
+
+	/**
+	 * Obtains the asset registry of the application.
+	 * @param context - <i>any context of the application</i>
+	 * @return AssetRegistry - <i>shared registry</i>
+	 */
+	public static AssetRegistry getAssetRegistry(Context context) {
+		return ((KanaPracticeApplication) context.getApplicationContext()).assetRegistry;
+	}
+}
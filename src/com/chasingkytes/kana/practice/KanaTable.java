@@ -0,0 +1,177 @@
+package com.chasingkytes.kana.practice;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Every Kana that can appear in the game, read once from kana_table.bin when the class is
+ * loaded and shared by every KanaBubble and KanaBubbleGrid.
+ *
+ * The file is written by tools/KanaTableWriter.java. It is stored big-endian:
+ * the magic number "KANA", a version and the amount of entries, one category byte per entry,
+ * then for Hiragana, Katakana and Romaji the start of every string in a single char array
+ * followed by the characters themselves.
+ *
+ * The Romaji is Hepburn, as it is shown to the user, so Kana that sound the same share it: 
+ * じ and ぢ are both "ji". A game only asks the Kana of the categories in its Kana set.
+ */
+public class KanaTable {
+
+	final static int MAGIC = 0x4B414E41;	//"KANA"
+	final static int VERSION = 1;
+	final static String FILE_NAME = "kana_table.bin";
+
+	//largest amount of entries, grids store kana indices in a byte
+	final static int MAX_SIZE = 256;
+
+	final static int BASIC = 0;
+	final static int DAKUTEN = 1;
+	final static int HANDAKUTEN = 2;
+	final static int YOON = 3;
+	final static int SMALL = 4;
+	final static int ARCHAIC = 5;
+	final static int EXTENDED = 6;
+
+	//Kana sets that can be chosen in the menu, as a bit for every category they ask
+	//small Kana are never asked on their own, they sound the same as the full size Kana
+	final static int BASIC_SET = (1 << BASIC) | (1 << DAKUTEN) | (1 << HANDAKUTEN);	//the original 70 Kana
+	final static int YOON_SET = BASIC_SET | (1 << YOON);
+	final static int FULL_SET = YOON_SET | (1 << ARCHAIC) | (1 << EXTENDED);
+	//in the order of the menu
+	final static int[] KANA_SETS = { BASIC_SET, YOON_SET, FULL_SET };
+
+	//amount of Kana in the table
+	final static int SIZE;
+
+	private static final byte[] categories;
+	private static final String[] hiragana;
+	private static final String[] katakana;
+	private static final String[] romaji;
+	private static final short[] sounds;	//first kana index with the same Romaji as every Kana
+
+	static {
+		InputStream in = KanaTable.class.getResourceAsStream(FILE_NAME);
+		if(in == null)
+			throw new IllegalStateException(FILE_NAME + " is missing");
+		try {
+			DataInputStream data = new DataInputStream(new BufferedInputStream(in, 4096));
+			if(data.readInt() != MAGIC)
+				throw new IOException(FILE_NAME + " is not a kana table");
+			int version = data.readUnsignedShort();
+			if(version != VERSION)
+				throw new IOException(FILE_NAME + " has unsupported version " + version);
+			SIZE = data.readUnsignedShort();
+			if(SIZE == 0 || SIZE > MAX_SIZE)
+				throw new IOException(FILE_NAME + " has " + SIZE + " entries");
+
+			categories = new byte[SIZE];
+			data.readFully(categories);
+			hiragana = readStrings(data, SIZE);
+			katakana = readStrings(data, SIZE);
+			romaji = readStrings(data, SIZE);
+			sounds = new short[SIZE];
+			for(int i = 0; i < SIZE; i++) {
+				int first = 0;
+				while(!romaji[first].equals(romaji[i]))
+					first++;
+				sounds[i] = (short) first;
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("could not read " + FILE_NAME, e);
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+				//nothing left to read
+			}
+		}
+	}
+
+	/**
+	 * Obtains every Hiragana, in kana index order. The array is shared and must not be changed.
+	 * @return String[] - <i>Hiragana</i>
+	 */
+	static String[] getHiragana() {
+		return hiragana;
+	}
+
+	/**
+	 * Obtains every Katakana, in kana index order. The array is shared and must not be changed.
+	 * @return String[] - <i>Katakana</i>
+	 */
+	static String[] getKatakana() {
+		return katakana;
+	}
+
+	/**
+	 * Obtains every Romaji, in kana index order. The array is shared and must not be changed.
+	 * @return String[] - <i>Romaji</i>
+	 */
+	static String[] getRomaji() {
+		return romaji;
+	}
+
+	/**
+	 * Obtains the category of a Kana.
+	 * @param index - <i>kana index</i>
+	 * @return int - <i>BASIC, DAKUTEN, HANDAKUTEN, YOON, SMALL, ARCHAIC, or EXTENDED</i>
+	 */
+	public static int getCategory(int index) {
+		return categories[index];
+	}
+
+	/**
+	 * Obtains the sound of a Kana. Kana that share their Romaji, such as じ and ぢ, have the 
+	 * same sound and must not be on a grid together with the other one as the target.
+	 * @param index - <i>kana index</i>
+	 * @return int - <i>the first kana index with the same Romaji</i>
+	 */
+	public static int getSound(int index) {
+		return sounds[index];
+	}
+
+	/**
+	 * Obtains the Kana asked by a Kana set.
+	 * @param kanaSet - <i>BASIC_SET, YOON_SET, FULL_SET, or any other bits of categories</i>
+	 * @return int[] - <i>kana indices of the Kana in the set, in kana index order</i>
+	 */
+	public static int[] getIndices(int kanaSet) {
+		int count = 0;
+		for(int i = 0; i < SIZE; i++)
+			if((kanaSet & (1 << categories[i])) != 0)
+				count++;
+		int[] indices = new int[count];
+		count = 0;
+		for(int i = 0; i < SIZE; i++)
+			if((kanaSet & (1 << categories[i])) != 0)
+				indices[count++] = i;
+		return indices;
+	}
+
+	/**
+	 * Reads the strings of one mode. All the characters are read into one array first
+	 * and each String is then created from its part of the array.
+	 * @param data - <i>stream positioned at the start of the mode</i>
+	 * @param size - <i>amount of entries</i>
+	 * @return String[] - <i>the strings of the mode</i>
+	 * @throws IOException if the file is too short or damaged
+	 */
+	private static String[] readStrings(DataInputStream data, int size) throws IOException {
+		int[] offsets = new int[size + 1];
+		for(int i = 0; i <= size; i++)
+			offsets[i] = data.readUnsignedShort();
+		char[] chars = new char[offsets[size]];
+		for(int i = 0; i < chars.length; i++)
+			chars[i] = data.readChar();
+
+		String[] strings = new String[size];
+		for(int i = 0; i < size; i++) {
+			if(offsets[i + 1] <= offsets[i])
+				throw new IOException(FILE_NAME + " has an empty entry at " + i);
+			strings[i] = new String(chars, offsets[i], offsets[i + 1] - offsets[i]);
+		}
+		return strings;
+	}
+}
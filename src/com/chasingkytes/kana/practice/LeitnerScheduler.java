@@ -0,0 +1,109 @@
+package com.chasingkytes.kana.practice;
+
+import java.util.Random;
+
+/**
+ * Chooses targets with a Leitner system, so Kana the user knows well are asked less often.
+ *
+ * Every Kana is in a box from 0 to MAX_BOX. A Kana in box <i>b</i> is asked again 2^(b+1) questions 
+ * after it was last asked. Finding the target without a wrong guess moves it up a box, 
+ * a wrong guess moves it back to box 0. The Kana that has been due the longest is asked next.
+ * Only the Kana of the chosen Kana set are asked.
+ *
+ * The due question of every Kana is kept in an IndexedMinHeap, so choosing a target is O(1)
+ * and every answer is O(log n), no matter how many Kana are in the table.
+ */
+public class LeitnerScheduler implements TargetScheduler {
+
+	final static int MAX_BOX = 6;
+
+	private final IndexedMinHeap dueQuestion;
+	private final byte[] box;
+	private final boolean[] missed;		//true if the Kana had a wrong guess since it was last asked
+	private final boolean[] asked;		//true if the Kana is in the Kana set
+	private long questionCount = 0;		//amount of targets chosen so far
+
+	/**
+	 * Creates a LeitnerScheduler for the original Kana.
+	 * @param rand - <i>random number generator that chooses the order of the first questions</i>
+	 */
+	public LeitnerScheduler(Random rand) {
+		this(rand, KanaTable.BASIC_SET);
+	}
+
+	/**
+	 * Creates a LeitnerScheduler with every Kana in box 0. The Kana are first asked in a random order.
+	 * @param rand - <i>random number generator that chooses the order of the first questions</i>
+	 * @param kanaSet - <i>categories of the Kana that are asked, such as KanaTable.BASIC_SET</i>
+	 */
+	public LeitnerScheduler(Random rand, int kanaSet) {
+		int size = KanaBubble.KANA_COUNT;
+		dueQuestion = new IndexedMinHeap(size);
+		box = new byte[size];
+		missed = new boolean[size];
+		asked = new boolean[size];
+
+		//new Kana are introduced one question at a time in a random order
+		int[] order = KanaTable.getIndices(kanaSet);
+		for(int i = order.length - 1; i > 0; i--) {
+			int j = rand.nextInt(i + 1);
+			int temp = order[i];
+			order[i] = order[j];
+			order[j] = temp;
+		}
+		//Kana outside the set are never due
+		for(int i = 0; i < size; i++)
+			dueQuestion.setKey(i, Long.MAX_VALUE);
+		for(int i = 0; i < order.length; i++) {
+			asked[order[i]] = true;
+			dueQuestion.setKey(order[i], i);
+		}
+	}
+
+	public synchronized int nextTarget() {
+		//the Kana is rescheduled once the user answers, until then it stays the most due
+		questionCount++;
+		return dueQuestion.peek();
+	}
+
+	public synchronized void recordHit(int kanaIndex) {
+		if(!asked[kanaIndex])
+			return;
+		if(!missed[kanaIndex] && box[kanaIndex] < MAX_BOX)
+			box[kanaIndex]++;
+		missed[kanaIndex] = false;
+		reschedule(kanaIndex);
+	}
+
+	public synchronized void recordMiss(int kanaIndex) {
+		if(!asked[kanaIndex])
+			return;
+		box[kanaIndex] = 0;
+		missed[kanaIndex] = true;
+		reschedule(kanaIndex);
+	}
+
+	/**
+	 * Obtains the box of a Kana.
+	 * @param kanaIndex - <i>kana index</i>
+	 * @return int - <i>box from 0 to MAX_BOX</i>
+	 */
+	public synchronized int getBox(int kanaIndex) {
+		return box[kanaIndex];
+	}
+
+	/**
+	 * Sets the box of a Kana, for example when restoring saved progress.
+	 * @param kanaIndex - <i>kana index</i>
+	 * @param newBox - <i>box from 0 to MAX_BOX</i>
+	 */
+	public synchronized void setBox(int kanaIndex, int newBox) {
+		box[kanaIndex] = (byte) Math.max(0, Math.min(MAX_BOX, newBox));
+		if(asked[kanaIndex])
+			reschedule(kanaIndex);
+	}
+
+	private void reschedule(int kanaIndex) {
+		dueQuestion.setKey(kanaIndex, questionCount + (2L << box[kanaIndex]));
+	}
+}
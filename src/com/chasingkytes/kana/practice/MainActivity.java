@@ -24,19 +24,28 @@ import android.widget.Toast;
  */
 public class MainActivity extends Activity implements OnItemSelectedListener, OnClickListener, OnCheckedChangeListener {
 
-	int questionMode, answerMode, rows, columns;
-	Spinner sQuestion, sAnswer, sRows, sColumns;
-	boolean soundOn, showTimer, showScore;
-	CheckBox cbSound, cbTimer, cbScore;
+	int questionMode, answerMode, kanaSet, rows, columns;
+	Spinner sQuestion, sAnswer, sKanaSet, sRows, sColumns;
+	boolean soundOn, showTimer, showScore, floating;
+	CheckBox cbSound, cbTimer, cbScore, cbFloating;
 	Button bStart;
 	TextView tvChoice;
 	int numOfChoices;
 	
+	//the floating bubbles mode shows this many bubbles for every cell of the chosen grid, up to MAX_FLOATING_BUBBLES
+	final static int BUBBLES_PER_CELL = 10;
+	//more bubbles would be too small to read on a phone and too slow to simulate
+	final static int MAX_FLOATING_BUBBLES = 200;
+	
 	@Override
 	public void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
 		setContentView(R.layout.activity_main);
 
+		//start decoding the sounds and pictures while the user picks the options, the games share them
+		AppAudio.acquire(this);
+		KanaPracticeApplication.getAssetRegistry(this).warmUp();
+
 		//set up spinners and adapters
 		sQuestion = (Spinner) findViewById(R.id.sQuestion);
 		ArrayAdapter<CharSequence> modeAdapter = ArrayAdapter.createFromResource(this, R.array.modeArray, android.R.layout.simple_spinner_item);
@@ -52,6 +61,15 @@ public class MainActivity extends Activity implements OnItemSelectedListener, On
 		sAnswer.setSelection(answerMode);
 		sAnswer.setOnItemSelectedListener(this);
 
+		//only the original Kana are asked unless the user chooses more
+		sKanaSet = (Spinner) findViewById(R.id.sKanaSet);
+		ArrayAdapter<CharSequence> kanaSetAdapter = ArrayAdapter.createFromResource(this, R.array.kanaSetArray, android.R.layout.simple_spinner_item);
+		kanaSetAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+		sKanaSet.setAdapter(kanaSetAdapter);
+		kanaSet = KanaTable.BASIC_SET;
+		sKanaSet.setSelection(0);
+		sKanaSet.setOnItemSelectedListener(this);
+
 		sRows = (Spinner) findViewById(R.id.sRows);
 		ArrayAdapter<CharSequence> rowAdapter = ArrayAdapter.createFromResource(this, R.array.rowArray, android.R.layout.simple_spinner_item);
 		rowAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
@@ -84,6 +102,11 @@ public class MainActivity extends Activity implements OnItemSelectedListener, On
 		cbScore.setChecked(showScore);
 		cbScore.setOnCheckedChangeListener(this);
 		
+		cbFloating = (CheckBox) findViewById(R.id.cbFloating);
+		floating = false;
+		cbFloating.setChecked(floating);
+		cbFloating.setOnCheckedChangeListener(this);
+		
 		//set up start button
 		bStart = (Button) findViewById(R.id.bStart);
 		bStart.setOnClickListener(this);
@@ -93,6 +116,12 @@ public class MainActivity extends Activity implements OnItemSelectedListener, On
 		setNumOfChoices();		
 	}
 
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		AppAudio.release();
+	}
+
 	@Override
 	public boolean onCreateOptionsMenu(Menu menu) {
 		getMenuInflater().inflate(R.menu.activity_main, menu);
@@ -109,14 +138,18 @@ public class MainActivity extends Activity implements OnItemSelectedListener, On
 			//set the mode of the answer based off of the user's choice
 			answerMode = pos;
 			break;
+		case R.id.sKanaSet:
+			//set the Kana that are asked based off of the user's choice
+			kanaSet = KanaTable.KANA_SETS[pos];
+			break;
 		case R.id.sRows:
 			//set the number of rows based off of the user's choice
-			rows = pos + 1;
+			rows = getResources().getIntArray(R.array.rowArrayValues)[pos];
 			setNumOfChoices();
 			break;
 		case R.id.sColumns:
 			//set the number of columns based off of the user's choice
-			columns = pos + 1;
+			columns = getResources().getIntArray(R.array.columnArrayValues)[pos];
 			setNumOfChoices();
 			break;
 		}
@@ -140,6 +173,11 @@ public class MainActivity extends Activity implements OnItemSelectedListener, On
 			//toggles the score on/off
 			showScore = isChecked;
 			break;
+		case R.id.cbFloating:
+			//toggles the floating bubbles mode on/off
+			floating = isChecked;
+			setNumOfChoices();
+			break;
 		}
 	}
 	
@@ -150,11 +188,14 @@ public class MainActivity extends Activity implements OnItemSelectedListener, On
 			Bundle basket = new Bundle();
 			basket.putInt("question", questionMode);
 			basket.putInt("answer", answerMode);
+			basket.putInt("kanaSet", kanaSet);
 			basket.putInt("rows", rows);
 			basket.putInt("columns", columns);
 			basket.putBoolean("sound", soundOn);
 			basket.putBoolean("timer", showTimer);
 			basket.putBoolean("score", showScore);
+			basket.putBoolean("floating", floating);
+			basket.putInt("bubbles", numOfChoices);
 			Intent a = new Intent(MainActivity.this, GFXSurface.class);
 			a.putExtras(basket);
 			startActivity(a);
@@ -163,11 +204,13 @@ public class MainActivity extends Activity implements OnItemSelectedListener, On
 	}
 
 	/**
-	 * Calculates how many KanaBubble objects will be on the game grid and 
-	 * displays it in a TextView for the user to see
+	 * Calculates how many KanaBubble objects will be on the game grid, or floating 
+	 * around the screen (10 to MAX_FLOATING_BUBBLES), and displays it in a TextView for the user to see
 	 */
 	private void setNumOfChoices() {
 		numOfChoices = rows * columns;
+		if(floating)
+			numOfChoices = Math.min(numOfChoices * BUBBLES_PER_CELL, MAX_FLOATING_BUBBLES);
 		tvChoice.setText("(" + Integer.toString(numOfChoices) + " choices)");
 	}
 }
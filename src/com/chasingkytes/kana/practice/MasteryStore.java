@@ -0,0 +1,290 @@
+package com.chasingkytes.kana.practice;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Remembers how well the user knows every Kana between games: the amount of times it was
+ * found, the amount of wrong guesses while looking for it, and the total time taken to find it.
+ *
+ * There is one store for the whole application, kept for as long as it runs like the
+ * AssetRegistry, so only one thread ever reads and writes the file. Every game acquires it when
+ * it is created and releases it when it is destroyed. The last release only asks for the recorded
+ * answers to be written; neither it nor the next acquire() waits for the disk.
+ *
+ * Answers are recorded in memory. A background thread loads the saved records, then writes the
+ * answers to disk in batches, at most once every FLUSH_DELAY_MS, so the game never waits for the
+ * disk. The file is first written to a temporary file and then renamed over the old one, so a
+ * crash while writing never leaves a damaged file behind.
+ *
+ * The file is big-endian: the magic number "KMST", a version and the amount of records,
+ * then one record per kana index of RECORD_SIZE bytes: hits (int), misses (int) and
+ * total response time in milliseconds (long).
+ */
+public class MasteryStore implements Runnable {
+
+	final static int MAGIC = 0x4B4D5354;	//"KMST"
+	final static int VERSION = 1;
+	final static int HEADER_SIZE = 8;
+	final static int RECORD_SIZE = 16;
+	final static String FILE_NAME = "mastery.bin";
+
+	//how long answers are collected before they are written
+	final static long FLUSH_DELAY_MS = 5000;
+
+	private final File file;
+	private final File tempFile;
+	private final int[] hits = new int[KanaBubble.KANA_COUNT];
+	private final int[] misses = new int[KanaBubble.KANA_COUNT];
+	private final long[] responseMs = new long[KanaBubble.KANA_COUNT];
+	private final byte[] buffer = new byte[HEADER_SIZE + RECORD_SIZE * KanaBubble.KANA_COUNT];
+
+	private boolean loaded = false;
+	private boolean dirty = false;
+	private boolean flushNow = false;
+	private boolean running = true;
+	private final Thread writer;
+
+	private static MasteryStore store = null;
+	private static int users = 0;
+
+	/**
+	 * Obtains the store of the application, opening it if needed.
+	 * @param directory - <i>directory the file is kept in, the files directory of the application</i>
+	 * @return MasteryStore - <i>shared store</i>
+	 */
+	public static synchronized MasteryStore acquire(File directory) {
+		if(store == null)
+			store = new MasteryStore(directory);
+		users++;
+		return store;
+	}
+
+	/**
+	 * Gives up the store obtained with acquire(). The last release asks the background thread to
+	 * write the recorded answers and returns at once, the store stays open for the next game.
+	 */
+	public static synchronized void release() {
+		if(users == 0)
+			return;
+		users--;
+		if(users == 0)
+			store.flush();
+	}
+
+	/**
+	 * Creates a MasteryStore and starts the background thread, which loads the saved records.
+	 * @param directory - <i>directory the file is kept in</i>
+	 */
+	MasteryStore(File directory) {
+		file = new File(directory, FILE_NAME);
+		tempFile = new File(directory, FILE_NAME + ".tmp");
+		writer = new Thread(this, "MasteryStore");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Records that the user found a Kana.
+	 * @param kanaIndex - <i>kana index of the target</i>
+	 * @param timeMs - <i>time taken to find it in milliseconds</i>
+	 */
+	public synchronized void recordHit(int kanaIndex, long timeMs) {
+		hits[kanaIndex]++;
+		responseMs[kanaIndex] += timeMs;
+		markDirty();
+	}
+
+	/**
+	 * Records a wrong guess while the user was looking for a Kana.
+	 * @param kanaIndex - <i>kana index of the target</i>
+	 */
+	public synchronized void recordMiss(int kanaIndex) {
+		misses[kanaIndex]++;
+		markDirty();
+	}
+
+	/**
+	 * Obtains the amount of times the user found a Kana, waiting for the saved records if they
+	 * are not loaded yet.
+	 * @param kanaIndex - <i>kana index</i>
+	 * @return int - <i>hits</i>
+	 */
+	public synchronized int getHits(int kanaIndex) {
+		awaitLoaded();
+		return hits[kanaIndex];
+	}
+
+	/**
+	 * Obtains the amount of wrong guesses while the user was looking for a Kana.
+	 * @param kanaIndex - <i>kana index</i>
+	 * @return int - <i>misses</i>
+	 */
+	public synchronized int getMisses(int kanaIndex) {
+		awaitLoaded();
+		return misses[kanaIndex];
+	}
+
+	/**
+	 * Obtains the total time the user took to find a Kana.
+	 * @param kanaIndex - <i>kana index</i>
+	 * @return long - <i>time in milliseconds</i>
+	 */
+	public synchronized long getResponseMs(int kanaIndex) {
+		awaitLoaded();
+		return responseMs[kanaIndex];
+	}
+
+	/**
+	 * Asks the background thread to write any recorded answers right away, for example when
+	 * the game goes to the background. Does not wait for the write to finish.
+	 */
+	public synchronized void flush() {
+		flushNow = true;
+		notifyAll();
+	}
+
+	public void run() {
+		//answers recorded while the file is read are added to the saved records
+		load();
+		synchronized(this) {
+			loaded = true;
+			notifyAll();
+		}
+		while(true) {
+			synchronized(this) {
+				try {
+					//wait for answers, then give more answers time to arrive so they are written together
+					while(running && !dirty)
+						wait();
+					long flushAt = System.currentTimeMillis() + FLUSH_DELAY_MS;
+					while(running && !flushNow) {
+						long left = flushAt - System.currentTimeMillis();
+						if(left <= 0)
+							break;
+						wait(left);
+					}
+				} catch (InterruptedException e) {
+					//only happens when the process ends, write what was recorded, then end
+					running = false;
+					Thread.currentThread().interrupt();
+				}
+				if(!dirty && !running)
+					return;
+				encode();
+				dirty = false;
+				flushNow = false;
+			}
+			//the disk is only used outside of the lock, so recording answers never waits for it
+			write();
+		}
+	}
+
+	/**
+	 * Waits until the background thread has loaded the saved records. Must be called while holding the lock.
+	 */
+	private void awaitLoaded() {
+		boolean interrupted = false;
+		while(!loaded) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	private void markDirty() {
+		if(!dirty) {
+			dirty = true;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Copies the records into the write buffer. Must be called while holding the lock.
+	 */
+	private void encode() {
+		ByteBuffer out = ByteBuffer.wrap(buffer);
+		out.putInt(MAGIC);
+		out.putShort((short) VERSION);
+		out.putShort((short) hits.length);
+		for(int i = 0; i < hits.length; i++) {
+			out.putInt(hits[i]);
+			out.putInt(misses[i]);
+			out.putLong(responseMs[i]);
+		}
+	}
+
+	/**
+	 * Writes the buffer to the temporary file and renames it over the saved file.
+	 * Only called by the background thread.
+	 */
+	private void write() {
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(tempFile);
+			out.write(buffer);
+			out.getFD().sync();		//make sure the data is on disk before the rename
+			out.close();
+			out = null;
+			if(!tempFile.renameTo(file))
+				throw new IOException("could not rename " + tempFile);
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			if(out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the saved records and adds them to the answers recorded so far. A missing or damaged
+	 * file starts every Kana from zero. Records for Kana added to the table since the file was
+	 * written also start from zero. Only called by the background thread, before it writes.
+	 */
+	private void load() {
+		if(!file.exists())
+			return;
+		//read into a buffer of its own, the write buffer is only used while holding the lock
+		byte[] saved = new byte[buffer.length];
+		DataInputStream in = null;
+		try {
+			int length = (int) Math.min(file.length(), saved.length);
+			in = new DataInputStream(new FileInputStream(file));
+			in.readFully(saved, 0, length);
+			ByteBuffer data = ByteBuffer.wrap(saved, 0, length);
+			if(length < HEADER_SIZE || data.getInt() != MAGIC || data.getShort() != VERSION)
+				return;
+			int count = Math.min(data.getShort() & 0xffff, (length - HEADER_SIZE) / RECORD_SIZE);
+			synchronized(this) {
+				for(int i = 0; i < count; i++) {
+					hits[i] += data.getInt();
+					misses[i] += data.getInt();
+					responseMs[i] += data.getLong();
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			if(in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+}
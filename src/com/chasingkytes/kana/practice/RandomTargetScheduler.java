@@ -0,0 +1,40 @@
+package com.chasingkytes.kana.practice;
+
+import java.util.Random;
+
+/**
+ * Chooses every target uniformly at random and ignores the user's answers.
+ */
+public class RandomTargetScheduler implements TargetScheduler {
+
+	private final Random rand;
+	private final int[] kana;		//kana indices of the Kana set
+
+	/**
+	 * Creates a RandomTargetScheduler for the original Kana.
+	 * @param random - <i>random number generator to choose the targets with</i>
+	 */
+	public RandomTargetScheduler(Random random) {
+		this(random, KanaTable.BASIC_SET);
+	}
+
+	/**
+	 * Creates a RandomTargetScheduler.
+	 * @param random - <i>random number generator to choose the targets with</i>
+	 * @param kanaSet - <i>categories of the Kana that are asked, such as KanaTable.BASIC_SET</i>
+	 */
+	public RandomTargetScheduler(Random random, int kanaSet) {
+		rand = random;
+		kana = KanaTable.getIndices(kanaSet);
+	}
+
+	public int nextTarget() {
+		return kana[rand.nextInt(kana.length)];
+	}
+
+	public void recordHit(int kanaIndex) {
+	}
+
+	public void recordMiss(int kanaIndex) {
+	}
+}
@@ -0,0 +1,285 @@
+package com.chasingkytes.kana.practice;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Histograms of how long the user takes to answer, one for every Kana and one for every
+ * combination of question mode and answer mode.
+ *
+ * Times are stored in microseconds in log-scaled buckets: every power of two is split
+ * into SUB_BUCKETS equal parts, so each bucket is at most about 19% wide. All the counts
+ * live in one int array that is created up front, so recording a time never creates objects.
+ *
+ * When the game is paused, the percentiles are written with export() to FILE_NAME in the files
+ * directory of the app on a background thread, so the times of the last game can be pulled from
+ * the device and compared between versions.
+ */
+public class ReactionStats {
+
+	final static int SUB_BUCKETS = 4;
+	final static int SUB_BITS = 2;
+	final static int BUCKETS = 128;		//enough for times of over an hour
+
+	final static int MODES = 3;
+
+	final static String FILE_NAME = "reaction_times.csv";
+
+	//the histograms after the per Kana ones
+	final static int FIRST_MODE_HIT = KanaBubble.KANA_COUNT;
+	final static int FIRST_MODE_MISS = FIRST_MODE_HIT + MODES * MODES;
+	final static int HISTOGRAMS = FIRST_MODE_MISS + MODES * MODES;
+
+	private final int[] counts = new int[HISTOGRAMS * BUCKETS];
+	private final int[] totals = new int[HISTOGRAMS];
+
+	private final Object writeLock = new Object();		//one write of the file at a time
+	//hands the directory of the next background write to the writer thread
+	private final Object writerLock = new Object();
+	private Thread writer = null;
+	private File pendingDirectory = null;
+	private boolean closed = false;
+
+	/**
+	 * Records the time the user took to find a target.
+	 * @param kanaIndex - <i>kana index of the target</i>
+	 * @param questionMode - <i>mode of the Kana on the grid</i>
+	 * @param answerMode - <i>mode of the target</i>
+	 * @param micros - <i>time from the grid being shown to the touch in microseconds</i>
+	 */
+	public synchronized void recordHit(int kanaIndex, int questionMode, int answerMode, long micros) {
+		add(kanaIndex, micros);
+		add(modeHitHistogram(questionMode, answerMode), micros);
+	}
+
+	/**
+	 * Records the time until a wrong guess.
+	 * @param questionMode - <i>mode of the Kana on the grid</i>
+	 * @param answerMode - <i>mode of the target</i>
+	 * @param micros - <i>time from the grid being shown to the touch in microseconds</i>
+	 */
+	public synchronized void recordMiss(int questionMode, int answerMode, long micros) {
+		add(modeMissHistogram(questionMode, answerMode), micros);
+	}
+
+	/**
+	 * Obtains the histogram of the hits for a combination of modes.
+	 * @param questionMode - <i>mode of the Kana on the grid</i>
+	 * @param answerMode - <i>mode of the target</i>
+	 * @return int - <i>histogram number</i>
+	 */
+	public static int modeHitHistogram(int questionMode, int answerMode) {
+		return FIRST_MODE_HIT + questionMode * MODES + answerMode;
+	}
+
+	/**
+	 * Obtains the histogram of the wrong guesses for a combination of modes.
+	 * @param questionMode - <i>mode of the Kana on the grid</i>
+	 * @param answerMode - <i>mode of the target</i>
+	 * @return int - <i>histogram number</i>
+	 */
+	public static int modeMissHistogram(int questionMode, int answerMode) {
+		return FIRST_MODE_MISS + questionMode * MODES + answerMode;
+	}
+
+	/**
+	 * Obtains the amount of times recorded in a histogram.
+	 * @param histogram - <i>kana index, or a number from modeHitHistogram() or modeMissHistogram()</i>
+	 * @return int - <i>amount of times</i>
+	 */
+	public synchronized int getCount(int histogram) {
+		return totals[histogram];
+	}
+
+	/**
+	 * Obtains a percentile of a histogram, such as 50 for the median.
+	 * @param histogram - <i>kana index, or a number from modeHitHistogram() or modeMissHistogram()</i>
+	 * @param percentile - <i>percentile from 0 to 100</i>
+	 * @return long - <i>time in microseconds, the middle of the bucket that holds the percentile, 0 if nothing was recorded</i>
+	 */
+	public synchronized long getPercentile(int histogram, double percentile) {
+		int total = totals[histogram];
+		if(total == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+		int start = histogram * BUCKETS;
+		long seen = 0;
+		for(int b = 0; b < BUCKETS; b++) {
+			seen += counts[start + b];
+			if(seen >= rank)
+				return bucketLow(b) + bucketWidth(b) / 2;
+		}
+		return bucketLow(BUCKETS - 1);
+	}
+
+	/**
+	 * Writes every histogram that has times in it as comma separated lines:
+	 * name, count, p50, p90, p99, with the times in microseconds.
+	 * @param out - <i>where the lines are written</i>
+	 * @throws IOException if <b>out</b> can not be written to
+	 */
+	public synchronized void export(Appendable out) throws IOException {
+		out.append("histogram,count,p50_us,p90_us,p99_us\n");
+		for(int h = 0; h < HISTOGRAMS; h++) {
+			if(totals[h] == 0)
+				continue;
+			out.append(histogramName(h)).append(',').append(String.valueOf(totals[h]));
+			out.append(',').append(String.valueOf(getPercentile(h, 50)));
+			out.append(',').append(String.valueOf(getPercentile(h, 90)));
+			out.append(',').append(String.valueOf(getPercentile(h, 99))).append('\n');
+		}
+	}
+
+	/**
+	 * Writes export() to FILE_NAME in a directory on a background thread, like
+	 * InputRecorder.writeInBackground(): one thread is started by the first call and waits for
+	 * the next one until close(), and a write that is still waiting is replaced by the newer one.
+	 * @param directory - <i>directory of the file, usually the files directory of the app</i>
+	 */
+	public void writeInBackground(File directory) {
+		synchronized(writerLock) {
+			if(closed)
+				return;
+			pendingDirectory = directory;
+			if(writer == null) {
+				writer = new Thread(new Runnable() {
+					public void run() {
+						writePending();
+					}
+				}, "ReactionStats");
+				writer.setDaemon(true);
+				writer.start();
+			}
+			writerLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Lets the background thread end once it has finished the write it was asked for, if any.
+	 * Returns at once, so it can be called when the game is destroyed.
+	 */
+	public void close() {
+		synchronized(writerLock) {
+			closed = true;
+			writerLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Writes export() to FILE_NAME in a directory, through a temporary file so a crash
+	 * while writing never leaves half a file.
+	 * @param directory - <i>directory of the file, usually the files directory of the app</i>
+	 */
+	public void writeTo(File directory) {
+		synchronized(writeLock) {
+			//the text is built first, so the histograms are not locked while the disk is used
+			StringBuilder text = new StringBuilder();
+			try {
+				export(text);
+			} catch (IOException e) {
+				e.printStackTrace();		//a StringBuilder is never full
+				return;
+			}
+			File file = new File(directory, FILE_NAME);
+			File tempFile = new File(directory, FILE_NAME + ".tmp");
+			Writer out = null;
+			try {
+				out = new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8");
+				out.write(text.toString());
+				out.close();
+				out = null;
+				if(!tempFile.renameTo(file))
+					throw new IOException("could not rename " + tempFile);
+			} catch (IOException e) {
+				e.printStackTrace();
+			} finally {
+				if(out != null) {
+					try {
+						out.close();
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs on the background thread: writes every time writeInBackground() is called, until close().
+	 */
+	private void writePending() {
+		while(true) {
+			File directory;
+			synchronized(writerLock) {
+				try {
+					while(pendingDirectory == null && !closed)
+						writerLock.wait();
+				} catch (InterruptedException e) {
+					return;
+				}
+				if(pendingDirectory == null)
+					return;
+				directory = pendingDirectory;
+				pendingDirectory = null;
+			}
+			writeTo(directory);
+		}
+	}
+
+	/**
+	 * Obtains a readable name for a histogram.
+	 * @param histogram - <i>histogram number</i>
+	 * @return String - <i>the Romaji of the Kana, or hit/miss with the question and answer modes</i>
+	 */
+	static String histogramName(int histogram) {
+		if(histogram < FIRST_MODE_HIT)
+			return "kana:" + KanaBubble.romajiList[histogram];
+		boolean hit = histogram < FIRST_MODE_MISS;
+		int modes = histogram - (hit ? FIRST_MODE_HIT : FIRST_MODE_MISS);
+		return (hit ? "hit:" : "miss:") + (modes / MODES) + "->" + (modes % MODES);
+	}
+
+	private void add(int histogram, long micros) {
+		counts[histogram * BUCKETS + bucketOf(micros)]++;
+		totals[histogram]++;
+	}
+
+	/**
+	 * Obtains the bucket a time falls in.
+	 * @param micros - <i>time in microseconds</i>
+	 * @return int - <i>bucket from 0 to BUCKETS - 1</i>
+	 */
+	static int bucketOf(long micros) {
+		if(micros < SUB_BUCKETS)
+			return (int) Math.max(0, micros);
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		int sub = (int) (micros >> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return Math.min(BUCKETS - 1, (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub);
+	}
+
+	/**
+	 * Obtains the smallest time in a bucket.
+	 * @param bucket - <i>bucket</i>
+	 * @return long - <i>time in microseconds</i>
+	 */
+	static long bucketLow(int bucket) {
+		if(bucket < SUB_BUCKETS)
+			return bucket;
+		int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+	}
+
+	/**
+	 * Obtains the width of a bucket.
+	 * @param bucket - <i>bucket</i>
+	 * @return long - <i>width in microseconds</i>
+	 */
+	static long bucketWidth(int bucket) {
+		if(bucket < SUB_BUCKETS)
+			return 1;
+		return 1L << (bucket / SUB_BUCKETS - 1);
+	}
+}
@@ -0,0 +1,232 @@
+package com.chasingkytes.kana.practice;
+
+import android.os.SystemClock;
+
+/**
+ * Decides when the render thread should draw a new frame.
+ *
+ * A frame is drawn only when something on the screen has changed: the game state was
+ * modified (requestRender), the displayed timer moved on to its next second (setTick),
+ * a timed state of the game ended (requestRenderAt), or an animation is in progress
+ * (requestAnimation). Frames are never drawn closer together
+ * than one display refresh, and the render thread is parked while the game is paused or
+ * while the surface is not available. The render thread is only released for good by quit().
+ */
+public class RenderScheduler {
+
+	//length of one display refresh at 60Hz
+	final static long FRAME_INTERVAL_MS = 16;
+	//amount of frame start times kept for the frames per second calculation
+	final static int FRAME_HISTORY = 128;
+
+	private final Object lock = new Object();
+	private boolean running = false;
+	private boolean surfaceReady = false;
+	private boolean drawing = false;		//the render thread is between awaitFrame() calls
+	private boolean quit = false;
+	private boolean dirty = true;
+	private long animateUntil = 0;
+	private long renderAt = Long.MAX_VALUE;
+	private long tickOrigin = 0;
+	private long tickInterval = 0;
+	private long lastFrameTime = -FRAME_INTERVAL_MS;
+
+	private long frameCount = 0;
+	private final long[] frameTimes = new long[FRAME_HISTORY];
+
+	/**
+	 * Marks the screen as out of date so that a frame is drawn as soon as possible.
+	 */
+	public void requestRender() {
+		synchronized(lock) {
+			dirty = true;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Keeps drawing frames continuously for the given amount of time.
+	 * @param durationMs - <i>length of the animation in milliseconds</i>
+	 */
+	public void requestAnimation(long durationMs) {
+		synchronized(lock) {
+			long end = SystemClock.uptimeMillis() + durationMs;
+			if(end > animateUntil)
+				animateUntil = end;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Draws a frame at a later time, for example when a timed state of the game ends.
+	 * @param uptimeMs - <i>uptime in milliseconds to draw the frame at</i>
+	 */
+	public void requestRenderAt(long uptimeMs) {
+		synchronized(lock) {
+			if(uptimeMs < renderAt)
+				renderAt = uptimeMs;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Draws a frame every time a full interval has passed since <i>origin</i>.
+	 * Used by the timer so the screen is only updated when the seconds value changes.
+	 * @param origin - <i>uptime in milliseconds that the intervals are counted from</i>
+	 * @param intervalMs - <i>length of the interval, 0 turns the tick off</i>
+	 */
+	public void setTick(long origin, long intervalMs) {
+		synchronized(lock) {
+			tickOrigin = origin;
+			tickInterval = intervalMs;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Tells the scheduler whether there is a valid surface to draw on.
+	 * @param ready - <i>true once the surface is created, false once it is destroyed</i>
+	 */
+	public void setSurfaceReady(boolean ready) {
+		synchronized(lock) {
+			surfaceReady = ready;
+			dirty = true;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Tells the scheduler whether the game is in the foreground.
+	 * While it is not, the render thread is parked in awaitFrame().
+	 * @param run - <i>true when resumed, false when paused</i>
+	 */
+	public void setRunning(boolean run) {
+		synchronized(lock) {
+			running = run;
+			dirty = true;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Releases the render thread from awaitFrame() for good, once it finishes the frame it is drawing.
+	 */
+	public void quit() {
+		synchronized(lock) {
+			quit = true;
+			drawing = false;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Blocks until the render thread is not drawing a frame. Called after the game is paused or
+	 * the surface is destroyed, so nothing is drawn once the caller returns.
+	 */
+	public void awaitIdle() {
+		synchronized(lock) {
+			while(drawing) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Blocks the render thread until the next frame should be drawn. The render thread is parked
+	 * while the game is paused or the surface is not available.
+	 * @return boolean - <i>true if a frame should be drawn, false if the render thread should stop</i>
+	 */
+	public boolean awaitFrame() {
+		synchronized(lock) {
+			//the previous frame is finished
+			drawing = false;
+			lock.notifyAll();
+			while(!quit) {
+				long now = SystemClock.uptimeMillis();
+				long wait = 0;		//0 waits until notified
+				if(running && surfaceReady) {
+					long due = nextFrameTime();
+					if(due != Long.MAX_VALUE) {
+						//never draw faster than the display can show the frames
+						due = Math.max(due, lastFrameTime + FRAME_INTERVAL_MS);
+						if(due <= now) {
+							dirty = false;
+							if(renderAt <= now)
+								renderAt = Long.MAX_VALUE;
+							lastFrameTime = now;
+							drawing = true;
+							return true;
+						}
+						wait = due - now;
+					}
+				}
+				try {
+					lock.wait(wait);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Records that a frame has been posted to the screen.
+	 */
+	public void frameDrawn() {
+		synchronized(lock) {
+			frameTimes[(int) (frameCount % FRAME_HISTORY)] = SystemClock.uptimeMillis();
+			frameCount++;
+		}
+	}
+
+	/**
+	 * Obtains the total amount of frames posted since the scheduler was created.
+	 * @return long - <i>frame count</i>
+	 */
+	public long getFrameCount() {
+		synchronized(lock) {
+			return frameCount;
+		}
+	}
+
+	/**
+	 * Obtains the amount of frames posted during the last second.
+	 * An idle screen with the timer showing should be close to 1.
+	 * @return int - <i>frames in the last second</i>
+	 */
+	public int getFramesPerSecond() {
+		synchronized(lock) {
+			long since = SystemClock.uptimeMillis() - 1000;
+			int count = (int) Math.min(frameCount, FRAME_HISTORY);
+			int fps = 0;
+			for(int i = 0; i < count; i++)
+				if(frameTimes[i] > since)
+					fps++;
+			return fps;
+		}
+	}
+
+	/**
+	 * Obtains the earliest time a frame is needed, ignoring the refresh rate.
+	 * Must be called while holding the lock.
+	 * @return long - <i>uptime in milliseconds, Long.MAX_VALUE if nothing needs to be drawn</i>
+	 */
+	private long nextFrameTime() {
+		if(dirty || lastFrameTime < animateUntil)
+			return 0;
+		long next = renderAt;
+		if(tickInterval > 0) {
+			//the first interval boundary after the last frame
+			long elapsed = Math.max(0, lastFrameTime - tickOrigin);
+			next = Math.min(next, tickOrigin + (elapsed / tickInterval + 1) * tickInterval);
+		}
+		return next;
+	}
+}
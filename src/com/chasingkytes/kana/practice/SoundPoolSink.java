@@ -0,0 +1,95 @@
+package com.chasingkytes.kana.practice;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Resources;
+import android.media.AudioManager;
+import android.media.SoundPool;
+import android.media.SoundPool.OnLoadCompleteListener;
+import android.util.TypedValue;
+
+import java.io.IOException;
+
+/**
+ * Plays the clips of an AudioEngine with a SoundPool, which decodes every clip to PCM
+ * when it is loaded so it starts playing without decoding delay. The size of a clip is
+ * estimated as the size of its PCM, which is about PCM_PER_COMPRESSED_BYTE times the size
+ * of a compressed file.
+ *
+ * The engine learns that a clip is decoded from SoundPool.setOnLoadCompleteListener(), which
+ * needs API level 8. The manifest sets minSdkVersion to 8 and project.properties builds against
+ * android-8, so the listener is always there and is not gated.
+ */
+public class SoundPoolSink implements AudioSink, OnLoadCompleteListener {
+
+	//amount of clips that can play at the same time
+	final static int MAX_STREAMS = 5;
+	//bytes of 16 bit PCM decoded from one byte of a compressed clip, 1411 kbit/s of CD audio over 128 kbit/s
+	final static int PCM_PER_COMPRESSED_BYTE = 11;
+	//size counted for a clip whose file size is not known, one second of 44.1 kHz 16 bit mono
+	final static int UNKNOWN_CLIP_BYTES = 88200;
+	//smallest size counted for a clip, the pool keeps some memory for every sample
+	final static int MIN_CLIP_BYTES = 8192;
+
+	private final Context context;
+	private final SoundPool pool;
+	private AudioEngine engine;
+
+	/**
+	 * Creates a SoundPoolSink.
+	 * @param context - <i>context whose resources hold the clips, the application context is kept</i>
+	 */
+	public SoundPoolSink(Context context) {
+		this.context = context.getApplicationContext();
+		pool = new SoundPool(MAX_STREAMS, AudioManager.STREAM_MUSIC, 0);
+		pool.setOnLoadCompleteListener(this);
+	}
+
+	public void attach(AudioEngine engine) {
+		this.engine = engine;
+	}
+
+	public int load(int resourceId) {
+		return pool.load(context, resourceId, 1);
+	}
+
+	public int getSize(int resourceId) {
+		AssetFileDescriptor fd;
+		try {
+			fd = context.getResources().openRawResourceFd(resourceId);
+		} catch (Resources.NotFoundException e) {
+			fd = null;
+		}
+		if(fd == null)
+			return UNKNOWN_CLIP_BYTES;		//clips compressed in the package have no descriptor
+		long length = fd.getLength();
+		try {
+			fd.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		//the pool decodes every clip to PCM, a wave file already is PCM
+		TypedValue value = new TypedValue();
+		context.getResources().getValue(resourceId, value, true);
+		boolean wave = value.string != null && value.string.toString().toLowerCase().endsWith(".wav");
+		long decoded = wave ? length : length * PCM_PER_COMPRESSED_BYTE;
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_CLIP_BYTES, decoded));
+	}
+
+	public void play(int sampleId, float volume) {
+		pool.play(sampleId, volume, volume, 1, 0, 1);
+	}
+
+	public void unload(int sampleId) {
+		pool.unload(sampleId);
+	}
+
+	public void release() {
+		pool.release();
+	}
+
+	public void onLoadComplete(SoundPool soundPool, int sampleId, int status) {
+		engine.loadComplete(sampleId, status == 0);
+	}
+}
@@ -0,0 +1,82 @@
+package com.chasingkytes.kana.practice;
+
+/**
+ * Times the steps of starting a game, from GFXSurface.onCreate() to the first frame posted
+ * to the screen. Each step is marked with a name, and finish() turns the marks into one line
+ * for the log, such as "warm start 95.0 ms: created +12.1, resumed +3.0, assets ready +0.0, first frame +79.9".
+ *
+ * A cold start is the first game after the assets were built, or a game that had to wait for
+ * them. Marks are made by the UI thread and the render thread, so every method is synchronized.
+ */
+public class StartupTrace {
+
+	final static int MAX_MARKS = 16;
+
+	private final String[] names = new String[MAX_MARKS];
+	private final long[] nanos = new long[MAX_MARKS];
+	private int count = 0;
+	private boolean cold;
+	private boolean finished = false;
+
+	/**
+	 * Creates a StartupTrace and starts timing.
+	 * @param cold - <i>true if the assets were not built when the game was started</i>
+	 */
+	public StartupTrace(boolean cold) {
+		this.cold = cold;
+		mark("start");
+	}
+
+	/**
+	 * Records the end of a step. Ignored once the trace is finished.
+	 * @param name - <i>name of the step</i>
+	 */
+	public synchronized void mark(String name) {
+		if(finished || count == MAX_MARKS)
+			return;
+		names[count] = name;
+		nanos[count] = System.nanoTime();
+		count++;
+	}
+
+	/**
+	 * Records that the game had to wait for something that a warm start has ready.
+	 */
+	public synchronized void setCold() {
+		cold = true;
+	}
+
+	/**
+	 * Checks if finish() was called.
+	 * @return boolean - <i>true once the first frame was posted</i>
+	 */
+	public synchronized boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Records the last step and describes the start.
+	 * @param name - <i>name of the last step</i>
+	 * @return String - <i>total time and the time of every step in milliseconds</i>
+	 */
+	public synchronized String finish(String name) {
+		mark(name);
+		finished = true;
+		StringBuilder line = new StringBuilder();
+		line.append(cold ? "cold" : "warm").append(" start ").append(millis(nanos[count - 1] - nanos[0])).append(" ms:");
+		for(int i = 1; i < count; i++) {
+			line.append(i == 1 ? " " : ", ").append(names[i]).append(" +").append(millis(nanos[i] - nanos[i - 1]));
+		}
+		return line.toString();
+	}
+
+	/**
+	 * Converts nanoseconds to milliseconds with one decimal.
+	 * @param duration - <i>nanoseconds</i>
+	 * @return String - <i>milliseconds</i>
+	 */
+	private static String millis(long duration) {
+		long tenths = duration / 100000;
+		return (tenths / 10) + "." + (tenths % 10);
+	}
+}
@@ -0,0 +1,29 @@
+package com.chasingkytes.kana.practice;
+
+/**
+ * Chooses the target Kana of every new KanaBubbleGrid and learns from the user's answers.
+ * A scheduler may be called from the render thread and from the UI thread, so implementations
+ * must be thread safe. The target of a question is chosen once the previous question was
+ * answered, so the answers of every earlier question are known when it is chosen.
+ */
+public interface TargetScheduler {
+
+	/**
+	 * Chooses the target of the next grid. Until an answer is recorded, the same target may be
+	 * chosen again.
+	 * @return int - <i>kana index of the target</i>
+	 */
+	int nextTarget();
+
+	/**
+	 * Called when the user finds the target.
+	 * @param kanaIndex - <i>kana index of the target</i>
+	 */
+	void recordHit(int kanaIndex);
+
+	/**
+	 * Called when the user touches a wrong KanaBubble while looking for the target.
+	 * @param kanaIndex - <i>kana index of the target</i>
+	 */
+	void recordMiss(int kanaIndex);
+}
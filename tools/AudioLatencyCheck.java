@@ -0,0 +1,173 @@
+package com.chasingkytes.kana.practice;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the AudioEngine without a device, with a fake AudioSink that decodes every clip
+ * after a fixed delay on a background thread and remembers when each sound was played.
+ *
+ * Three things are measured:
+ *   tap to sound - time from playEffect() to the sink starting the clip, once it is decoded
+ *   early taps - taps made while the effects are still decoding, which are played late up to
+ *                AudioEngine.MAX_LATE_PLAYS at once, or counted as skipped, but never lost
+ *   pronunciation cache - hit rate and memory of the byte bounded cache when Kana are asked
+ *                the way the LeitnerScheduler asks them, some much more often than others
+ *
+ * Run from the project directory:
+ *   javac -encoding UTF-8 -d /tmp/audio -sourcepath src tools/AudioLatencyCheck.java
+ *   java -cp /tmp/audio:src com.chasingkytes.kana.practice.AudioLatencyCheck [decode ms] [cache bytes]
+ */
+public class AudioLatencyCheck {
+
+	final static int TAPS = 1000000;
+	final static int EARLY_TAPS = 40;
+	final static int EARLY_TAP_INTERVAL_MS = 10;
+	final static int PRONUNCIATIONS = 20000;
+	final static long SEED = 42;
+
+	//resources of the fake clips, pronunciation clips follow the effects
+	final static int HIT_RESOURCE = 1;
+	final static int MISS_RESOURCE = 2;
+	final static int FIRST_PRONUNCIATION = 100;
+
+	/**
+	 * A sink that decodes clips after a delay and records when samples are played.
+	 */
+	static class FakeAudioSink implements AudioSink {
+		final ScheduledExecutorService decoder = Executors.newSingleThreadScheduledExecutor();
+		final long decodeMs;
+		AudioEngine engine;
+		int nextSample = 1;
+		int loads = 0;
+		int unloads = 0;
+		volatile int plays = 0;
+		volatile long lastPlayNanos = 0;
+
+		FakeAudioSink(long decodeMs) {
+			this.decodeMs = decodeMs;
+		}
+
+		public void attach(AudioEngine engine) {
+			this.engine = engine;
+		}
+
+		public int load(int resourceId) {
+			final int sample = nextSample++;
+			loads++;
+			Runnable complete = new Runnable() {
+				public void run() {
+					engine.loadComplete(sample, true);
+				}
+			};
+			if(decodeMs == 0)
+				decoder.execute(complete);
+			else
+				decoder.schedule(complete, decodeMs, TimeUnit.MILLISECONDS);
+			return sample;
+		}
+
+		public int getSize(int resourceId) {
+			//pronunciation clips of 0.4 to 0.8 seconds of 22 kHz mono PCM
+			return 17640 + (resourceId * 7919 % 17640);
+		}
+
+		public void play(int sampleId, float volume) {
+			lastPlayNanos = System.nanoTime();
+			plays++;
+		}
+
+		public void unload(int sampleId) {
+			unloads++;
+		}
+
+		public void release() {
+			decoder.shutdownNow();
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		long decodeMs = args.length > 0 ? Long.parseLong(args[0]) : 100;
+		int cacheBytes = args.length > 1 ? Integer.parseInt(args[1]) : AudioEngine.DEFAULT_CACHE_BYTES;
+		int[] pronunciations = new int[KanaBubble.KANA_COUNT];
+		for(int i = 0; i < pronunciations.length; i++)
+			pronunciations[i] = FIRST_PRONUNCIATION + i;
+
+		earlyTaps(decodeMs, pronunciations, cacheBytes);
+		tapToSound(pronunciations, cacheBytes);
+		pronunciationCache(pronunciations, cacheBytes);
+	}
+
+	/**
+	 * Taps every EARLY_TAP_INTERVAL_MS from the moment the engine is created.
+	 */
+	static void earlyTaps(long decodeMs, int[] pronunciations, int cacheBytes) throws InterruptedException {
+		FakeAudioSink sink = new FakeAudioSink(decodeMs);
+		AudioEngine engine = new AudioEngine(sink, HIT_RESOURCE, MISS_RESOURCE, pronunciations, cacheBytes);
+		int decodingTaps = 0;
+		for(int i = 0; i < EARLY_TAPS; i++) {
+			if(!engine.isReady())
+				decodingTaps++;
+			engine.playEffect(AudioEngine.HIT, 1);
+			Thread.sleep(EARLY_TAP_INTERVAL_MS);
+		}
+		//let a slow decode finish, so a kept tap can still be played
+		Thread.sleep(decodeMs);
+		engine.release();
+		//every tap is either played, at once or late, or counted as skipped
+		int skipped = engine.getSkippedPlays();
+		boolean counted = sink.plays + skipped == EARLY_TAPS;
+		System.out.println(String.format("early taps: decode %d ms, %d of %d taps made while decoding, %d taps played, "
+				+ "%d of them late, %d skipped (more than %d at once or %d ms late): %s",
+				decodeMs, decodingTaps, EARLY_TAPS, sink.plays, engine.getLatePlays(), skipped,
+				AudioEngine.MAX_LATE_PLAYS, AudioEngine.MAX_LATE_NANOS / 1000000, counted ? "ok" : "FAILED"));
+		if(!counted)
+			System.exit(1);
+	}
+
+	/**
+	 * Times playEffect() on a decoded engine.
+	 */
+	static void tapToSound(int[] pronunciations, int cacheBytes) throws InterruptedException {
+		FakeAudioSink sink = new FakeAudioSink(0);
+		AudioEngine engine = new AudioEngine(sink, HIT_RESOURCE, MISS_RESOURCE, pronunciations, cacheBytes);
+		while(!engine.isReady())
+			Thread.sleep(1);
+
+		long[] latency = new long[TAPS];
+		for(int i = 0; i < TAPS; i++) {
+			long tap = System.nanoTime();
+			engine.playEffect(i % 2 == 0 ? AudioEngine.HIT : AudioEngine.MISS, 1);
+			latency[i] = sink.lastPlayNanos - tap;
+		}
+		engine.release();
+		Arrays.sort(latency);
+		System.out.println(String.format("tap to sound: %d taps, p50 %d ns, p99 %d ns, max %d ns",
+				TAPS, latency[TAPS / 2], latency[TAPS * 99 / 100], latency[TAPS - 1]));
+	}
+
+	/**
+	 * Plays pronunciations with a skewed choice of Kana and reports how often the clip was loaded.
+	 */
+	static void pronunciationCache(int[] pronunciations, int cacheBytes) throws InterruptedException {
+		FakeAudioSink sink = new FakeAudioSink(0);
+		AudioEngine engine = new AudioEngine(sink, HIT_RESOURCE, MISS_RESOURCE, pronunciations, cacheBytes);
+		Random random = new Random(SEED);
+		int maxBytes = 0;
+		for(int i = 0; i < PRONUNCIATIONS; i++) {
+			//the square of a uniform number makes low Kana indices much more likely, like the Kana the user struggles with
+			double u = random.nextDouble();
+			int kana = (int) (u * u * KanaBubble.KANA_COUNT);
+			engine.playPronunciation(kana, 1);
+			maxBytes = Math.max(maxBytes, engine.getCachedBytes());
+		}
+		engine.release();
+		int effectLoads = 2;
+		int misses = sink.loads - effectLoads;
+		System.out.println(String.format("pronunciation cache: %d bytes, %d plays, %.1f%% hits, %d loads, %d unloads, largest %d bytes",
+				cacheBytes, PRONUNCIATIONS, 100.0 * (PRONUNCIATIONS - misses) / PRONUNCIATIONS, misses, sink.unloads, maxBytes));
+	}
+}
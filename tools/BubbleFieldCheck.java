@@ -0,0 +1,115 @@
+package com.chasingkytes.kana.practice;
+
+import java.util.Random;
+
+/**
+ * Runs the floating bubbles without a device for a minute of simulated time (STEPS steps of
+ * BubbleField.STEP_NANOS) and checks every step, comparing every pair of bubbles instead of
+ * using the BubbleIndex:
+ *   bounds - every bubble is completely inside the field
+ *   overlaps - no two bubbles are closer than DEEP_OVERLAP of a diameter. Bubbles may overlap
+ *              a little for a step, the collisions push them apart again
+ *   speed - the bounces neither speed the bubbles up nor stop them, the average speed stays
+ *           between BubbleField.MIN_SPEED / 2 and BubbleField.MAX_SPEED * 2
+ *   target - the target is in exactly one bubble after every regenerate()
+ *
+ * The field is the one of a 480x800 screen, from the smallest to the largest amount of
+ * floating bubbles the menu offers.
+ *
+ * Run from the project directory:
+ *   javac -encoding UTF-8 -d /tmp/field -sourcepath src tools/BubbleFieldCheck.java
+ *   java -cp /tmp/field:src com.chasingkytes.kana.practice.BubbleFieldCheck
+ */
+public class BubbleFieldCheck {
+
+	final static int[] COUNTS = { 10, 30, 60, 100, 200 };
+	final static float WIDTH = 480;
+	final static float HEIGHT = 800 - 60 - 170;
+	final static float RADIUS = 50;
+	final static int STEPS = 3600;
+	//a new question every this many steps
+	final static int QUESTION_STEPS = 300;
+	final static float DEEP_OVERLAP = 0.5f;
+	final static long SEED = 42;
+
+	static int failures = 0;
+
+	public static void main(String[] args) {
+		for(int i = 0; i < COUNTS.length; i++)
+			run(COUNTS[i]);
+		System.out.println(failures == 0 ? "ok" : failures + " failures");
+		if(failures != 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Runs one field for STEPS steps.
+	 * @param count - <i>amount of bubbles</i>
+	 */
+	static void run(int count) {
+		KanaGridGenerator generator = new KanaGridGenerator(SEED);
+		BubbleField field = new BubbleField(count, RADIUS, generator, new LeitnerScheduler(generator.getRandom()), new Random(SEED + 1));
+		field.setBounds(WIDTH, HEIGHT);
+		float radius = field.getRadius();
+		float diameter = radius * 2;
+		float closest = Float.MAX_VALUE;
+		long overlapping = 0;
+		double speed = 0;
+		long nanos = 0;
+		for(int s = 1; s <= STEPS; s++) {
+			long start = System.nanoTime();
+			if(field.advance(BubbleField.STEP_NANOS) != 1)
+				fail(count + " bubbles: step " + s + " did not run exactly once");
+			nanos += System.nanoTime() - start;
+			if(s % QUESTION_STEPS == 0) {
+				field.regenerate(generator);
+				checkTarget(field, count, s);
+			}
+
+			for(int i = 0; i < count; i++) {
+				float x = field.getDrawX(i, 1);
+				float y = field.getDrawY(i, 1);
+				if(x < radius || x > WIDTH - radius || y < radius || y > HEIGHT - radius)
+					fail(String.format("%d bubbles, step %d: bubble %d at (%.2f, %.2f) is outside the field", count, s, i, x, y));
+				speed += Math.hypot(x - field.getDrawX(i, 0), y - field.getDrawY(i, 0)) / BubbleField.STEP_SECONDS;
+				for(int j = i + 1; j < count; j++) {
+					float distance = (float) Math.hypot(x - field.getDrawX(j, 1), y - field.getDrawY(j, 1));
+					closest = Math.min(closest, distance);
+					if(distance < diameter)
+						overlapping++;
+					if(distance < diameter * (1 - DEEP_OVERLAP))
+						fail(String.format("%d bubbles, step %d: bubbles %d and %d are %.2f apart, the diameter is %.2f",
+								count, s, i, j, distance, diameter));
+				}
+			}
+		}
+		speed /= (double) STEPS * count;
+		if(speed < BubbleField.MIN_SPEED / 2 || speed > BubbleField.MAX_SPEED * 2)
+			fail(String.format("%d bubbles: average speed %.1f", count, speed));
+		System.out.println(String.format("%d bubbles of radius %.1f: %d steps, %.1f us per step, closest pair %.2f of a diameter, "
+				+ "%.3f overlapping pairs per step, average speed %.1f px/s",
+				count, radius, field.getSteps(), nanos / 1000.0 / STEPS, closest / diameter, (double) overlapping / STEPS, speed));
+	}
+
+	/**
+	 * Checks that the target is in exactly one bubble.
+	 */
+	static void checkTarget(BubbleField field, int count, int step) {
+		int targets = 0;
+		for(int i = 0; i < count; i++)
+			if(field.getKanaIndex(i) == field.getTargetIndex())
+				targets++;
+		if(targets != 1)
+			fail(count + " bubbles, step " + step + ": the target is in " + targets + " bubbles");
+	}
+
+	/**
+	 * Counts a failure and prints the first ones.
+	 * @param message - <i>what was wrong</i>
+	 */
+	static void fail(String message) {
+		failures++;
+		if(failures <= 20)
+			System.out.println("FAILED: " + message);
+	}
+}
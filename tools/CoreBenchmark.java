@@ -0,0 +1,510 @@
+package com.chasingkytes.kana.practice;
+
+import java.util.Random;
+
+/**
+ * Benchmarks the game logic on a desktop JVM: grid generation, touch processing, saving and
+ * restoring a game, hit testing of freely placed bubbles, the floating bubbles simulation, Kana
+ * lookup, target selection and the memory used by a grid. The game logic does not use any
+ * Android classes, so it is compiled straight from the source folder. The build fails if one
+ * of the benchmarked classes starts to depend on Android.
+ *
+ * Run from the project directory:
+ *   javac -encoding UTF-8 -d /tmp/bench -sourcepath src tools/CoreBenchmark.java
+ *   java -cp /tmp/bench:src com.chasingkytes.kana.practice.CoreBenchmark [name filter]
+ *
+ * Every benchmark uses fixed seeds, so each run does the same work. Each benchmark is
+ * sized to take about ITERATION_MS per iteration, warmed up for WARMUP_ITERATIONS and
+ * then measured for MEASURE_ITERATIONS. The result of every operation is added to a
+ * checksum that is printed, so the JIT can not remove the work.
+ * Compare runs made on the same machine with the same JVM.
+ */
+public class CoreBenchmark {
+
+	final static int WARMUP_ITERATIONS = 5;
+	final static int MEASURE_ITERATIONS = 10;
+	final static long ITERATION_MS = 200;
+	final static long SEED = 42;
+
+	//grid sizes offered by the menu, plus larger grids that use every Kana more than once
+	final static int[][] GRID_SIZES = { {1, 1}, {2, 3}, {4, 4}, {8, 6}, {12, 12}, {20, 20} };
+	//amounts of freely placed bubbles for the BubbleIndex benchmarks
+	final static int[] BUBBLE_COUNTS = { 100, 1000, 10000, 100000 };
+	//amounts of floating bubbles, the menu allows up to 200
+	final static int[] FIELD_SIZES = { 20, 200, 1000 };
+	//cells kept on the heap by the grid memory measurement, and grids refilled to count allocations
+	final static int MEMORY_CELLS = 400000;
+	final static int MEMORY_REGENERATES = 100000;
+
+	/**
+	 * One benchmark. run() performs the operation <i>ops</i> times.
+	 */
+	static abstract class Benchmark {
+		final String name;
+
+		Benchmark(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Performs the operation.
+		 * @param ops - <i>amount of times to perform it</i>
+		 * @return long - <i>checksum of the results</i>
+		 */
+		abstract long run(int ops);
+	}
+
+	private static long checksum = 0;
+
+	public static void main(String[] args) {
+		String filter = args.length > 0 ? args[0] : "";
+		System.out.println("java " + System.getProperty("java.version") + ", " + System.getProperty("os.arch")
+				+ ", " + Runtime.getRuntime().availableProcessors() + " cpus, " + KanaBubble.KANA_COUNT + " kana");
+		System.out.println(String.format("%-32s %12s %10s %12s", "benchmark", "ns/op", "+-", "min ns/op"));
+
+		for(int[] size : GRID_SIZES) {
+			measure(filter, generate(size[0], size[1]));
+			measure(filter, regenerate(size[0], size[1]));
+			measure(filter, rowColumn(size[0], size[1]));
+			measure(filter, cell(size[0], size[1]));
+			measure(filter, gridTouch(size[0], size[1]));
+			measure(filter, snapshotSave(size[0], size[1]));
+			measure(filter, snapshotRestore(size[0], size[1]));
+		}
+		for(int bubbles : BUBBLE_COUNTS) {
+			measure(filter, indexBuild(bubbles));
+			measure(filter, indexHitTest(bubbles));
+		}
+		for(int bubbles : FIELD_SIZES)
+			measure(filter, fieldStep(bubbles));
+		measure(filter, lookup(KanaBubble.HIRAGANA_MODE, "hiraganaIndex"));
+		measure(filter, lookup(KanaBubble.KATAKANA_MODE, "katakanaIndex"));
+		measure(filter, lookup(KanaBubble.ROMAJI_MODE, "romajiIndex"));
+		measure(filter, randomTarget());
+		measure(filter, leitnerTarget());
+
+		if("grid memory".indexOf(filter) >= 0)
+			gridMemory();
+		System.out.println("checksum " + checksum);
+	}
+
+	/**
+	 * Measures the heap used by a grid per cell, compared with the KanaBubble[][] the grid was
+	 * stored in before, and the bytes allocated by regenerate() once the game is running.
+	 * The heap is measured with Runtime after a garbage collection, so the figures are only
+	 * exact to a few bytes per cell. The allocations are counted by the JVM when it supports it.
+	 */
+	static void gridMemory() {
+		System.out.println(String.format("%-32s %12s %12s %16s", "grid memory", "bytes/cell", "old layout", "bytes/regenerate"));
+		java.lang.management.ThreadMXBean threads = java.lang.management.ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean
+				? (com.sun.management.ThreadMXBean) threads : null;
+		for(int[] size : GRID_SIZES) {
+			int rows = size[0];
+			int columns = size[1];
+			int grids = Math.max(1, MEMORY_CELLS / (rows * columns));
+			KanaGridGenerator generator = new KanaGridGenerator(SEED);
+
+			//each grid holds on to its own arrays, so the heap grows by exactly what the grids use
+			Object[] kept = new Object[grids];
+			long before = usedHeap();
+			for(int i = 0; i < grids; i++)
+				kept[i] = new KanaBubbleGrid(rows, columns, generator);
+			double gridBytes = (double) (usedHeap() - before) / grids / (rows * columns);
+			checksum += ((KanaBubbleGrid) kept[grids - 1]).getTargetIndex();
+			kept = new Object[grids];
+
+			//the old layout: one KanaBubble object per cell, placed and colored
+			before = usedHeap();
+			for(int i = 0; i < grids; i++) {
+				KanaBubble[][] bubbles = new KanaBubble[rows][columns];
+				for(int r = 0; r < rows; r++) {
+					for(int c = 0; c < columns; c++) {
+						bubbles[r][c] = new KanaBubble((r * columns + c) % KanaBubble.KANA_COUNT);
+						bubbles[r][c].setXY(c * 100, r * 100);
+					}
+				}
+				kept[i] = bubbles;
+			}
+			double oldBytes = (double) (usedHeap() - before) / grids / (rows * columns);
+			checksum += ((KanaBubble[][]) kept[grids - 1])[0][0].getKanaIndex();
+			kept = null;
+
+			//refilling a grid in place, after the JIT has compiled regenerate()
+			String allocated = "n/a";
+			if(allocations != null && allocations.isThreadAllocatedMemorySupported()) {
+				KanaBubbleGrid grid = new KanaBubbleGrid(rows, columns, generator, new LeitnerScheduler(new Random(SEED)));
+				for(int i = 0; i < MEMORY_REGENERATES; i++)
+					grid.regenerate(generator);
+				long id = Thread.currentThread().getId();
+				long start = allocations.getThreadAllocatedBytes(id);
+				for(int i = 0; i < MEMORY_REGENERATES; i++)
+					grid.regenerate(generator);
+				allocated = String.format("%.2f", (double) (allocations.getThreadAllocatedBytes(id) - start) / MEMORY_REGENERATES);
+				checksum += grid.getTargetIndex();
+			}
+			System.out.println(String.format("%-32s %12.1f %12.1f %16s", "grid " + rows + "x" + columns, gridBytes, oldBytes, allocated));
+		}
+	}
+
+	/**
+	 * Obtains the heap in use after collecting the garbage.
+	 * @return long - <i>bytes in use</i>
+	 */
+	static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		//collect until nothing more is freed
+		for(int i = 0; i < 10; i++) {
+			System.gc();
+			long now = runtime.totalMemory() - runtime.freeMemory();
+			if(now >= used)
+				break;
+			used = now;
+		}
+		return used;
+	}
+
+	/**
+	 * Warms up and measures a benchmark and prints the time per operation.
+	 * @param filter - <i>only benchmarks whose name contains the filter are run</i>
+	 * @param benchmark - <i>benchmark</i>
+	 */
+	static void measure(String filter, Benchmark benchmark) {
+		if(benchmark.name.indexOf(filter) < 0)
+			return;
+
+		//find an amount of operations that takes about ITERATION_MS
+		int ops = 1;
+		while(true) {
+			long start = System.nanoTime();
+			checksum += benchmark.run(ops);
+			long elapsed = System.nanoTime() - start;
+			if(elapsed > ITERATION_MS * 1000000 / 4 || ops > 1 << 28) {
+				ops = (int) Math.max(1, (long) ops * ITERATION_MS * 1000000 / Math.max(1, elapsed));
+				break;
+			}
+			ops *= 2;
+		}
+
+		for(int i = 0; i < WARMUP_ITERATIONS; i++)
+			checksum += benchmark.run(ops);
+
+		double[] nanosPerOp = new double[MEASURE_ITERATIONS];
+		double sum = 0;
+		double min = Double.MAX_VALUE;
+		for(int i = 0; i < MEASURE_ITERATIONS; i++) {
+			long start = System.nanoTime();
+			checksum += benchmark.run(ops);
+			nanosPerOp[i] = (double) (System.nanoTime() - start) / ops;
+			sum += nanosPerOp[i];
+			min = Math.min(min, nanosPerOp[i]);
+		}
+		double mean = sum / MEASURE_ITERATIONS;
+		double variance = 0;
+		for(double value : nanosPerOp)
+			variance += (value - mean) * (value - mean);
+		double deviation = Math.sqrt(variance / (MEASURE_ITERATIONS - 1));
+		System.out.println(String.format("%-32s %12.1f %10.1f %12.1f", benchmark.name, mean, deviation, min));
+	}
+
+	/**
+	 * Creating a new grid, as the game did before grids were reused.
+	 */
+	static Benchmark generate(final int rows, final int columns) {
+		return new Benchmark("generate " + rows + "x" + columns) {
+			final KanaGridGenerator generator = new KanaGridGenerator(SEED);
+
+			long run(int ops) {
+				long sum = 0;
+				for(int i = 0; i < ops; i++)
+					sum += new KanaBubbleGrid(rows, columns, generator).getTargetIndex();
+				return sum;
+			}
+		};
+	}
+
+	/**
+	 * Refilling a grid in place with a Leitner target, as GridPrefetcher does.
+	 */
+	static Benchmark regenerate(final int rows, final int columns) {
+		return new Benchmark("regenerate " + rows + "x" + columns) {
+			final KanaGridGenerator generator = new KanaGridGenerator(SEED);
+			final KanaBubbleGrid grid = new KanaBubbleGrid(rows, columns, generator, new LeitnerScheduler(new Random(SEED)));
+
+			long run(int ops) {
+				long sum = 0;
+				for(int i = 0; i < ops; i++) {
+					grid.regenerate(generator);
+					sum += grid.getTargetIndex();
+				}
+				return sum;
+			}
+		};
+	}
+
+	/**
+	 * Finding the cell under a touch. Touches are spread over and around the grid.
+	 */
+	static Benchmark rowColumn(final int rows, final int columns) {
+		return new Benchmark("getRowColumnFromXY " + rows + "x" + columns) {
+			final KanaBubbleGrid grid = new KanaBubbleGrid(rows, columns, new KanaGridGenerator(SEED));
+			final float[] touches = randomTouches(grid, 1024);
+
+			long run(int ops) {
+				long sum = 0;
+				for(int i = 0; i < ops; i++) {
+					int t = (i & 1023) * 2;
+					sum += grid.getRowColumnFromXY(touches[t], touches[t + 1], 40, 60)[0];
+				}
+				return sum;
+			}
+		};
+	}
+
+	/**
+	 * Finding the cell under a touch without creating an array. Touches are spread over and around the grid.
+	 */
+	static Benchmark cell(final int rows, final int columns) {
+		return new Benchmark("getCellFromXY " + rows + "x" + columns) {
+			final KanaBubbleGrid grid = new KanaBubbleGrid(rows, columns, new KanaGridGenerator(SEED));
+			final float[] touches = randomTouches(grid, 1024);
+
+			long run(int ops) {
+				long sum = 0;
+				for(int i = 0; i < ops; i++) {
+					int t = (i & 1023) * 2;
+					sum += grid.getCellFromXY(touches[t], touches[t + 1], 40, 60);
+				}
+				return sum;
+			}
+		};
+	}
+
+	/**
+	 * Saving a game in progress, as onSaveInstanceState() does.
+	 */
+	static Benchmark snapshotSave(final int rows, final int columns) {
+		return new Benchmark("GameSnapshot save " + rows + "x" + columns) {
+			final KanaBubbleGrid grid = new KanaBubbleGrid(rows, columns, new KanaGridGenerator(SEED));
+
+			long run(int ops) {
+				long sum = 0;
+				for(int i = 0; i < ops; i++) {
+					GameSnapshot snapshot = new GameSnapshot();
+					snapshot.rows = rows;
+					snapshot.columns = columns;
+					snapshot.questionNum = i;
+					snapshot.setBubbles(grid);
+					sum += snapshot.encode().length;
+				}
+				return sum;
+			}
+		};
+	}
+
+	/**
+	 * Reading a saved game and putting it back into a grid, as onCreate() does after the game was closed.
+	 */
+	static Benchmark snapshotRestore(final int rows, final int columns) {
+		return new Benchmark("GameSnapshot restore " + rows + "x" + columns) {
+			final KanaBubbleGrid grid = new KanaBubbleGrid(rows, columns, new KanaGridGenerator(SEED));
+			final byte[] saved = save();
+
+			byte[] save() {
+				GameSnapshot snapshot = new GameSnapshot();
+				snapshot.rows = rows;
+				snapshot.columns = columns;
+				snapshot.setBubbles(new KanaBubbleGrid(rows, columns, new KanaGridGenerator(SEED + 1)));
+				return snapshot.encode();
+			}
+
+			long run(int ops) {
+				long sum = 0;
+				for(int i = 0; i < ops; i++) {
+					GameSnapshot snapshot = GameSnapshot.decode(saved);
+					if(snapshot.matches(false, 0, 0, 0, rows, columns, rows * columns))
+						grid.restore(snapshot.kana, snapshot.colors, snapshot.targetIndex);
+					sum += grid.getTargetIndex();
+				}
+				return sum;
+			}
+		};
+	}
+
+	/**
+	 * Rebuilding the index of freely placed bubbles, as a moving layout does every step.
+	 */
+	static Benchmark indexBuild(final int bubbles) {
+		return new Benchmark("BubbleIndex.build " + bubbles) {
+			final BubbleIndex index = new BubbleIndex(bubbles, 50);
+			final float[][] centers = randomCenters(bubbles);
+
+			long run(int ops) {
+				long sum = 0;
+				for(int i = 0; i < ops; i++) {
+					index.build(centers[0], centers[1], bubbles);
+					sum += index.size();
+				}
+				return sum;
+			}
+		};
+	}
+
+	/**
+	 * Finding the bubble under a touch among freely placed bubbles.
+	 */
+	static Benchmark indexHitTest(final int bubbles) {
+		return new Benchmark("BubbleIndex.hitTest " + bubbles) {
+			final BubbleIndex index = new BubbleIndex(bubbles, 50);
+			final float[][] touches = randomCenters(1024);
+			{
+				float[][] centers = randomCenters(bubbles);
+				index.build(centers[0], centers[1], bubbles);
+				//the touches are spread over the same area as the bubbles
+				float scale = (float) Math.sqrt(bubbles / 1024.0);
+				for(int i = 0; i < 1024; i++) {
+					touches[0][i] *= scale;
+					touches[1][i] *= scale;
+				}
+			}
+
+			long run(int ops) {
+				long sum = 0;
+				for(int i = 0; i < ops; i++)
+					sum += index.hitTest(touches[0][i & 1023], touches[1][i & 1023]);
+				return sum;
+			}
+		};
+	}
+
+	/**
+	 * One simulation step of the floating bubbles on a 480x570 field, the size left on a
+	 * 480x800 screen, including the collisions.
+	 */
+	static Benchmark fieldStep(final int bubbles) {
+		return new Benchmark("BubbleField step " + bubbles) {
+			final BubbleField field = new BubbleField(bubbles, 50, new KanaGridGenerator(SEED), null, new Random(SEED));
+			{
+				field.setBounds(480, 570);
+			}
+
+			long run(int ops) {
+				for(int i = 0; i < ops; i++)
+					field.advance(BubbleField.STEP_NANOS);
+				return field.getSteps();
+			}
+		};
+	}
+
+	/**
+	 * Processing a touch and scoring it. Touches are spread over and around the grid.
+	 */
+	static Benchmark gridTouch(final int rows, final int columns) {
+		return new Benchmark("processGridTouch " + rows + "x" + columns) {
+			final KanaBubbleGrid grid = new KanaBubbleGrid(rows, columns, new KanaGridGenerator(SEED));
+			final float[] touches = randomTouches(grid, 1024);
+
+			long run(int ops) {
+				long sum = 0;
+				for(int i = 0; i < ops; i++) {
+					int t = (i & 1023) * 2;
+					sum += grid.processGridTouch(touches[t], touches[t + 1], 40, 60);
+				}
+				return sum;
+			}
+		};
+	}
+
+	/**
+	 * Looking up the kana index of every Kana of a mode.
+	 */
+	static Benchmark lookup(final int mode, String name) {
+		return new Benchmark("KanaLookup." + name) {
+			final String[] strings = new String[KanaBubble.KANA_COUNT];
+			{
+				for(int i = 0; i < strings.length; i++)
+					strings[i] = new KanaBubble(i).getKana(mode);
+			}
+
+			long run(int ops) {
+				long sum = 0;
+				for(int i = 0; i < ops; i++)
+					sum += KanaLookup.indexOf(strings[i % strings.length], mode);
+				return sum;
+			}
+		};
+	}
+
+	/**
+	 * Choosing targets uniformly at random.
+	 */
+	static Benchmark randomTarget() {
+		return new Benchmark("RandomTargetScheduler") {
+			final TargetScheduler scheduler = new RandomTargetScheduler(new Random(SEED));
+
+			long run(int ops) {
+				long sum = 0;
+				for(int i = 0; i < ops; i++)
+					sum += scheduler.nextTarget();
+				return sum;
+			}
+		};
+	}
+
+	/**
+	 * Choosing targets with the Leitner scheduler, with every fourth answer wrong.
+	 */
+	static Benchmark leitnerTarget() {
+		return new Benchmark("LeitnerScheduler") {
+			final TargetScheduler scheduler = new LeitnerScheduler(new Random(SEED));
+
+			long run(int ops) {
+				long sum = 0;
+				for(int i = 0; i < ops; i++) {
+					int target = scheduler.nextTarget();
+					if((i & 3) == 0)
+						scheduler.recordMiss(target);
+					else
+						scheduler.recordHit(target);
+					sum += target;
+				}
+				return sum;
+			}
+		};
+	}
+
+	/**
+	 * Creates bubble centers spread over a square with room for about two bubbles of radius 50 
+	 * for every bubble, so some bubbles overlap and about half of the touches hit one.
+	 * @param count - <i>amount of bubbles</i>
+	 * @return float[][] - <i>x positions and y positions</i>
+	 */
+	static float[][] randomCenters(int count) {
+		Random rand = new Random(SEED + count);
+		float side = (float) Math.sqrt(count * 2 * Math.PI * 50 * 50);
+		float[][] centers = new float[2][count];
+		for(int i = 0; i < count; i++) {
+			centers[0][i] = rand.nextFloat() * side;
+			centers[1][i] = rand.nextFloat() * side;
+		}
+		return centers;
+	}
+
+	/**
+	 * Creates touch positions spread over the grid and a margin around it,
+	 * for a grid drawn at a side margin of 40 and a top margin of 60.
+	 * @param grid - <i>grid that is touched</i>
+	 * @param count - <i>amount of touches</i>
+	 * @return float[] - <i>x and y of every touch</i>
+	 */
+	static float[] randomTouches(KanaBubbleGrid grid, int count) {
+		Random rand = new Random(SEED);
+		float[] touches = new float[count * 2];
+		for(int i = 0; i < count; i++) {
+			touches[i * 2] = rand.nextFloat() * (grid.getWidth() + 80);
+			touches[i * 2 + 1] = rand.nextFloat() * (grid.getHeight() + 120);
+		}
+		return touches;
+	}
+}
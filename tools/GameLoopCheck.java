@@ -0,0 +1,243 @@
+package com.chasingkytes.kana.practice;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Checks the lifecycle of the GameLoop without a device, with a renderer that only waits
+ * FRAME_WORK_MICROS and counts its frames:
+ *   resume latency - time from resume() to the first frame being drawn
+ *   pause latency - time for pause() to return while frames are being drawn
+ *   surface loss - no frame may be drawn between surfaceDestroyed and surfaceCreated
+ *   threads - the same single thread runs through every cycle, and none is left after shutdown()
+ *
+ * The other background threads of a game are checked the same way:
+ *   GridPrefetcher - one thread through every pause() and resume(), no grid built while paused,
+ *                    and none left after shutdown()
+ *   InputRecorder - one writer thread for every writeInBackground() of a game, none left after
+ *                   close(), and the file holds the whole recording
+ *
+ * Run from the project directory, with the desktop stand-in for android.os.SystemClock:
+ *   javac -encoding UTF-8 -d /tmp/loop -sourcepath src:tools/desktop tools/GameLoopCheck.java
+ *   java -cp /tmp/loop:src com.chasingkytes.kana.practice.GameLoopCheck [cycles]
+ */
+public class GameLoopCheck {
+
+	final static int FRAME_WORK_MICROS = 2000;
+	final static int PAUSE_MS = 20;
+	final static String THREAD_NAME = "GameLoopCheck";
+	final static String PREFETCHER_THREAD = "GridPrefetcher";
+	final static String RECORDER_THREAD = "InputRecorder";
+	//time the prefetcher is given to fill its queue after a resume
+	final static int FILL_MS = 5;
+	final static long SEED = 42;
+
+	/**
+	 * A renderer that keeps the scheduler animating and records when frames are drawn.
+	 */
+	static class BusyRenderer implements GameLoop.Renderer {
+		final RenderScheduler scheduler;
+		volatile long frames = 0;
+		volatile long lastFrameNanos = 0;
+		volatile boolean surfaceValid = false;
+		volatile int framesWithoutSurface = 0;
+		volatile Thread renderThread;
+
+		BusyRenderer(RenderScheduler scheduler) {
+			this.scheduler = scheduler;
+		}
+
+		public void renderFrame() {
+			renderThread = Thread.currentThread();
+			if(!surfaceValid)
+				framesWithoutSurface++;
+			long end = System.nanoTime() + FRAME_WORK_MICROS * 1000L;
+			while(System.nanoTime() < end)
+				;
+			lastFrameNanos = System.nanoTime();
+			frames++;
+			scheduler.requestAnimation(RenderScheduler.FRAME_INTERVAL_MS * 4);
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException, IOException {
+		int cycles = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		checkLoop(cycles);
+		checkPrefetcher(cycles);
+		checkRecorder(cycles);
+	}
+
+	/**
+	 * Pauses and resumes a GameLoop.
+	 * @param cycles - <i>amount of pauses</i>
+	 */
+	static void checkLoop(int cycles) throws InterruptedException {
+		int threadsBefore = countThreads(THREAD_NAME);
+
+		RenderScheduler scheduler = new RenderScheduler();
+		BusyRenderer renderer = new BusyRenderer(scheduler);
+		GameLoop loop = new GameLoop(THREAD_NAME, scheduler, renderer);
+		loop.start();
+
+		//nothing is drawn until the game is resumed and the surface exists
+		loop.resume();
+		Thread.sleep(50);
+		report("before surfaceCreated", renderer.frames == 0);
+		renderer.surfaceValid = true;
+		scheduler.setSurfaceReady(true);
+
+		long[] resumeNanos = new long[cycles];
+		long[] pauseNanos = new long[cycles];
+		Thread firstThread = null;
+		boolean sameThread = true;
+		for(int i = 0; i < cycles; i++) {
+			//let a few frames run, so the pause usually lands in the middle of one
+			long target = renderer.frames + 3;
+			while(renderer.frames < target)
+				Thread.sleep(1);
+			if(firstThread == null)
+				firstThread = renderer.renderThread;
+			sameThread &= renderer.renderThread == firstThread;
+
+			long start = System.nanoTime();
+			loop.pause();
+			pauseNanos[i] = System.nanoTime() - start;
+			long framesAtPause = renderer.frames;
+			//longer than one display refresh, so the refresh limit of the scheduler does not delay the resume
+			Thread.sleep(PAUSE_MS);
+			if(renderer.frames != framesAtPause)
+				sameThread = false;		//a frame was drawn while paused
+
+			start = System.nanoTime();
+			loop.resume();
+			while(renderer.frames == framesAtPause)
+				Thread.yield();
+			resumeNanos[i] = renderer.lastFrameNanos - start;
+
+			//every tenth cycle the surface is lost and comes back while the game runs
+			if(i % 10 == 0) {
+				scheduler.setSurfaceReady(false);
+				scheduler.awaitIdle();
+				renderer.surfaceValid = false;
+				Thread.sleep(5);
+				renderer.surfaceValid = true;
+				scheduler.setSurfaceReady(true);
+			}
+		}
+		int threadsRunning = countThreads(THREAD_NAME);
+
+		loop.pause();
+		loop.shutdown();
+		int threadsAfter = countThreads(THREAD_NAME);
+
+		Arrays.sort(resumeNanos);
+		Arrays.sort(pauseNanos);
+		System.out.println(String.format("%d pause/resume cycles with %d us frames, %d frames", cycles, FRAME_WORK_MICROS, renderer.frames));
+		System.out.println(String.format("  resume to first frame: p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+				resumeNanos[cycles / 2] / 1e6, resumeNanos[cycles * 99 / 100] / 1e6, resumeNanos[cycles - 1] / 1e6));
+		System.out.println(String.format("  pause returns after:   p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+				pauseNanos[cycles / 2] / 1e6, pauseNanos[cycles * 99 / 100] / 1e6, pauseNanos[cycles - 1] / 1e6));
+		report("one render thread, nothing drawn while paused", sameThread && threadsRunning == threadsBefore + 1);
+		report("no frame drawn without a surface", renderer.framesWithoutSurface == 0);
+		report("no thread left after shutdown", !loop.isAlive() && threadsAfter == threadsBefore);
+	}
+
+	/**
+	 * Pauses and resumes a GridPrefetcher while grids are taken from it.
+	 * @param cycles - <i>amount of pauses</i>
+	 */
+	static void checkPrefetcher(int cycles) throws InterruptedException {
+		int threadsBefore = countThreads(PREFETCHER_THREAD);
+		KanaGridGenerator generator = new KanaGridGenerator(SEED);
+		GridPrefetcher prefetcher = new GridPrefetcher(4, 4, generator, new LeitnerScheduler(generator.getRandom()));
+		prefetcher.start();
+		boolean oneThread = true;
+		int readyAfterResume = 0;
+		int builtWhilePaused = 0;
+		for(int i = 0; i < cycles; i++) {
+			prefetcher.resume();
+			Thread.sleep(FILL_MS);
+			int misses = prefetcher.getMisses();
+			prefetcher.recycle(prefetcher.next());
+			if(prefetcher.getMisses() == misses)
+				readyAfterResume++;
+			oneThread &= countThreads(PREFETCHER_THREAD) == threadsBefore + 1;
+
+			//the grid being built when paused may still be queued, nothing after it
+			prefetcher.pause();
+			Thread.sleep(FILL_MS);
+			misses = prefetcher.getMisses();
+			for(int g = 0; g < GridPrefetcher.CAPACITY + 2; g++)
+				prefetcher.recycle(prefetcher.next());
+			if(prefetcher.getMisses() == misses)
+				builtWhilePaused++;
+		}
+		prefetcher.shutdown();
+		int threadsAfter = countThreads(PREFETCHER_THREAD);
+
+		System.out.println(String.format("%d GridPrefetcher pause/resume cycles: a grid was ready %d times after resume()",
+				cycles, readyAfterResume));
+		report("one prefetcher thread", oneThread);
+		report("no grid built while paused", builtWhilePaused == 0);
+		report("no prefetcher thread left after shutdown", !prefetcher.isAlive() && threadsAfter == threadsBefore);
+	}
+
+	/**
+	 * Writes a recording in the background after every touch, like a game paused after every touch.
+	 * @param cycles - <i>amount of writes</i>
+	 */
+	static void checkRecorder(int cycles) throws InterruptedException, IOException {
+		File directory = File.createTempFile("GameLoopCheck", "");
+		if(!directory.delete() || !directory.mkdir())
+			throw new IOException("could not create " + directory);
+		int threadsBefore = countThreads(RECORDER_THREAD);
+		KanaBubbleGrid grid = new KanaBubbleGrid(4, 4, new KanaGridGenerator(SEED));
+		InputRecorder recorder = new InputRecorder(4, 4, KanaBubble.HIRAGANA_MODE, KanaBubble.ROMAJI_MODE, 0);
+		recorder.recordGrid(0, grid);
+		float[] transform = { 0, 0, 1 };
+		int maxThreads = 0;
+		for(int i = 0; i < cycles; i++) {
+			recorder.recordTouch(i, i % 400, i % 300, transform, KanaBubbleGrid.TARGET_MISS);
+			recorder.writeInBackground(directory);
+			maxThreads = Math.max(maxThreads, countThreads(RECORDER_THREAD) - threadsBefore);
+		}
+		recorder.close();
+		long end = System.currentTimeMillis() + 1000;
+		while(countThreads(RECORDER_THREAD) > threadsBefore && System.currentTimeMillis() < end)
+			Thread.sleep(1);
+		int threadsAfter = countThreads(RECORDER_THREAD);
+		File file = new File(directory, InputRecorder.FILE_NAME);
+		long written = file.length();
+		file.delete();
+		directory.delete();
+
+		System.out.println(String.format("%d background writes of the recording: at most %d writer threads, %d of %d bytes written",
+				cycles, maxThreads, written, recorder.size()));
+		report("one writer thread", maxThreads == 1);
+		report("no writer thread left after close", threadsAfter == threadsBefore);
+		report("the last write holds the whole recording", written == recorder.size());
+	}
+
+	/**
+	 * Prints the result of a check.
+	 * @param check - <i>what was checked</i>
+	 * @param passed - <i>result</i>
+	 */
+	static void report(String check, boolean passed) {
+		System.out.println("  " + (passed ? "ok   " : "FAIL ") + check);
+	}
+
+	/**
+	 * Counts the live threads with a name.
+	 * @param name - <i>name of the threads</i>
+	 * @return int - <i>threads named <b>name</b></i>
+	 */
+	static int countThreads(String name) {
+		int count = 0;
+		for(Thread thread : Thread.getAllStackTraces().keySet())
+			if(thread.getName().equals(name) && thread.isAlive())
+				count++;
+		return count;
+	}
+}
@@ -0,0 +1,250 @@
+package com.chasingkytes.kana.practice;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs touches against a render thread without a device, the way GFXSurface shares the grid:
+ *   render thread - reads the published grid once per frame without a lock, checks every bubble,
+ *                   publishes the margins, and swaps in the next grid from the GridPrefetcher under
+ *                   the game lock once the target was found, like updateGame()
+ *   touch thread - takes the game lock only to touch the published grid like processTouch(), then
+ *                  releases it and spends TOUCH_WORK_MICROS on the sounds and stores, then reads
+ *                  the margins
+ *
+ * A frame fails if it sees a Kana outside the table, the same Kana twice, a target that is not
+ * on the grid exactly once, an unknown color, more than one blue bubble, or a bubble that turned
+ * back to green during its question. The margins fail if the two halves come from different writes.
+ * The render thread must keep drawing while the touch thread works, and the time it waits for the
+ * game lock at a change of question is measured. The lock fails if the render thread ever waits
+ * TOUCH_WORK_MICROS for it, which means the slow work of a touch was done under it. The time a
+ * touch holds the lock is also printed; on a single core it includes the frames drawn meanwhile.
+ *
+ * Run from the project directory:
+ *   javac -encoding UTF-8 -d /tmp/publish -sourcepath src tools/GridPublishCheck.java
+ *   java -cp /tmp/publish:src com.chasingkytes.kana.practice.GridPublishCheck [seconds] [rows] [columns]
+ */
+public class GridPublishCheck {
+
+	final static long SEED = 42;
+	//about what playing two sounds and writing the stores take on a phone
+	final static int TOUCH_WORK_MICROS = 2000;
+	//a wait for the lock shorter than this is not counted as contention
+	final static long CONTENDED_NANOS = 20000;
+	final static double ACCURACY = 0.3;
+
+	final Object gameLock = new Object();
+	final AtomicReference<KanaBubbleGrid> published = new AtomicReference<KanaBubbleGrid>();
+	volatile long margins = FloatPair.pack(0, 0);
+	volatile boolean answered = false;		//set by a hit, cleared once the next grid is shown
+	volatile boolean running = true;
+	volatile boolean touchBusy = false;
+
+	//results, each written by one thread
+	volatile String failure = null;
+	long frames = 0;
+	long framesDuringTouch = 0;
+	long questions = 0;
+	long maxFrameNanos = 0;
+	long touches = 0;
+	long hits = 0;
+	long tornMargins = 0;
+	long lockWaitNanos = 0;
+	long maxLockWaitNanos = 0;
+	long contendedSwaps = 0;
+	long maxLockHoldNanos = 0;
+
+	final int rows;
+	final int columns;
+	final KanaGridGenerator generator = new KanaGridGenerator(SEED);
+	final TargetScheduler scheduler = new LeitnerScheduler(generator.getRandom());
+	final GridPrefetcher prefetcher;
+
+	GridPublishCheck(int rows, int columns) {
+		this.rows = rows;
+		this.columns = columns;
+		prefetcher = new GridPrefetcher(rows, columns, generator, scheduler);
+		published.set(new KanaBubbleGrid(rows, columns, generator, scheduler));
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+		int rows = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int columns = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		final GridPublishCheck check = new GridPublishCheck(rows, columns);
+		check.prefetcher.start();
+		check.prefetcher.resume();
+
+		Thread render = new Thread(new Runnable() {
+			public void run() {
+				check.render();
+			}
+		}, "render");
+		Thread touch = new Thread(new Runnable() {
+			public void run() {
+				check.touch();
+			}
+		}, "touch");
+		render.start();
+		touch.start();
+		Thread.sleep(seconds * 1000L);
+		check.running = false;
+		render.join();
+		touch.join();
+		check.prefetcher.shutdown();
+
+		System.out.println(String.format("%dx%d grid, %d s: %d frames, %d questions, %d touches, %d hits",
+				rows, columns, seconds, check.frames, check.questions, check.touches, check.hits));
+		System.out.println(String.format("frames drawn while a touch was processed: %d, slowest frame %.1f us",
+				check.framesDuringTouch, check.maxFrameNanos / 1000.0));
+		System.out.println(String.format("game lock: %d of %d changes of question waited for it, %.1f us on average, %.1f us at most; "
+				+ "held by a touch %.1f us at most",
+				check.contendedSwaps, check.questions, check.questions == 0 ? 0 : check.lockWaitNanos / 1000.0 / check.questions,
+				check.maxLockWaitNanos / 1000.0, check.maxLockHoldNanos / 1000.0));
+		boolean ok = check.failure == null && check.tornMargins == 0 && check.framesDuringTouch > 0 && check.questions > 0
+				&& check.maxLockWaitNanos < TOUCH_WORK_MICROS * 1000L;
+		System.out.println(String.format("torn margins: %d, frame errors: %s: %s",
+				check.tornMargins, check.failure == null ? "none" : check.failure, ok ? "ok" : "FAILED"));
+		if(!ok)
+			System.exit(1);
+	}
+
+	/**
+	 * The render thread.
+	 */
+	void render() {
+		byte[] seen = new byte[rows * columns];		//colors of the current question seen so far
+		boolean[] used = new boolean[KanaBubble.KANA_COUNT];
+		Arrays.fill(seen, (byte) KanaBubble.GREEN);
+		while(running) {
+			if(answered) {
+				//like updateGame(): a snapshot or touch never sees half of the change of question
+				long waitStart = System.nanoTime();
+				synchronized(gameLock) {
+					long wait = System.nanoTime() - waitStart;
+					lockWaitNanos += wait;
+					maxLockWaitNanos = Math.max(maxLockWaitNanos, wait);
+					if(wait >= CONTENDED_NANOS)
+						contendedSwaps++;
+					prefetcher.recycle(published.getAndSet(prefetcher.next()));
+					answered = false;
+				}
+				questions++;
+				Arrays.fill(seen, (byte) KanaBubble.GREEN);
+			}
+
+			long start = System.nanoTime();
+			boolean duringTouch = touchBusy;
+			KanaBubbleGrid grid = published.get();
+			int targets = 0;
+			int blue = 0;
+			for(int r = 0; r < rows; r++) {
+				for(int c = 0; c < columns; c++) {
+					int kana = grid.getKanaIndex(r, c);
+					int color = grid.getColor(r, c);
+					if(kana >= KanaBubble.KANA_COUNT)
+						fail("Kana " + kana + " is not in the table");
+					else if(used[kana])
+						fail("Kana " + kana + " is on the grid twice");
+					else
+						used[kana] = true;
+					if(kana == grid.getTargetIndex())
+						targets++;
+					if(color == KanaBubble.BLUE)
+						blue++;
+					else if(color != KanaBubble.GREEN && color != KanaBubble.RED)
+						fail("unknown color " + color);
+					int cell = r * columns + c;
+					if(seen[cell] != KanaBubble.GREEN && color != seen[cell])
+						fail("bubble " + cell + " changed from " + seen[cell] + " to " + color + " during its question");
+					seen[cell] = (byte) color;
+				}
+			}
+			for(int r = 0; r < rows; r++)
+				for(int c = 0; c < columns; c++)
+					used[grid.getKanaIndex(r, c)] = false;
+			if(targets != 1)
+				fail("target is on the grid " + targets + " times");
+			if(blue > 1)
+				fail(blue + " blue bubbles");
+
+			//both halves of the margins come from the same frame
+			float side = frames % 1000;
+			margins = FloatPair.pack(side, side * 2);
+
+			long elapsed = System.nanoTime() - start;
+			maxFrameNanos = Math.max(maxFrameNanos, elapsed);
+			frames++;
+			if(duringTouch && touchBusy)
+				framesDuringTouch++;
+		}
+	}
+
+	/**
+	 * The touch thread.
+	 */
+	void touch() {
+		Random player = new Random(SEED + 1);
+		while(running) {
+			if(answered) {
+				//touches during the reveal do not reach the grid
+				Thread.yield();
+				continue;
+			}
+			touchBusy = true;
+			synchronized(gameLock) {
+				long lockStart = System.nanoTime();
+				KanaBubbleGrid grid = published.get();
+				int cell = player.nextInt(rows * columns);
+				if(player.nextDouble() < ACCURACY)
+					cell = findTarget(grid);
+				float x = grid.getCellX(cell % columns) + grid.radius;
+				float y = grid.getCellY(cell / columns) + grid.radius;
+				int result = grid.processGridTouch(x, y, 0, 0);
+				touches++;
+				if(result == KanaBubbleGrid.TARGET_HIT) {
+					hits++;
+					scheduler.recordHit(grid.getTargetIndex());
+					answered = true;
+				} else if(result == KanaBubbleGrid.TARGET_MISS) {
+					scheduler.recordMiss(grid.getTargetIndex());
+				}
+				maxLockHoldNanos = Math.max(maxLockHoldNanos, System.nanoTime() - lockStart);
+			}
+
+			//like processTouch(): the sounds and stores are done once the lock is released
+			//parked rather than spinning, so the render thread also runs on a single core
+			LockSupport.parkNanos(TOUCH_WORK_MICROS * 1000L);
+			touchBusy = false;
+
+			long m = margins;
+			if(FloatPair.second(m) != FloatPair.first(m) * 2)
+				tornMargins++;
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Finds the bubble that holds the target.
+	 * @param grid - <i>grid of the question</i>
+	 * @return int - <i>cell of the target, row by row</i>
+	 */
+	int findTarget(KanaBubbleGrid grid) {
+		for(int r = 0; r < rows; r++)
+			for(int c = 0; c < columns; c++)
+				if(grid.isPointerEqualsTarget(r, c))
+					return r * columns + c;
+		return 0;
+	}
+
+	/**
+	 * Keeps the first error seen by the render thread.
+	 * @param message - <i>what was wrong</i>
+	 */
+	void fail(String message) {
+		if(failure == null)
+			failure = message + " (frame " + frames + ")";
+	}
+}
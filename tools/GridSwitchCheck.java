@@ -0,0 +1,91 @@
+package com.chasingkytes.kana.practice;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the delay between two questions without a device, the way GFXSurface reports it to
+ * GridPrefetcher.recordShown(): from the end of the reveal, through next(), until every bubble
+ * of the new grid was read for its first frame. Each grid size runs twice:
+ *   prefetched - the background thread builds the grids while the user plays for QUESTION_MS
+ *   on demand - the background thread is never started, so every next() builds its grid
+ *
+ * Drawing on a phone takes longer than reading the bubbles here, so compare the two columns
+ * rather than the times themselves. The check fails if the prefetched run had to build more
+ * grids while waiting than the first CAPACITY questions can explain.
+ *
+ * Run from the project directory:
+ *   javac -encoding UTF-8 -d /tmp/switch -sourcepath src tools/GridSwitchCheck.java
+ *   java -cp /tmp/switch:src com.chasingkytes.kana.practice.GridSwitchCheck [questions]
+ */
+public class GridSwitchCheck {
+
+	//grid sizes offered by the menu, plus larger grids that use every Kana more than once
+	final static int[][] SIZES = { {1, 1}, {2, 3}, {4, 4}, {8, 6}, {12, 12}, {20, 20} };
+	//time the user spends on a question before the reveal ends
+	final static long QUESTION_MS = 20;
+	final static long SEED = 42;
+
+	static int failures = 0;
+
+	public static void main(String[] args) {
+		int questions = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		System.out.println(String.format("%-8s %24s %24s", "grid", "prefetched avg/max us", "on demand avg/max us"));
+		for(int[] size : SIZES) {
+			//warms up the JIT, so neither run pays for compiling the grid code
+			run(size[0], size[1], questions, false);
+			GridPrefetcher prefetched = run(size[0], size[1], questions, true);
+			GridPrefetcher onDemand = run(size[0], size[1], questions, false);
+			System.out.println(String.format("%-8s %15.1f/%8.1f %15.1f/%8.1f   %d of %d prefetched grids built while waiting",
+					size[0] + "x" + size[1],
+					prefetched.getAverageNanos() / 1000.0, prefetched.getMaxNanos() / 1000.0,
+					onDemand.getAverageNanos() / 1000.0, onDemand.getMaxNanos() / 1000.0,
+					prefetched.getMisses(), prefetched.getShownCount()));
+			if(prefetched.getMisses() > GridPrefetcher.CAPACITY) {
+				failures++;
+				System.out.println("FAILED: " + size[0] + "x" + size[1] + " grids were not ready in time");
+			}
+		}
+		System.out.println(failures == 0 ? "ok" : failures + " failures");
+		if(failures != 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Plays one game.
+	 * @param rows - <i>rows of the grids</i>
+	 * @param columns - <i>columns of the grids</i>
+	 * @param questions - <i>amount of questions</i>
+	 * @param prefetch - <i>whether the background thread builds the grids</i>
+	 * @return GridPrefetcher - <i>the stopped prefetcher, holding the measured times</i>
+	 */
+	static GridPrefetcher run(int rows, int columns, int questions, boolean prefetch) {
+		KanaGridGenerator generator = new KanaGridGenerator(SEED);
+		TargetScheduler scheduler = new LeitnerScheduler(generator.getRandom());
+		GridPrefetcher prefetcher = new GridPrefetcher(rows, columns, generator, scheduler);
+		KanaBubbleGrid grid = new KanaBubbleGrid(rows, columns, generator, scheduler);
+		if(prefetch) {
+			prefetcher.start();
+			prefetcher.resume();
+		}
+		long checksum = 0;
+		for(int q = 0; q < questions; q++) {
+			//the user finds the target
+			LockSupport.parkNanos(QUESTION_MS * 1000000);
+			scheduler.recordHit(grid.getTargetIndex());
+
+			//the reveal is over
+			long start = System.nanoTime();
+			KanaBubbleGrid shown = prefetcher.next();
+			prefetcher.recycle(grid);
+			grid = shown;
+			for(int r = 0; r < rows; r++)
+				for(int c = 0; c < columns; c++)
+					checksum += grid.getKanaIndex(r, c) + grid.getColor(r, c);
+			prefetcher.recordShown(System.nanoTime() - start);
+		}
+		prefetcher.shutdown();
+		if(checksum == 42)
+			System.out.println();		//keeps the reads from being removed
+		return prefetcher;
+	}
+}
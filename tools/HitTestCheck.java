@@ -0,0 +1,167 @@
+package com.chasingkytes.kana.practice;
+
+import java.util.Random;
+
+/**
+ * Compares the two ways the game finds the bubble under a touch without a device:
+ * KanaBubbleGrid.getCellFromXY(), which divides the touch by the size of a cell, and
+ * BubbleIndex.hitTest(), which searches the bubbles near the touch. Both are given the same
+ * bubbles, the ones of a grid, and must agree on every point:
+ *   edges - points on the edge of every bubble at EDGE_ANGLES angles, each also moved by one
+ *           float step in every direction, so they fall just inside, on and just outside the edge
+ *   borders - points along every line between two rows or two columns, where two bubbles meet
+ *   random - points anywhere on the grid and around it
+ *
+ * Where two bubbles touch, a point is on the edge of both. The grid gives it to the bubble
+ * to the right or below and the index to the bubble first in order, so there the results
+ * may differ as long as both bubbles contain the point. Such ties are counted, not failed.
+ *
+ * Run from the project directory:
+ *   javac -encoding UTF-8 -d /tmp/hittest -sourcepath src tools/HitTestCheck.java
+ *   java -cp /tmp/hittest:src com.chasingkytes.kana.practice.HitTestCheck
+ */
+public class HitTestCheck {
+
+	final static int[][] SIZES = { {1, 1}, {2, 3}, {5, 4}, {7, 13}, {20, 20} };
+	final static int EDGE_ANGLES = 3600;
+	final static int BORDER_STEPS = 20000;
+	final static int RANDOM_POINTS = 2000000;
+	final static long SEED = 42;
+
+	static int failures = 0;
+
+	public static void main(String[] args) {
+		for(int s = 0; s < SIZES.length; s++)
+			new HitTestCheck(SIZES[s][0], SIZES[s][1]).run();
+		System.out.println(failures == 0 ? "ok" : failures + " failures");
+		if(failures != 0)
+			System.exit(1);
+	}
+
+	final int rows;
+	final int columns;
+	final KanaBubbleGrid grid;
+	final BubbleIndex index;
+	final float[] centerX;
+	final float[] centerY;
+	long points = 0;
+	long hits = 0;
+	long ties = 0;
+
+	HitTestCheck(int rows, int columns) {
+		this.rows = rows;
+		this.columns = columns;
+		grid = new KanaBubbleGrid(rows, columns);
+		index = new BubbleIndex(rows * columns, grid.radius);
+		centerX = new float[rows * columns];
+		centerY = new float[rows * columns];
+		for(int r = 0; r < rows; r++) {
+			for(int c = 0; c < columns; c++) {
+				centerX[r * columns + c] = grid.getCellX(c) + grid.radius;
+				centerY[r * columns + c] = grid.getCellY(r) + grid.radius;
+			}
+		}
+		index.build(centerX, centerY, rows * columns);
+	}
+
+	void run() {
+		//edges
+		for(int bubble = 0; bubble < centerX.length; bubble++) {
+			for(int a = 0; a < EDGE_ANGLES; a++) {
+				double angle = 2 * Math.PI * a / EDGE_ANGLES;
+				float x = (float) (centerX[bubble] + grid.radius * Math.cos(angle));
+				float y = (float) (centerY[bubble] + grid.radius * Math.sin(angle));
+				for(int dx = -1; dx <= 1; dx++)
+					for(int dy = -1; dy <= 1; dy++)
+						compare(step(x, dx), step(y, dy));
+			}
+		}
+		long edgePoints = points;
+
+		//borders, including the outer edges of the grid
+		float width = grid.getWidth();
+		float height = grid.getHeight();
+		for(int c = 0; c <= columns; c++) {
+			for(int i = 0; i <= BORDER_STEPS; i++) {
+				float y = height * i / BORDER_STEPS;
+				for(int dx = -1; dx <= 1; dx++)
+					compare(step(grid.getCellX(c), dx), y);
+			}
+		}
+		for(int r = 0; r <= rows; r++) {
+			for(int i = 0; i <= BORDER_STEPS; i++) {
+				float x = width * i / BORDER_STEPS;
+				for(int dy = -1; dy <= 1; dy++)
+					compare(x, step(grid.getCellY(r), dy));
+			}
+		}
+		long borderPoints = points - edgePoints;
+
+		//random points, a bubble around the grid included
+		Random random = new Random(SEED);
+		for(int i = 0; i < RANDOM_POINTS; i++) {
+			float x = (random.nextFloat() * (columns + 2) - 1) * grid.diameter;
+			float y = (random.nextFloat() * (rows + 2) - 1) * grid.diameter;
+			compare(x, y);
+		}
+
+		System.out.println(String.format("%dx%d grid: %d edge, %d border and %d random points, %d inside a bubble, %d ties",
+				rows, columns, edgePoints, borderPoints, RANDOM_POINTS, hits, ties));
+	}
+
+	/**
+	 * Moves a position by one float step.
+	 * @param value - <i>position</i>
+	 * @param direction - <i>-1 for down, 0 to keep it, 1 for up</i>
+	 * @return float - <i>moved position</i>
+	 */
+	static float step(float value, int direction) {
+		if(direction < 0)
+			return Math.nextAfter(value, Double.NEGATIVE_INFINITY);
+		if(direction > 0)
+			return Math.nextUp(value);
+		return value;
+	}
+
+	/**
+	 * Finds the bubble under a point both ways and checks that they agree.
+	 * @param x - <i>x position in grid units</i>
+	 * @param y - <i>y position in grid units</i>
+	 */
+	void compare(float x, float y) {
+		points++;
+		int cell = grid.getCellFromXY(x, y, 0, 0);
+		int fromGrid = cell == KanaBubbleGrid.NO_CELL ? BubbleIndex.NO_HIT
+				: KanaBubbleGrid.cellRow(cell) * columns + KanaBubbleGrid.cellColumn(cell);
+		int fromIndex = index.hitTest(x, y);
+		if(fromIndex != BubbleIndex.NO_HIT)
+			hits++;
+		if(fromGrid == fromIndex)
+			return;
+		if(fromGrid != BubbleIndex.NO_HIT && fromIndex != BubbleIndex.NO_HIT && onEdge(fromGrid, x, y) && onEdge(fromIndex, x, y)) {
+			ties++;
+			return;
+		}
+		fail(String.format("%dx%d grid, point (%s, %s): grid finds %d, index finds %d",
+				rows, columns, Float.toString(x), Float.toString(y), fromGrid, fromIndex));
+	}
+
+	/**
+	 * Checks that a point is exactly on the edge of a bubble, computed like both hit tests do.
+	 */
+	boolean onEdge(int bubble, float x, float y) {
+		float dx = x - centerX[bubble];
+		float dy = y - centerY[bubble];
+		return dx * dx + dy * dy == grid.radius * grid.radius;
+	}
+
+	/**
+	 * Counts a failure and prints the first ones.
+	 * @param message - <i>what was wrong</i>
+	 */
+	static void fail(String message) {
+		failures++;
+		if(failures <= 20)
+			System.out.println("FAILED: " + message);
+	}
+}
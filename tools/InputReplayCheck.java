@@ -0,0 +1,177 @@
+package com.chasingkytes.kana.practice;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+/**
+ * Replays a recording of a game through the game core without a device, checks that every touch
+ * has the result it had during the game and measures how fast the core replays touches.
+ *
+ * Given the recording of a game pulled from a device (files/last_game.krec of the app), that game
+ * is replayed. Without one, a game is recorded first the way GFXSurface records it: grids come
+ * from a seeded KanaGridGenerator and the LeitnerScheduler, a player touches near the bubbles with
+ * some jitter and now and then pans or zooms the grid, and every touch goes through a GridViewport
+ * and processGridTouch().
+ *
+ * Run from the project directory:
+ *   javac -encoding UTF-8 -d /tmp/replay -sourcepath src tools/InputReplayCheck.java
+ *   java -cp /tmp/replay:src com.chasingkytes.kana.practice.InputReplayCheck [recording]
+ */
+public class InputReplayCheck {
+
+	final static long SEED = 42;
+	final static int ROWS = 20;
+	final static int COLUMNS = 20;
+	final static int QUESTIONS = 500;
+	final static double ACCURACY = 0.6;
+	final static float JITTER = 40;
+	final static double GESTURE_CHANCE = 0.05;
+	//the replay is repeated for at least this long to time it
+	final static long TIMING_NANOS = 2000000000L;
+
+	//screen of the recorded game
+	final static float SCREEN_WIDTH = 480;
+	final static float SCREEN_HEIGHT = 800;
+	final static float FIELD_TOP = 60;
+	final static float FIELD_BOTTOM = 170;
+
+	public static void main(String[] args) throws IOException {
+		byte[] log;
+		int[] expected = null;		//hits and misses of the recorded game, when it was recorded here
+		if(args.length > 0) {
+			log = readFile(new File(args[0]));
+		} else {
+			expected = new int[2];
+			log = record(expected);
+		}
+
+		InputReplayer replayer;
+		try {
+			replayer = new InputReplayer(log);
+		} catch (IllegalArgumentException e) {
+			System.out.println("damaged recording: " + e.getMessage());
+			System.exit(1);
+			return;
+		}
+		System.out.println(String.format("recording: %dx%d grid, %d questions, %d touches, %d bytes (%.1f per touch)",
+				replayer.getRows(), replayer.getColumns(), replayer.getGridCount(),
+				replayer.getTouchCount(), log.length, (double) log.length / Math.max(1, replayer.getTouchCount())));
+
+		//the replay must give the recorded result for every touch
+		KanaBubbleGrid grid = new KanaBubbleGrid(replayer.getRows(), replayer.getColumns());
+		int mismatches = replayer.replay(grid);
+		boolean exact = mismatches == 0 && (expected == null
+				|| (replayer.getHits() == expected[0] && replayer.getMisses() == expected[1]));
+		System.out.println(String.format("replay: %d hits, %d misses, %d touches with another result: %s",
+				replayer.getHits(), replayer.getMisses(), mismatches, exact ? "ok" : "FAILED"));
+
+		//replay again and again at full speed
+		int replays = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			mismatches += replayer.replay(grid);
+			replays++;
+			elapsed = System.nanoTime() - start;
+		} while(elapsed < TIMING_NANOS);
+		long touches = (long) replays * replayer.getTouchCount();
+		System.out.println(String.format("throughput: %d replays, %.0f touches/s, %.1f ns per touch, %.2f ms per game",
+				replays, touches * 1e9 / elapsed, (double) elapsed / Math.max(1, touches), elapsed / 1e6 / replays));
+		if(!exact || mismatches != 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Plays a game like a device would and records it.
+	 * @param expected - <i>receives the hits and misses of the game</i>
+	 * @return byte[] - <i>the recording</i>
+	 */
+	static byte[] record(int[] expected) {
+		Random player = new Random(SEED + 1);
+		KanaGridGenerator generator = new KanaGridGenerator(SEED);
+		TargetScheduler scheduler = new LeitnerScheduler(generator.getRandom());
+		KanaBubbleGrid grid = new KanaBubbleGrid(ROWS, COLUMNS, generator, scheduler);
+		GridViewport viewport = new GridViewport();
+		viewport.layout(0, FIELD_TOP, SCREEN_WIDTH, SCREEN_HEIGHT - FIELD_TOP - FIELD_BOTTOM, grid.getWidth(), grid.getHeight());
+		float[] transform = new float[3];
+		long now = 0;
+		InputRecorder recorder = new InputRecorder(ROWS, COLUMNS, 0, 2, now);
+		for(int q = 0; q < QUESTIONS; q++) {
+			if(q > 0)
+				grid.regenerate(generator);
+			recorder.recordGrid(now, grid);
+			int result;
+			do {
+				now += 300 + player.nextInt(1500);
+				if(player.nextDouble() < GESTURE_CHANCE) {
+					viewport.zoom(0.5f + 2 * player.nextFloat(), player.nextFloat() * SCREEN_WIDTH, FIELD_TOP + player.nextFloat() * 400);
+					viewport.pan(player.nextFloat() * 400 - 200, player.nextFloat() * 400 - 200);
+				}
+
+				//aim at the target or a random bubble, in grid units, then touch the screen there
+				int cell;
+				if(player.nextDouble() < ACCURACY)
+					cell = findTarget(grid);
+				else
+					cell = player.nextInt(ROWS * COLUMNS);
+				viewport.getTransform(transform);
+				float radius = grid.getWidth() / COLUMNS / 2;
+				float gx = grid.getCellX(cell % COLUMNS) + radius + (float) player.nextGaussian() * JITTER;
+				float gy = grid.getCellY(cell / COLUMNS) + radius + (float) player.nextGaussian() * JITTER;
+				float x = transform[0] + gx * transform[2];
+				float y = transform[1] + gy * transform[2];
+
+				//exactly what GFXSurface.processTouch() does
+				long g = GridViewport.toGrid(transform, x, y);
+				result = grid.processGridTouch(FloatPair.first(g), FloatPair.second(g), 0, 0);
+				recorder.recordTouch(now, x, y, transform, result);
+				if(result == KanaBubbleGrid.TARGET_HIT) {
+					expected[0]++;
+					scheduler.recordHit(grid.getTargetIndex());
+				} else if(result == KanaBubbleGrid.TARGET_MISS) {
+					expected[1]++;
+					scheduler.recordMiss(grid.getTargetIndex());
+				}
+			} while(result != KanaBubbleGrid.TARGET_HIT);
+		}
+		return recorder.toByteArray();
+	}
+
+	/**
+	 * Finds the bubble that holds the target.
+	 * @param grid - <i>grid of the question</i>
+	 * @return int - <i>cell of the target, row by row</i>
+	 */
+	static int findTarget(KanaBubbleGrid grid) {
+		for(int r = 0; r < ROWS; r++)
+			for(int c = 0; c < COLUMNS; c++)
+				if(grid.isPointerEqualsTarget(r, c))
+					return r * COLUMNS + c;
+		return 0;
+	}
+
+	/**
+	 * Reads a whole file.
+	 * @param file - <i>recording</i>
+	 * @return byte[] - <i>contents of the file</i>
+	 */
+	static byte[] readFile(File file) throws IOException {
+		byte[] bytes = new byte[(int) file.length()];
+		InputStream in = new FileInputStream(file);
+		try {
+			int read = 0;
+			while(read < bytes.length) {
+				int n = in.read(bytes, read, bytes.length - read);
+				if(n < 0)
+					throw new IOException("file ended early: " + file);
+				read += n;
+			}
+		} finally {
+			in.close();
+		}
+		return bytes;
+	}
+}
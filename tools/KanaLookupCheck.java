@@ -0,0 +1,159 @@
+package com.chasingkytes.kana.practice;
+
+/**
+ * Checks every KanaLookup table against the kana table without a device:
+ *   round trip - every entry is found again from its Hiragana, Katakana and Romaji, and
+ *                convert() gives the entry in every other mode, including the Kana written
+ *                with two characters. A Romaji shared by Kana that sound the same, such as
+ *                "ji" for じ and ぢ, finds the first of them
+ *   every key - every single character and every pair of characters of both Unicode blocks,
+ *               and every string of one to three lowercase letters, is either not found or
+ *               found as exactly the entry it spells, so no slot holds a wrong index
+ *   not Kana - strings that can not be in the table are not found
+ *
+ * Run from the project directory:
+ *   javac -encoding UTF-8 -d /tmp/lookup -sourcepath src tools/KanaLookupCheck.java
+ *   java -cp /tmp/lookup:src com.chasingkytes.kana.practice.KanaLookupCheck
+ */
+public class KanaLookupCheck {
+
+	final static int[] MODES = { KanaBubble.HIRAGANA_MODE, KanaBubble.KATAKANA_MODE, KanaBubble.ROMAJI_MODE };
+	final static String[] MODE_NAMES = { "hiragana", "katakana", "romaji" };
+
+	static int failures = 0;
+
+	public static void main(String[] args) {
+		String[][] lists = { KanaBubble.hiraganaList, KanaBubble.katakanaList, KanaBubble.romajiList };
+		roundTrip(lists);
+		everyKanaKey(KanaBubble.hiraganaList, KanaLookup.HIRAGANA_BLOCK, KanaBubble.HIRAGANA_MODE, "hiragana");
+		everyKanaKey(KanaBubble.katakanaList, KanaLookup.KATAKANA_BLOCK, KanaBubble.KATAKANA_MODE, "katakana");
+		everyRomajiKey();
+		notKana();
+		System.out.println(failures == 0 ? "ok" : failures + " failures");
+		if(failures != 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Looks up every entry in every mode and converts it to every other mode.
+	 */
+	static void roundTrip(String[][] lists) {
+		int pairs = 0;
+		int shared = 0;
+		int conversions = 0;
+		for(int i = 0; i < KanaBubble.KANA_COUNT; i++) {
+			if(KanaBubble.hiraganaList[i].length() == 2)
+				pairs++;
+			if(KanaTable.getSound(i) != i)
+				shared++;
+			for(int from = 0; from < MODES.length; from++) {
+				String str = lists[from][i];
+				int expected = MODES[from] == KanaBubble.ROMAJI_MODE ? KanaTable.getSound(i) : i;
+				int found = KanaLookup.indexOf(str, MODES[from]);
+				if(found != expected)
+					fail(MODE_NAMES[from] + " " + str + " of entry " + i + " found as " + found + ", expected " + expected);
+				for(int to = 0; to < MODES.length; to++) {
+					String converted = KanaLookup.convert(str, MODES[from], MODES[to]);
+					if(!lists[to][expected].equals(converted))
+						fail(MODE_NAMES[from] + " " + str + " converted to " + MODE_NAMES[to] + " is " + converted
+								+ ", expected " + lists[to][expected]);
+					conversions++;
+				}
+			}
+		}
+		System.out.println(String.format("round trip: %d entries, %d written with two characters, %d sharing their Romaji, %d conversions",
+				KanaBubble.KANA_COUNT, pairs, shared, conversions));
+	}
+
+	/**
+	 * Looks up every string of one or two characters of a Unicode block.
+	 */
+	static void everyKanaKey(String[] list, int block, int mode, String name) {
+		int found = 0;
+		int keys = 0;
+		for(int first = 0; first < KanaLookup.BLOCK_SIZE; first++) {
+			String single = String.valueOf((char) (block + first));
+			found += checkKey(list, single, mode, name);
+			keys++;
+			for(int second = 0; second < KanaLookup.BLOCK_SIZE; second++) {
+				found += checkKey(list, single + (char) (block + second), mode, name);
+				keys++;
+			}
+		}
+		expectAll(list.length, found, name);
+		System.out.println(String.format("%s keys: %d strings, %d found", name, keys, found));
+	}
+
+	/**
+	 * Looks up every string of one to three lowercase letters.
+	 */
+	static void everyRomajiKey() {
+		int found = 0;
+		int keys = 0;
+		char[] letters = new char[KanaLookup.MAX_ROMAJI_LENGTH];
+		for(int length = 1; length <= KanaLookup.MAX_ROMAJI_LENGTH; length++) {
+			int count = (int) Math.pow(26, length);
+			for(int n = 0; n < count; n++) {
+				int rest = n;
+				for(int i = length - 1; i >= 0; i--) {
+					letters[i] = (char) ('a' + rest % 26);
+					rest /= 26;
+				}
+				found += checkKey(KanaBubble.romajiList, new String(letters, 0, length), KanaBubble.ROMAJI_MODE, "romaji");
+				keys++;
+			}
+		}
+		int sounds = 0;
+		for(int i = 0; i < KanaBubble.KANA_COUNT; i++)
+			if(KanaTable.getSound(i) == i)
+				sounds++;
+		expectAll(sounds, found, "romaji");
+		System.out.println(String.format("romaji keys: %d strings, %d found", keys, found));
+	}
+
+	/**
+	 * Looks up strings that are not in the table.
+	 */
+	static void notKana() {
+		String[] strings = { null, "", "A", "KA", "ka ", "kyaa", "ka1", "あア", "アあ",
+				"あああ", "　", "ヿ぀", "一" };
+		for(String str : strings)
+			for(int m = 0; m < MODES.length; m++)
+				if(KanaLookup.indexOf(str, MODES[m]) != KanaLookup.NOT_FOUND)
+					fail(MODE_NAMES[m] + " " + str + " should not be found");
+		if(KanaLookup.indexOf(KanaBubble.hiraganaList[0], 99) != KanaLookup.NOT_FOUND)
+			fail("an unknown mode should not find anything");
+		System.out.println(String.format("not Kana: %d strings", strings.length));
+	}
+
+	/**
+	 * Looks up one string and checks that it is either not found or found as the entry it spells.
+	 * @return int - <i>1 if it was found</i>
+	 */
+	static int checkKey(String[] list, String str, int mode, String name) {
+		int index = KanaLookup.indexOf(str, mode);
+		if(index == KanaLookup.NOT_FOUND)
+			return 0;
+		if(index < 0 || index >= list.length || !list[index].equals(str))
+			fail(name + " " + str + " found as entry " + index);
+		return 1;
+	}
+
+	/**
+	 * Checks that every entry of a table was found while looking up every key.
+	 */
+	static void expectAll(int entries, int found, String name) {
+		if(found != entries)
+			fail(found + " " + name + " keys found, the table has " + entries + " entries");
+	}
+
+	/**
+	 * Counts a failure and prints the first ones.
+	 * @param message - <i>what was wrong</i>
+	 */
+	static void fail(String message) {
+		failures++;
+		if(failures <= 20)
+			System.out.println("FAILED: " + message);
+	}
+}
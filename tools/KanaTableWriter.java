@@ -0,0 +1,105 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes kana_table.bin, the kana table that is read by KanaTable when the game starts.
+ * 
+ * Run from the project directory after changing the table:
+ *   javac -encoding UTF-8 -d /tmp tools/KanaTableWriter.java
+ *   java -cp /tmp KanaTableWriter src/com/chasingkytes/kana/practice/kana_table.bin
+ * 
+ * New entries must be added to the end of the table so that kana indices that were 
+ * saved by earlier versions of the game keep pointing to the same Kana.
+ */
+public class KanaTableWriter {
+
+	final static int MAGIC = 0x4B414E41;	//"KANA"
+	final static int VERSION = 1;
+
+	//categories, must match the constants in KanaTable
+	final static int BASIC = 0;
+	final static int DAKUTEN = 1;
+	final static int HANDAKUTEN = 2;
+	final static int YOON = 3;
+	final static int SMALL = 4;
+	final static int ARCHAIC = 5;
+	final static int EXTENDED = 6;
+
+	//hiragana, katakana, romaji, category
+	//the Romaji is Hepburn, as shown to the user: Kana that sound the same, such as じ and ぢ, share it
+	final static Object[][] table = {
+		//the original 70 Kana, kept in their original order
+		{"あ", "ア", "a", BASIC}, {"い", "イ", "i", BASIC}, {"う", "ウ", "u", BASIC}, {"え", "エ", "e", BASIC}, {"お", "オ", "o", BASIC},
+		{"か", "カ", "ka", BASIC}, {"き", "キ", "ki", BASIC}, {"く", "ク", "ku", BASIC}, {"け", "ケ", "ke", BASIC}, {"こ", "コ", "ko", BASIC},
+		{"さ", "サ", "sa", BASIC}, {"し", "シ", "shi", BASIC}, {"す", "ス", "su", BASIC}, {"せ", "セ", "se", BASIC}, {"そ", "ソ", "so", BASIC},
+		{"た", "タ", "ta", BASIC}, {"ち", "チ", "chi", BASIC}, {"つ", "ツ", "tsu", BASIC}, {"て", "テ", "te", BASIC}, {"と", "ト", "to", BASIC},
+		{"な", "ナ", "na", BASIC}, {"に", "ニ", "ni", BASIC}, {"ぬ", "ヌ", "nu", BASIC}, {"ね", "ネ", "ne", BASIC}, {"の", "ノ", "no", BASIC},
+		{"は", "ハ", "ha", BASIC}, {"ひ", "ヒ", "hi", BASIC}, {"ふ", "フ", "fu", BASIC}, {"へ", "ヘ", "he", BASIC}, {"ほ", "ホ", "ho", BASIC},
+		{"ま", "マ", "ma", BASIC}, {"み", "ミ", "mi", BASIC}, {"む", "ム", "mu", BASIC}, {"め", "メ", "me", BASIC}, {"も", "モ", "mo", BASIC},
+		{"や", "ヤ", "ya", BASIC}, {"ゆ", "ユ", "yu", BASIC}, {"よ", "ヨ", "yo", BASIC}, {"わ", "ワ", "wa", BASIC}, {"ん", "ン", "n", BASIC},
+		{"ら", "ラ", "ra", BASIC}, {"り", "リ", "ri", BASIC}, {"る", "ル", "ru", BASIC}, {"れ", "レ", "re", BASIC}, {"ろ", "ロ", "ro", BASIC},
+		{"が", "ガ", "ga", DAKUTEN}, {"ぎ", "ギ", "gi", DAKUTEN}, {"ぐ", "グ", "gu", DAKUTEN}, {"げ", "ゲ", "ge", DAKUTEN}, {"ご", "ゴ", "go", DAKUTEN},
+		{"ざ", "ザ", "za", DAKUTEN}, {"じ", "ジ", "ji", DAKUTEN}, {"ず", "ズ", "zu", DAKUTEN}, {"ぜ", "ゼ", "ze", DAKUTEN}, {"ぞ", "ゾ", "zo", DAKUTEN},
+		{"だ", "ダ", "da", DAKUTEN}, {"ぢ", "ヂ", "ji", DAKUTEN}, {"づ", "ヅ", "zu", DAKUTEN}, {"で", "デ", "de", DAKUTEN}, {"ど", "ド", "do", DAKUTEN},
+		{"ば", "バ", "ba", DAKUTEN}, {"び", "ビ", "bi", DAKUTEN}, {"ぶ", "ブ", "bu", DAKUTEN}, {"べ", "ベ", "be", DAKUTEN}, {"ぼ", "ボ", "bo", DAKUTEN},
+		{"ぱ", "パ", "pa", HANDAKUTEN}, {"ぴ", "ピ", "pi", HANDAKUTEN}, {"ぷ", "プ", "pu", HANDAKUTEN}, {"ぺ", "ペ", "pe", HANDAKUTEN}, {"ぽ", "ポ", "po", HANDAKUTEN},
+
+		//を, only used as a particle today, and the archaic ゐ and ゑ
+		{"を", "ヲ", "wo", ARCHAIC}, {"ゐ", "ヰ", "wi", ARCHAIC}, {"ゑ", "ヱ", "we", ARCHAIC},
+
+		//small Kana, never asked on their own: their Romaji is that of the full size Kana
+		{"ぁ", "ァ", "a", SMALL}, {"ぃ", "ィ", "i", SMALL}, {"ぅ", "ゥ", "u", SMALL}, {"ぇ", "ェ", "e", SMALL}, {"ぉ", "ォ", "o", SMALL},
+		{"っ", "ッ", "tsu", SMALL}, {"ゃ", "ャ", "ya", SMALL}, {"ゅ", "ュ", "yu", SMALL}, {"ょ", "ョ", "yo", SMALL}, {"ゎ", "ヮ", "wa", SMALL},
+
+		//yōon
+		{"きゃ", "キャ", "kya", YOON}, {"きゅ", "キュ", "kyu", YOON}, {"きょ", "キョ", "kyo", YOON},
+		{"しゃ", "シャ", "sha", YOON}, {"しゅ", "シュ", "shu", YOON}, {"しょ", "ショ", "sho", YOON},
+		{"ちゃ", "チャ", "cha", YOON}, {"ちゅ", "チュ", "chu", YOON}, {"ちょ", "チョ", "cho", YOON},
+		{"にゃ", "ニャ", "nya", YOON}, {"にゅ", "ニュ", "nyu", YOON}, {"にょ", "ニョ", "nyo", YOON},
+		{"ひゃ", "ヒャ", "hya", YOON}, {"ひゅ", "ヒュ", "hyu", YOON}, {"ひょ", "ヒョ", "hyo", YOON},
+		{"みゃ", "ミャ", "mya", YOON}, {"みゅ", "ミュ", "myu", YOON}, {"みょ", "ミョ", "myo", YOON},
+		{"りゃ", "リャ", "rya", YOON}, {"りゅ", "リュ", "ryu", YOON}, {"りょ", "リョ", "ryo", YOON},
+		{"ぎゃ", "ギャ", "gya", YOON}, {"ぎゅ", "ギュ", "gyu", YOON}, {"ぎょ", "ギョ", "gyo", YOON},
+		{"じゃ", "ジャ", "ja", YOON}, {"じゅ", "ジュ", "ju", YOON}, {"じょ", "ジョ", "jo", YOON},
+		{"ぢゃ", "ヂャ", "ja", YOON}, {"ぢゅ", "ヂュ", "ju", YOON}, {"ぢょ", "ヂョ", "jo", YOON},
+		{"びゃ", "ビャ", "bya", YOON}, {"びゅ", "ビュ", "byu", YOON}, {"びょ", "ビョ", "byo", YOON},
+		{"ぴゃ", "ピャ", "pya", YOON}, {"ぴゅ", "ピュ", "pyu", YOON}, {"ぴょ", "ピョ", "pyo", YOON},
+
+		//sounds used for foreign words
+		{"ゔ", "ヴ", "vu", EXTENDED},
+		{"ふぁ", "ファ", "fa", EXTENDED}, {"ふぃ", "フィ", "fi", EXTENDED}, {"ふぇ", "フェ", "fe", EXTENDED}, {"ふぉ", "フォ", "fo", EXTENDED},
+		{"しぇ", "シェ", "she", EXTENDED}, {"じぇ", "ジェ", "je", EXTENDED}, {"ちぇ", "チェ", "che", EXTENDED},
+		{"てぃ", "ティ", "ti", EXTENDED}, {"でぃ", "ディ", "di", EXTENDED}, {"とぅ", "トゥ", "tu", EXTENDED}, {"どぅ", "ドゥ", "du", EXTENDED},
+		{"うぃ", "ウィ", "wi", EXTENDED}, {"うぇ", "ウェ", "we", EXTENDED}, {"うぉ", "ウォ", "wo", EXTENDED},
+		{"つぁ", "ツァ", "tsa", EXTENDED}, {"つぃ", "ツィ", "tsi", EXTENDED}, {"つぇ", "ツェ", "tse", EXTENDED}, {"つぉ", "ツォ", "tso", EXTENDED},
+		{"ゔぁ", "ヴァ", "va", EXTENDED}, {"ゔぃ", "ヴィ", "vi", EXTENDED}, {"ゔぇ", "ヴェ", "ve", EXTENDED}, {"ゔぉ", "ヴォ", "vo", EXTENDED},
+		{"いぇ", "イェ", "ye", EXTENDED}, {"くぁ", "クァ", "kwa", EXTENDED}, {"ぐぁ", "グァ", "gwa", EXTENDED},
+	};
+
+	public static void main(String[] args) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(args[0])));
+		try {
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeShort(table.length);
+			for(int i = 0; i < table.length; i++)
+				out.writeByte((Integer) table[i][3]);
+			//hiragana, then katakana, then romaji: the start of every string followed by all the characters
+			for(int mode = 0; mode < 3; mode++) {
+				int offset = 0;
+				for(int i = 0; i < table.length; i++) {
+					out.writeShort(offset);
+					offset += ((String) table[i][mode]).length();
+				}
+				out.writeShort(offset);
+				for(int i = 0; i < table.length; i++)
+					out.writeChars((String) table[i][mode]);
+			}
+		} finally {
+			out.close();
+		}
+		System.out.println("wrote " + table.length + " entries to " + args[0]);
+	}
+}
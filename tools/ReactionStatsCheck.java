@@ -0,0 +1,184 @@
+package com.chasingkytes.kana.practice;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Feeds ReactionStats times from known distributions without a device and compares its
+ * percentiles with the exact ones of the same times, sorted:
+ *   percentiles - p50, p90 and p99 of every distribution must fall in the bucket of the exact
+ *                 percentile or the one next to it
+ *   buckets - every time up to MAX_BUCKET_MICROS lies inside the bucket bucketOf() gives it
+ *   export - the CSV has the header, one line per histogram with times in it, the counts and
+ *            the percentiles of getPercentile(), and writeTo() writes the same text to the file
+ *
+ * The distributions are typical reaction times: constant, uniform, normal, log-normal with a
+ * long tail, and two peaks of fast and slow answers.
+ *
+ * Run from the project directory:
+ *   javac -encoding UTF-8 -d /tmp/reaction -sourcepath src tools/ReactionStatsCheck.java
+ *   java -cp /tmp/reaction:src com.chasingkytes.kana.practice.ReactionStatsCheck
+ */
+public class ReactionStatsCheck {
+
+	final static int SAMPLES = 20000;
+	final static double[] PERCENTILES = { 50, 90, 99 };
+	final static long MAX_BUCKET_MICROS = 1 << 24;
+	final static long SEED = 42;
+
+	final static String[] DISTRIBUTIONS = { "constant", "uniform", "normal", "log-normal", "two peaks" };
+
+	static int failures = 0;
+
+	public static void main(String[] args) throws IOException {
+		checkBuckets();
+
+		ReactionStats stats = new ReactionStats();
+		Random random = new Random(SEED);
+		for(int d = 0; d < DISTRIBUTIONS.length; d++) {
+			//every distribution gets a Kana and a combination of modes of its own
+			int kana = d;
+			int questionMode = d / ReactionStats.MODES;
+			int answerMode = d % ReactionStats.MODES;
+			long[] times = new long[SAMPLES];
+			for(int i = 0; i < SAMPLES; i++) {
+				times[i] = sample(d, random);
+				stats.recordHit(kana, questionMode, answerMode, times[i]);
+				if(i % 4 == 0)
+					stats.recordMiss(questionMode, answerMode, times[i] / 2);
+			}
+			Arrays.sort(times);
+			StringBuilder line = new StringBuilder(String.format("%-10s", DISTRIBUTIONS[d]));
+			for(int p = 0; p < PERCENTILES.length; p++) {
+				long exact = times[(int) Math.ceil(SAMPLES * PERCENTILES[p] / 100) - 1];
+				long reported = stats.getPercentile(kana, PERCENTILES[p]);
+				line.append(String.format("  p%.0f %8d us, exact %8d us", PERCENTILES[p], reported, exact));
+				if(Math.abs(ReactionStats.bucketOf(reported) - ReactionStats.bucketOf(exact)) > 1)
+					fail(DISTRIBUTIONS[d] + ": p" + PERCENTILES[p] + " is " + reported + " us, the exact one is " + exact + " us");
+				if(stats.getPercentile(ReactionStats.modeHitHistogram(questionMode, answerMode), PERCENTILES[p]) != reported)
+					fail(DISTRIBUTIONS[d] + ": the histogram of the modes differs from the one of the Kana");
+			}
+			System.out.println(line);
+		}
+		if(stats.getPercentile(DISTRIBUTIONS.length, 50) != 0)
+			fail("an empty histogram has a median");
+
+		checkExport(stats);
+		System.out.println(failures == 0 ? "ok" : failures + " failures");
+		if(failures != 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Draws a time from a distribution.
+	 * @param distribution - <i>index in DISTRIBUTIONS</i>
+	 * @param random - <i>random number generator</i>
+	 * @return long - <i>time in microseconds</i>
+	 */
+	static long sample(int distribution, Random random) {
+		switch(distribution) {
+		case 0:
+			return 850000;
+		case 1:
+			return 300000 + random.nextInt(2700000);
+		case 2:
+			return Math.max(0, Math.round(1200000 + 250000 * random.nextGaussian()));
+		case 3:
+			return Math.round(Math.exp(Math.log(900000) + 0.6 * random.nextGaussian()));
+		default:
+			return random.nextInt(10) < 7 ? 400000 + random.nextInt(100000) : 4000000 + random.nextInt(2000000);
+		}
+	}
+
+	/**
+	 * Checks that every time lies inside its bucket and that the buckets follow each other.
+	 */
+	static void checkBuckets() {
+		for(long micros = 0; micros < MAX_BUCKET_MICROS; micros++) {
+			int bucket = ReactionStats.bucketOf(micros);
+			long low = ReactionStats.bucketLow(bucket);
+			if(micros < low || micros >= low + ReactionStats.bucketWidth(bucket)) {
+				fail(micros + " us is not inside bucket " + bucket + " from " + low + " us");
+				return;
+			}
+		}
+		for(int b = 1; b < ReactionStats.BUCKETS; b++) {
+			if(ReactionStats.bucketLow(b) != ReactionStats.bucketLow(b - 1) + ReactionStats.bucketWidth(b - 1)) {
+				fail("bucket " + b + " does not start where bucket " + (b - 1) + " ends");
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Checks the CSV of export() and the file of writeTo().
+	 * @param stats - <i>stats with times recorded</i>
+	 */
+	static void checkExport(ReactionStats stats) throws IOException {
+		StringBuilder text = new StringBuilder();
+		stats.export(text);
+		String[] lines = text.toString().split("\n");
+		if(!lines[0].equals("histogram,count,p50_us,p90_us,p99_us"))
+			fail("the header is " + lines[0]);
+		int histograms = 0;
+		int line = 1;
+		for(int h = 0; h < ReactionStats.HISTOGRAMS; h++) {
+			if(stats.getCount(h) == 0)
+				continue;
+			histograms++;
+			String expected = ReactionStats.histogramName(h) + "," + stats.getCount(h) + "," + stats.getPercentile(h, 50)
+					+ "," + stats.getPercentile(h, 90) + "," + stats.getPercentile(h, 99);
+			if(line >= lines.length || !lines[line].equals(expected))
+				fail("line " + line + " is " + (line < lines.length ? lines[line] : "missing") + ", expected " + expected);
+			line++;
+		}
+		if(lines.length != histograms + 1)
+			fail("the CSV has " + (lines.length - 1) + " lines, " + histograms + " histograms have times");
+
+		File directory = File.createTempFile("ReactionStatsCheck", "");
+		if(!directory.delete() || !directory.mkdir())
+			throw new IOException("could not create " + directory);
+		File file = new File(directory, ReactionStats.FILE_NAME);
+		stats.writeTo(directory);
+		String written = read(file);
+		file.delete();
+		directory.delete();
+		if(!written.equals(text.toString()))
+			fail("the file differs from export()");
+		System.out.println(String.format("export: %d histograms, %d bytes written to %s", histograms, written.length(), ReactionStats.FILE_NAME));
+	}
+
+	/**
+	 * Reads a whole file.
+	 * @param file - <i>file to read</i>
+	 * @return String - <i>its text</i>
+	 */
+	static String read(File file) throws IOException {
+		StringBuilder text = new StringBuilder();
+		Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+		try {
+			char[] buffer = new char[4096];
+			int read;
+			while((read = in.read(buffer)) > 0)
+				text.append(buffer, 0, read);
+		} finally {
+			in.close();
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Counts a failure and prints the first ones.
+	 * @param message - <i>what was wrong</i>
+	 */
+	static void fail(String message) {
+		failures++;
+		if(failures <= 20)
+			System.out.println("FAILED: " + message);
+	}
+}
@@ -0,0 +1,310 @@
+package com.chasingkytes.kana.practice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays whole games without a device to compare grid sizes, generators and target schedulers.
+ *
+ * Each simulated player answers every question of a game by touching bubbles through
+ * KanaBubbleGrid.processGridTouch(), exactly like the game does. A player recognizes the target
+ * with a given accuracy. When they do not, they touch a wrong bubble, preferring Kana that
+ * look or sound similar to the target. Touches land near the middle of the chosen bubble with
+ * some jitter, so a sloppy player can also miss the grid or hit a neighbouring bubble.
+ *
+ * Games are split into chunks of CHUNK_SIZE that run on every core. Each chunk takes its seed
+ * from the base seed and its own number, and the chunk results are merged in order, so the
+ * same arguments always give the same results no matter how many threads are used. The chunks
+ * run on a plain fixed thread pool rather than fork/join or parallel streams by choice: the
+ * simulator only runs on a desktop JVM, but the chunks are equal and independent, so work
+ * stealing gains nothing, and the code stays in the Java 5 style of the game classes it runs.
+ *
+ * Run from the project directory:
+ *   javac -encoding UTF-8 -d /tmp/sim -sourcepath src tools/SessionSimulator.java
+ *   java -cp /tmp/sim:src com.chasingkytes.kana.practice.SessionSimulator
+ *       [sessions] [rows] [columns] [accuracy] [confusion] [jitter] [leitner|random] [threads]
+ */
+public class SessionSimulator {
+
+	final static int CHUNK_SIZE = 1024;
+	final static int QUESTIONS = 20;
+	final static long SEED = 42;
+	//a question is given up after this many touches, so a player that always misses the grid still finishes
+	final static int MAX_TOUCHES = 1000;
+	//histogram of wrong guesses per game, the last entry holds everything above it
+	final static int MAX_WRONG = 64;
+
+	final static float SIDE_MARGIN = 40;
+	final static float TOP_MARGIN = 60;
+
+	/**
+	 * How a simulated player answers.
+	 */
+	static class PlayerProfile {
+		final double accuracy;		//chance of touching the target on each guess
+		final double confusion;		//chance that a wrong guess goes to a similar Kana if there is one on the grid
+		final float jitter;			//standard deviation of the touch position around the middle of a bubble
+
+		PlayerProfile(double accuracy, double confusion, float jitter) {
+			this.accuracy = accuracy;
+			this.confusion = confusion;
+			this.jitter = jitter;
+		}
+	}
+
+	/**
+	 * Totals of a set of games. Chunks fill their own Results, which are then merged.
+	 */
+	static class Results {
+		long sessions, questions, touches, correct, wrong, offGrid, givenUp;
+		final long[] accuracyPercent = new long[101];	//games by whole accuracy percentage
+		final long[] wrongPerSession = new long[MAX_WRONG + 1];
+
+		void add(Results other) {
+			sessions += other.sessions;
+			questions += other.questions;
+			touches += other.touches;
+			correct += other.correct;
+			wrong += other.wrong;
+			offGrid += other.offGrid;
+			givenUp += other.givenUp;
+			for(int i = 0; i < accuracyPercent.length; i++)
+				accuracyPercent[i] += other.accuracyPercent[i];
+			for(int i = 0; i < wrongPerSession.length; i++)
+				wrongPerSession[i] += other.wrongPerSession[i];
+		}
+	}
+
+	final int rows;
+	final int columns;
+	final PlayerProfile profile;
+	final boolean leitner;
+
+	/**
+	 * Creates a SessionSimulator.
+	 * @param rows - <i>rows of the grid</i>
+	 * @param columns - <i>columns of the grid</i>
+	 * @param profile - <i>how every simulated player answers</i>
+	 * @param leitner - <i>true to choose targets with a LeitnerScheduler, false for uniformly random targets</i>
+	 */
+	SessionSimulator(int rows, int columns, PlayerProfile profile, boolean leitner) {
+		this.rows = rows;
+		this.columns = columns;
+		this.profile = profile;
+		this.leitner = leitner;
+	}
+
+	/**
+	 * Plays games on every core and merges their results.
+	 * @param sessions - <i>amount of games</i>
+	 * @param threads - <i>amount of threads</i>
+	 * @param seed - <i>base seed, the same seed always gives the same results</i>
+	 * @return Results - <i>totals of every game</i>
+	 */
+	Results run(long sessions, int threads, long seed) throws InterruptedException, ExecutionException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Results>> chunks = new ArrayList<Future<Results>>();
+			for(long start = 0; start < sessions; start += CHUNK_SIZE) {
+				final int count = (int) Math.min(CHUNK_SIZE, sessions - start);
+				final long chunkSeed = chunkSeed(seed, start / CHUNK_SIZE);
+				chunks.add(pool.submit(new Callable<Results>() {
+					public Results call() {
+						return runChunk(count, chunkSeed);
+					}
+				}));
+			}
+			Results total = new Results();
+			for(Future<Results> chunk : chunks)
+				total.add(chunk.get());
+			return total;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Plays a chunk of games on the calling thread.
+	 * @param count - <i>amount of games</i>
+	 * @param seed - <i>seed of the chunk</i>
+	 * @return Results - <i>totals of the chunk</i>
+	 */
+	Results runChunk(int count, long seed) {
+		Random rand = new Random(seed);
+		KanaGridGenerator generator = new KanaGridGenerator(rand);
+		Results results = new Results();
+		int[] candidates = new int[rows * columns];
+
+		for(int s = 0; s < count; s++) {
+			//every game is a new player, so the scheduler starts from scratch
+			TargetScheduler scheduler = leitner ? new LeitnerScheduler(rand) : new RandomTargetScheduler(rand);
+			KanaBubbleGrid grid = new KanaBubbleGrid(rows, columns, generator, scheduler);
+			int correct = 0;
+			int wrong = 0;
+
+			for(int q = 0; q < QUESTIONS; q++) {
+				if(q > 0)
+					grid.regenerate(generator);
+				int target = grid.getTargetIndex();
+				boolean answered = false;
+				for(int t = 0; t < MAX_TOUCHES && !answered; t++) {
+					int cell = chooseCell(grid, rand, candidates);
+					float x = grid.getCellX(cell % columns) + grid.diameter / 2 + (float) rand.nextGaussian() * profile.jitter;
+					float y = grid.getCellY(cell / columns) + grid.diameter / 2 + (float) rand.nextGaussian() * profile.jitter;
+					results.touches++;
+					switch(grid.processGridTouch(x + SIDE_MARGIN, y + TOP_MARGIN, SIDE_MARGIN, TOP_MARGIN)) {
+					case KanaBubbleGrid.TARGET_HIT:
+						correct++;
+						scheduler.recordHit(target);
+						answered = true;
+						break;
+					case KanaBubbleGrid.TARGET_MISS:
+						wrong++;
+						scheduler.recordMiss(target);
+						break;
+					case KanaBubbleGrid.TARGET_NONE:
+						results.offGrid++;
+						break;
+					}
+				}
+				if(!answered)
+					results.givenUp++;
+				results.questions++;
+			}
+
+			results.sessions++;
+			results.correct += correct;
+			results.wrong += wrong;
+			int total = correct + wrong;
+			results.accuracyPercent[total == 0 ? 0 : (int) ((long) correct * 100 / total)]++;
+			results.wrongPerSession[Math.min(wrong, MAX_WRONG)]++;
+		}
+		return results;
+	}
+
+	/**
+	 * Chooses the bubble the player aims for. Bubbles that already turned red are not chosen again.
+	 * @param grid - <i>grid being played</i>
+	 * @param rand - <i>random number generator of the chunk</i>
+	 * @param candidates - <i>scratch array with one entry per cell</i>
+	 * @return int - <i>cell, stored row by row</i>
+	 */
+	int chooseCell(KanaBubbleGrid grid, Random rand, int[] candidates) {
+		int target = grid.getTargetIndex();
+		int targetCell = -1;
+		int wrongCount = 0;
+		int similarCount = 0;
+		//similar Kana are kept at the front of candidates, the other wrong Kana at the back
+		int back = candidates.length;
+		for(int cell = 0; cell < candidates.length; cell++) {
+			int r = cell / columns;
+			int c = cell % columns;
+			int kana = grid.getKanaIndex(r, c);
+			if(kana == target && targetCell < 0) {
+				targetCell = cell;
+			} else if(grid.getColor(r, c) != KanaBubble.RED) {
+				if(isSimilar(kana, target))
+					candidates[similarCount++] = cell;
+				else
+					candidates[--back] = cell;
+				wrongCount++;
+			}
+		}
+		if(wrongCount == 0 || rand.nextDouble() < profile.accuracy)
+			return targetCell;
+		if(similarCount > 0 && rand.nextDouble() < profile.confusion)
+			return candidates[rand.nextInt(similarCount)];
+		int pick = rand.nextInt(wrongCount);
+		return pick < similarCount ? candidates[pick] : candidates[back + pick - similarCount];
+	}
+
+	/**
+	 * Decides whether two Kana are easily confused: the same consonant, the same vowel,
+	 * or the same Kana with or without dakuten.
+	 * @param a - <i>kana index</i>
+	 * @param b - <i>kana index</i>
+	 * @return boolean - <i>true if they are similar</i>
+	 */
+	static boolean isSimilar(int a, int b) {
+		String ra = KanaBubble.romajiList[a];
+		String rb = KanaBubble.romajiList[b];
+		if(ra.length() > 1 && rb.length() > 1 && ra.charAt(0) == rb.charAt(0))
+			return true;
+		if(ra.charAt(ra.length() - 1) == rb.charAt(rb.length() - 1))
+			return true;
+		//dakuten and handakuten forms sit right after their base Kana in Unicode
+		int ka = KanaBubble.hiraganaList[a].charAt(0);
+		int kb = KanaBubble.hiraganaList[b].charAt(0);
+		return Math.abs(ka - kb) <= 2 && KanaTable.getCategory(a) != KanaTable.getCategory(b);
+	}
+
+	/**
+	 * Mixes the base seed with the chunk number so neighbouring chunks get unrelated seeds.
+	 * @param seed - <i>base seed</i>
+	 * @param chunk - <i>chunk number</i>
+	 * @return long - <i>seed of the chunk</i>
+	 */
+	static long chunkSeed(long seed, long chunk) {
+		long z = seed + (chunk + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Obtains a percentile of a histogram.
+	 * @param histogram - <i>amount of games for every value</i>
+	 * @param total - <i>amount of games</i>
+	 * @param percentile - <i>percentile from 0 to 100</i>
+	 * @return int - <i>value</i>
+	 */
+	static int percentile(long[] histogram, long total, double percentile) {
+		long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+		long seen = 0;
+		for(int i = 0; i < histogram.length; i++) {
+			seen += histogram[i];
+			if(seen >= rank)
+				return i;
+		}
+		return histogram.length - 1;
+	}
+
+	public static void main(String[] args) throws Exception {
+		long sessions = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+		int rows = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		int columns = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		double accuracy = args.length > 3 ? Double.parseDouble(args[3]) : 0.8;
+		double confusion = args.length > 4 ? Double.parseDouble(args[4]) : 0.7;
+		float jitter = args.length > 5 ? Float.parseFloat(args[5]) : 15;
+		boolean leitner = args.length > 6 ? !args[6].equals("random") : true;
+		int threads = args.length > 7 ? Integer.parseInt(args[7]) : Runtime.getRuntime().availableProcessors();
+
+		SessionSimulator simulator = new SessionSimulator(rows, columns, new PlayerProfile(accuracy, confusion, jitter), leitner);
+		System.out.println(sessions + " games of " + QUESTIONS + " questions on " + rows + "x" + columns
+				+ ", accuracy " + accuracy + ", confusion " + confusion + ", jitter " + jitter
+				+ ", " + (leitner ? "leitner" : "random") + " targets, " + threads + " threads");
+
+		long start = System.nanoTime();
+		Results results = simulator.run(sessions, threads, SEED);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println(String.format("%.2f s, %.0f games/s, %.0f touches/s",
+				seconds, results.sessions / seconds, results.touches / seconds));
+		System.out.println(String.format("correct %d, wrong %d, off grid %d, given up %d, avg guesses per question %.3f",
+				results.correct, results.wrong, results.offGrid, results.givenUp,
+				(double) (results.correct + results.wrong) / Math.max(1, results.correct)));
+		System.out.println("accuracy % per game: p10 " + percentile(results.accuracyPercent, results.sessions, 10)
+				+ ", p50 " + percentile(results.accuracyPercent, results.sessions, 50)
+				+ ", p90 " + percentile(results.accuracyPercent, results.sessions, 90));
+		System.out.println("wrong guesses per game: p10 " + percentile(results.wrongPerSession, results.sessions, 10)
+				+ ", p50 " + percentile(results.wrongPerSession, results.sessions, 50)
+				+ ", p90 " + percentile(results.wrongPerSession, results.sessions, 90)
+				+ ", p99 " + percentile(results.wrongPerSession, results.sessions, 99));
+	}
+}
@@ -0,0 +1,18 @@
+package android.os;
+
+/**
+ * Desktop stand-in for the one Android clock the game loop uses, so RenderScheduler and
+ * GameLoop can be run by the tools. Never part of the application.
+ */
+public final class SystemClock {
+
+	private static final long START = System.nanoTime();
+
+	/**
+	 * Obtains the milliseconds since the class was loaded, like the time since boot on a device.
+	 * @return long - <i>uptime in milliseconds</i>
+	 */
+	public static long uptimeMillis() {
+		return (System.nanoTime() - START) / 1000000;
+	}
+}